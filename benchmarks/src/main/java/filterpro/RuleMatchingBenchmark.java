@@ -0,0 +1,157 @@
+package filterpro;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 规则匹配基准：按 Filter_Pro_Rule.txt 格式加载 10 到 10 万条规则，在不同大小的合成请求上
+ * 比较逐条 | 拼接的正则、generateFinalRule 生成的前缀合并正则与 RuleMatcher 的吞吐量。
+ * 分配速率使用 -prof gc 查看；-p ruleFile=路径 可以改用真实的规则文件（此时忽略 ruleCount）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RuleMatchingBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int ruleCount;
+
+    @Param({"512", "16384", "1048576"})
+    public int requestSize;
+
+    @Param({""})
+    public String ruleFile;
+
+    private Pattern joinedRegex;
+    private Pattern assembledRegex;
+    private RuleMatcher ruleMatcher;
+    private String request;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<FilterRule> rules = loadRules(ruleFile.isEmpty() ? writeSyntheticRuleFile(ruleCount) : new File(ruleFile));
+
+        List<String> regexes = enabledRegexes(rules);
+        joinedRegex = Pattern.compile(String.join("|", regexes));
+        // 与 generateFinalRule 的输出一致：先去掉重复或被覆盖的规则再合并
+        assembledRegex = Pattern.compile(RegexAssembler.assemble(enabledRegexes(RuleOptimizer.minimize(rules))));
+        ruleMatcher = RuleMatcher.compile(rules);
+        request = syntheticRequest(requestSize);
+    }
+
+    @Benchmark
+    public boolean joinedRegex() {
+        return joinedRegex.matcher(request).find();
+    }
+
+    @Benchmark
+    public boolean assembledRegex() {
+        return assembledRegex.matcher(request).find();
+    }
+
+    @Benchmark
+    public FilterRule ruleMatcher() {
+        return ruleMatcher.match(new RawRequestInput(request));
+    }
+
+    private static List<String> enabledRegexes(List<FilterRule> rules) {
+        List<String> regexes = new ArrayList<>();
+        for (FilterRule rule : rules) {
+            String regex = rule.isEnabled() ? rule.toHistoryFilterRegex() : null;
+            if (regex != null) {
+                regexes.add(regex);
+            }
+        }
+        return regexes;
+    }
+
+    static List<FilterRule> loadRules(File file) throws IOException {
+        List<FilterRule> rules = new ArrayList<>();
+        // 与插件保存的规则文件一样按 UTF-8 读写
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                FilterRule rule = FilterRule.fromConfigLine(line, "Default group");
+                if (rule != null) {
+                    rules.add(rule);
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * 生成与插件右键菜单产生的规则比例相近的规则文件：以接口路径和主机为主，少量查询参数和自定义正则
+     */
+    static File writeSyntheticRuleFile(int count) throws IOException {
+        File file = File.createTempFile("Filter_Pro_Rule", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < count; i++) {
+                FilterRule rule;
+                switch (i % 10) {
+                    case 6:
+                    case 7:
+                        rule = new FilterRule("telemetry" + i + "\\.cdn" + (i % 50) + "\\.example\\.net", "Host Filter",
+                                true, "", "Default group", RuleTarget.HOST, "");
+                        break;
+                    case 8:
+                        rule = new FilterRule("beacon_id=" + i, "Custom Rule", true, "", "Default group", RuleTarget.QUERY, "");
+                        break;
+                    case 9:
+                        rule = new FilterRule("/track/\\d+/evt" + i, "Custom Rule", true, "", "Default group", RuleTarget.REQUEST, "");
+                        break;
+                    default:
+                        rule = new FilterRule("/api/v" + (i % 3) + "/svc" + i + "/heartbeat\\?t=1", "API Filter",
+                                true, "", "Default group", RuleTarget.PATH, "");
+                        break;
+                }
+                writer.println(rule.toConfigLine());
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 不命中任何规则的业务请求，这是两种方式都必须扫描完整规则集的最坏情况
+     */
+    static String syntheticRequest(int size) {
+        StringBuilder request = new StringBuilder(size + 512);
+        request.append("POST /app/orders/10086/items?page=2&sort=desc HTTP/1.1\r\n")
+                .append("Host: shop.example.com\r\n")
+                .append("User-Agent: Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko)\r\n")
+                .append("Accept: application/json, text/plain, */*\r\n")
+                .append("Content-Type: application/json\r\n")
+                .append("Cookie: session=8f14e45fceea167a5a36dedd4bea2543\r\n\r\n");
+        int i = 0;
+        request.append('[');
+        while (request.length() < size) {
+            request.append("{\"sku\":\"A").append(i).append("\",\"qty\":").append(i % 7).append("},");
+            i++;
+        }
+        request.append("{}]");
+        return request.toString();
+    }
+}
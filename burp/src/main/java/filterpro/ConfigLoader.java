@@ -0,0 +1,100 @@
+package filterpro;
+
+import javax.swing.SwingWorker;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * 在后台线程读取并解析规则文件，每解析一批就交给 EDT 追加到表格，
+ * 插件加载和导入配置都不会因为规则文件太大而卡住界面。
+ * 插件卸载时可以用 drain 等后台读完，直接取走还没交给 EDT 的规则。
+ */
+class ConfigLoader extends SwingWorker<Integer, Integer> {
+    private static final int BATCH_SIZE = 1000;
+
+    private final Callable<List<String>> source;
+    private final String defaultGroup;
+    private final Consumer<List<FilterRule>> sink;
+    // 已解析、还没交给 sink 的规则，由本对象的锁保护
+    private List<FilterRule> pending = new ArrayList<>();
+    private boolean drained;
+
+    /**
+     * source 在后台线程中调用，返回规则文件的各行；sink 在 EDT 上按批收到解析好的规则
+     */
+    ConfigLoader(Callable<List<String>> source, String defaultGroup, Consumer<List<FilterRule>> sink) {
+        this.source = source;
+        this.defaultGroup = defaultGroup;
+        this.sink = sink;
+    }
+
+    /**
+     * 返回解析出的规则条数
+     */
+    @Override
+    protected Integer doInBackground() throws Exception {
+        List<String> lines = source.call();
+        List<FilterRule> batch = new ArrayList<>(BATCH_SIZE);
+        int loaded = 0;
+        for (String line : lines) {
+            if (isCancelled()) {
+                break;
+            }
+            FilterRule rule = FilterRule.fromConfigLine(line, defaultGroup);
+            if (rule == null) {
+                continue;
+            }
+            batch.add(rule);
+            loaded++;
+            if (batch.size() == BATCH_SIZE) {
+                hand(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            hand(batch);
+        }
+        return loaded;
+    }
+
+    private void hand(List<FilterRule> batch) {
+        synchronized (this) {
+            pending.addAll(batch);
+        }
+        publish(batch.size());
+    }
+
+    @Override
+    protected void process(List<Integer> sizes) {
+        List<FilterRule> rules;
+        synchronized (this) {
+            if (drained || pending.isEmpty()) {
+                return;
+            }
+            rules = pending;
+            pending = new ArrayList<>();
+        }
+        sink.accept(rules);
+    }
+
+    /**
+     * 等后台解析完成，返回还没交给 sink 的规则，之后 sink 不会再收到规则。
+     * 可以在 EDT 上调用：已经交给 sink 的规则不会重复返回，排队中的批次也不会再交付。
+     * 读取失败时抛出 ExecutionException，超时抛出 TimeoutException，两种情况都不影响之后的正常交付。
+     */
+    List<FilterRule> drain(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        get(timeout, unit);
+        synchronized (this) {
+            drained = true;
+            List<FilterRule> rules = pending;
+            pending = new ArrayList<>();
+            return rules;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package filterpro;
+
+import burp.api.montoya.core.Annotations;
+import burp.api.montoya.core.HighlightColor;
+import burp.api.montoya.logging.Logging;
+import burp.api.montoya.proxy.http.InterceptedRequest;
+import burp.api.montoya.proxy.http.InterceptedResponse;
+import burp.api.montoya.proxy.http.ProxyRequestHandler;
+import burp.api.montoya.proxy.http.ProxyRequestReceivedAction;
+import burp.api.montoya.proxy.http.ProxyRequestToBeSentAction;
+import burp.api.montoya.proxy.http.ProxyResponseHandler;
+import burp.api.montoya.proxy.http.ProxyResponseReceivedAction;
+import burp.api.montoya.proxy.http.ProxyResponseToBeSentAction;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 代理过滤引擎：在请求进入代理时直接用启用分组的规则匹配一次，
+ * 命中后按配置的动作丢弃、高亮或标注，不再依赖把正则粘贴到 History Filter。
+ * 每个分组使用各自预编译的匹配器，启用集合只是这些匹配器的有序组合：启停一个分组不需要重新编译其它分组，
+ * 同一个请求的各部分只提取一次，在所有分组之间共用。
+ */
+class FilterEngine implements ProxyRequestHandler, ProxyResponseHandler {
+    static final String NOTE_PREFIX = "FilterPro";
+    // 等待响应的命中请求上限，防止响应一直不回来时无限增长
+    private static final int MAX_PENDING = 4096;
+
+    enum Action {
+        OFF("关闭"),
+        ANNOTATE("标注"),
+        HIGHLIGHT("高亮"),
+        DROP("丢弃");
+
+        private final String displayName;
+
+        Action(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private final Logging logging;
+    // 等待响应的命中请求 -> 命中的分组名
+    private final Map<Integer, String> pendingResponses = new ConcurrentHashMap<>();
+    private volatile ActiveSet active = new ActiveSet(new RuleGroup[0], new RuleMatcher[0]);
+    private volatile Action action = Action.OFF;
+
+    /**
+     * 启用的分组及其匹配器，整体替换，匹配线程读到的总是一致的组合。
+     * 历史回溯也使用同一个组合，与代理过滤的分组和顺序一致
+     */
+    static final class ActiveSet {
+        private final RuleGroup[] groups;
+        private final RuleMatcher[] matchers;
+
+        private ActiveSet(RuleGroup[] groups, RuleMatcher[] matchers) {
+            this.groups = groups;
+            this.matchers = matchers;
+        }
+
+        boolean isEmpty() {
+            for (RuleMatcher matcher : matchers) {
+                if (!matcher.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 依次用各分组匹配，返回第一个命中的分组，不记录统计
+         */
+        RuleGroup match(MatchInput input) {
+            for (int i = 0; i < matchers.length; i++) {
+                if (!matchers[i].isEmpty() && matchers[i].match(input) != null) {
+                    return groups[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    FilterEngine(Logging logging) {
+        this.logging = logging;
+    }
+
+    Action getAction() { return action; }
+    ActiveSet getActiveSet() { return active; }
+    void setAction(Action action) {
+        this.action = action;
+        pendingResponses.clear();
+        logging.logToOutput("代理过滤动作: " + action);
+    }
+
+    /**
+     * 切换到一组分组编译好的匹配器，按顺序匹配。分组的匹配器增量更新后会带着原有的编译错误，
+     * 只输出该分组上一个匹配器没有的错误。
+     */
+    void setMatchers(List<RuleGroup> groups, List<RuleMatcher> matchers) {
+        ActiveSet previous = active;
+        for (int i = 0; i < matchers.size(); i++) {
+            List<String> reported = previousErrors(previous, groups.get(i));
+            for (String error : matchers.get(i).getErrors()) {
+                if (!reported.contains(error)) {
+                    logging.logToError("分组 '" + groups.get(i).getGroupName() + "' " + error + "，已跳过");
+                }
+            }
+        }
+        this.active = new ActiveSet(groups.toArray(new RuleGroup[0]), matchers.toArray(new RuleMatcher[0]));
+    }
+
+    private static List<String> previousErrors(ActiveSet previous, RuleGroup group) {
+        for (int i = 0; i < previous.groups.length; i++) {
+            if (previous.groups[i] == group) {
+                return previous.matchers[i].getErrors();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 依次用启用分组的规则匹配请求，返回第一个命中的分组，并记录命中规则和分组的统计
+     */
+    RuleGroup match(InterceptedRequest request) {
+        ActiveSet current = active;
+        MatchInput input = null;
+        for (int i = 0; i < current.matchers.length; i++) {
+            RuleMatcher matcher = current.matchers[i];
+            if (matcher.isEmpty()) {
+                continue;
+            }
+            if (input == null) {
+                input = new HttpRequestInput(request);
+            }
+            RuleGroup group = current.groups[i];
+            long start = System.nanoTime();
+            FilterRule hit = matcher.match(input);
+            group.getStats().addMatchTime(System.nanoTime() - start);
+            if (hit != null) {
+                hit.getStats().recordHit();
+                group.getStats().recordHit();
+                return group;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ProxyRequestReceivedAction handleRequestReceived(InterceptedRequest interceptedRequest) {
+        Action currentAction = action;
+        RuleGroup hitGroup = currentAction == Action.OFF ? null : match(interceptedRequest);
+        if (hitGroup == null) {
+            return ProxyRequestReceivedAction.continueWith(interceptedRequest);
+        }
+
+        if (currentAction == Action.DROP) {
+            return ProxyRequestReceivedAction.drop();
+        }
+
+        Annotations annotations = interceptedRequest.annotations();
+        applyAnnotations(annotations, currentAction, hitGroup.getGroupName());
+        if (pendingResponses.size() >= MAX_PENDING) {
+            pendingResponses.clear();
+        }
+        pendingResponses.put(interceptedRequest.messageId(), hitGroup.getGroupName());
+        return ProxyRequestReceivedAction.continueWith(interceptedRequest, annotations);
+    }
+
+    @Override
+    public ProxyRequestToBeSentAction handleRequestToBeSent(InterceptedRequest interceptedRequest) {
+        return ProxyRequestToBeSentAction.continueWith(interceptedRequest);
+    }
+
+    @Override
+    public ProxyResponseReceivedAction handleResponseReceived(InterceptedResponse interceptedResponse) {
+        // 请求阶段已经匹配过，这里只把标注补到响应上，不再重复匹配
+        String groupName = pendingResponses.remove(interceptedResponse.messageId());
+        if (groupName == null) {
+            return ProxyResponseReceivedAction.continueWith(interceptedResponse);
+        }
+        Annotations annotations = interceptedResponse.annotations();
+        applyAnnotations(annotations, action, groupName);
+        return ProxyResponseReceivedAction.continueWith(interceptedResponse, annotations);
+    }
+
+    @Override
+    public ProxyResponseToBeSentAction handleResponseToBeSent(InterceptedResponse interceptedResponse) {
+        return ProxyResponseToBeSentAction.continueWith(interceptedResponse);
+    }
+
+    /**
+     * 按动作写入高亮和备注，代理过滤和历史回溯共用
+     */
+    static void applyAnnotations(Annotations annotations, Action currentAction, String groupName) {
+        if (currentAction == Action.HIGHLIGHT) {
+            annotations.setHighlightColor(HighlightColor.GRAY);
+        }
+        if (currentAction == Action.HIGHLIGHT || currentAction == Action.ANNOTATE) {
+            annotations.setNotes(NOTE_PREFIX + ": 命中分组 " + groupName);
+        }
+    }
+}
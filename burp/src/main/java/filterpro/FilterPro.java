@@ -0,0 +1,2016 @@
+package filterpro;
+
+import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.BurpExtension;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.ui.contextmenu.ContextMenuEvent;
+import burp.api.montoya.ui.contextmenu.ContextMenuItemsProvider;
+import burp.api.montoya.logging.Logging;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
+import javax.swing.event.DocumentListener;
+import javax.swing.event.DocumentEvent;
+import java.awt.*;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.Charset;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class FilterPro implements BurpExtension, ContextMenuItemsProvider {
+    private MontoyaApi api;
+    private Logging logging;
+    private RuleManagerPanel ruleManagerPanel;
+    private FilterEngine filterEngine;
+    private HeartbeatDetector heartbeatDetector;
+    private RequestTemplater requestTemplater;
+
+    @Override
+    public void initialize(MontoyaApi api) {
+        this.api = api;
+        this.logging = api.logging();
+        this.filterEngine = new FilterEngine(logging);
+        this.heartbeatDetector = new HeartbeatDetector();
+        this.requestTemplater = new RequestTemplater();
+        this.ruleManagerPanel = new RuleManagerPanel(api, filterEngine, heartbeatDetector, requestTemplater);
+
+        // 设置扩展名称
+        api.extension().setName("FilterPro");
+
+        // 注册规则管理面板为Burp的一个标签页
+        api.userInterface().registerSuiteTab("FilterPro", ruleManagerPanel);
+
+        // 注册上下文菜单项
+        api.userInterface().registerContextMenuItemsProvider(this);
+
+        // 注册代理过滤引擎，请求到达时直接匹配当前分组规则
+        api.proxy().registerRequestHandler(filterEngine);
+        api.proxy().registerResponseHandler(filterEngine);
+
+        // 注册心跳检测，被动统计经过代理的请求，发现周期性请求后给出规则建议
+        api.http().registerHttpHandler(heartbeatDetector);
+        // 注册模板归纳，把带时间戳、ID 的请求聚类成通用的路径规则
+        api.http().registerHttpHandler(requestTemplater);
+
+        // 卸载插件时立即保存尚未保存的修改
+        api.extension().registerUnloadingHandler(ruleManagerPanel::shutdown);
+
+        logging.logToOutput("FilterPro 插件加载成功！");
+    }
+
+    @Override
+    public List<Component> provideMenuItems(ContextMenuEvent event) {
+        List<Component> menuItems = new ArrayList<>();
+        List<HttpRequestResponse> selectedMessages = new ArrayList<>();
+
+        if (!event.selectedRequestResponses().isEmpty()) {
+            selectedMessages = event.selectedRequestResponses();
+        } else if (event.messageEditorRequestResponse().isPresent()) {
+            selectedMessages.add(event.messageEditorRequestResponse().get().requestResponse());
+        }
+
+        if (!selectedMessages.isEmpty()) {
+            HttpRequestResponse requestResponse = selectedMessages.get(0);
+            JMenu filterProMenu = new JMenu("FilterPro");
+
+            JMenuItem filterApiArgMenu = new JMenuItem("Filter_Api");
+            JMenuItem filterHostMenu = new JMenuItem("Filter_Host");
+            JMenuItem filterMethodMenu = new JMenuItem("Filter_Method");
+            JMenuItem filterCustomMenu = new JMenuItem("Filter_Custom");
+            JMenuItem filterTemplateMenu = new JMenuItem("Filter_Template");
+
+            final HttpRequestResponse finalRequestResponse = requestResponse;
+            filterMethodMenu.addActionListener(e -> handleFilterMethod(finalRequestResponse));
+            filterHostMenu.addActionListener(e -> handleFilterHost(finalRequestResponse));
+            filterApiArgMenu.addActionListener(e -> handleFilterApiArg(finalRequestResponse));
+            filterCustomMenu.addActionListener(e -> handleCustomRule(finalRequestResponse));
+            filterTemplateMenu.addActionListener(e -> handleTemplateRule(finalRequestResponse));
+
+            filterProMenu.add(filterApiArgMenu);
+            filterProMenu.add(filterCustomMenu);
+            filterProMenu.add(filterTemplateMenu);
+            filterProMenu.add(filterHostMenu);
+            filterProMenu.add(filterMethodMenu);
+
+            menuItems.add(filterProMenu);
+        }
+
+        return menuItems;
+    }
+
+    private void handleFilterMethod(HttpRequestResponse requestResponse) {
+        try {
+            String method = requestResponse.request().method();
+            String rule = escapeRegex(method);
+//            默认添加到Default
+            ruleManagerPanel.addRule(new FilterRule(rule, "Method Filter", true, "", "Default group", RuleTarget.METHOD, ""));
+            logging.logToOutput("添加方法过滤规则: " + rule);
+        } catch (Exception e) {
+            logging.logToError("处理请求方法时出错: " + e.getMessage());
+        }
+    }
+
+    private void handleFilterHost(HttpRequestResponse requestResponse) {
+        try {
+            String host = requestResponse.request().httpService().host();
+            String rule = escapeRegex(host);
+            if (rule != null && !rule.trim().isEmpty()) {
+//                默认添加到Default
+                ruleManagerPanel.addRule(new FilterRule(rule, "Host Filter", true, "", "Default group", RuleTarget.HOST, ""));
+                logging.logToOutput("添加主机过滤规则: " + rule);
+            }
+        } catch (Exception e) {
+            logging.logToError("处理主机过滤时出错: " + e.getMessage());
+        }
+    }
+
+    private void handleFilterApiArg(HttpRequestResponse requestResponse) {
+        try {
+            String path = requestResponse.request().path();
+            String rule = escapeRegex(path);
+            if (rule != null && !rule.trim().isEmpty()) {
+//                默认添加到Default
+                ruleManagerPanel.addRule(new FilterRule(rule, "API Filter", true, "", "Default group", RuleTarget.PATH, ""));
+                logging.logToOutput("添加API参数过滤规则: " + rule);
+            }
+        } catch (Exception e) {
+            logging.logToError("处理API参数过滤时出错: " + e.getMessage());
+        }
+    }
+
+    private void handleCustomRule(HttpRequestResponse requestResponse) {
+        try {
+            String userInput = JOptionPane.showInputDialog(
+                    null,
+                    "请输入自定义规则内容:",
+                    "自定义规则输入",
+                    JOptionPane.QUESTION_MESSAGE
+            );
+
+            if (userInput == null || userInput.trim().isEmpty()) {
+                logging.logToOutput("用户取消输入或输入为空");
+                return;
+            }
+
+            String escapedRule = escapeRegex(userInput.trim());
+//            规则默认添加到Default组
+            ruleManagerPanel.addRule(new FilterRule(escapedRule, "Custom Rule", true, "", "Default group"));
+
+        } catch (Exception e) {
+            logging.logToError("处理自定义规则时出错: " + e.getMessage());
+            JOptionPane.showMessageDialog(
+                    null,
+                    "添加自定义规则时出错: " + e.getMessage(),
+                    "错误",
+                    JOptionPane.ERROR_MESSAGE
+            );
+        }
+    }
+
+    /**
+     * 把请求路径中的时间戳、ID 等动态段归纳成模板，确认或修改后作为以该请求的主机为条件的路径规则添加
+     */
+    private void handleTemplateRule(HttpRequestResponse requestResponse) {
+        try {
+            String host = requestResponse.request().httpService().host();
+            String template = requestTemplater.templateFor(host,
+                    requestResponse.request().method(), requestResponse.request().path());
+            String userInput = (String) JOptionPane.showInputDialog(
+                    null,
+                    "归纳出的路径模板（可修改）:",
+                    "模板规则",
+                    JOptionPane.QUESTION_MESSAGE,
+                    null,
+                    null,
+                    template
+            );
+            if (userInput == null || userInput.trim().isEmpty()) {
+                return;
+            }
+            ruleManagerPanel.addRule(new FilterRule(userInput.trim(), "Template Rule", true, host, "Default group", RuleTarget.PATH, host));
+            logging.logToOutput("添加模板过滤规则: " + host + " " + userInput.trim());
+        } catch (Exception e) {
+            logging.logToError("处理模板规则时出错: " + e.getMessage());
+        }
+    }
+
+    private String escapeRegex(String input) {
+        if (input == null) return "";
+        return input.replace(".", "\\.").replace("?", "\\?");
+    }
+}
+
+class RuleManagerPanel extends JPanel {
+    private MontoyaApi api;
+    private Logging logging;
+    private final RuleStore ruleStore = new RuleStore();
+    private FilterEngine filterEngine;
+    private HeartbeatDetector heartbeatDetector;
+    private RequestTemplater requestTemplater;
+    private final CompiledRuleCache ruleCache = new CompiledRuleCache();
+    private List<RuleGroup> groupList;
+    private RuleGroup currentGroup;
+    private JTable ruleTable;
+    private TableRowSorter<RuleTableModel> ruleSorter;
+    private JTable groupTable;
+    private RuleTableModel tableModel;
+    private GroupTableModel groupTableModel;
+    private JButton deleteButton;
+    private JButton generateButton;
+    private JButton backfillButton;
+    private JProgressBar backfillProgress;
+    private HistoryBackfill backfill;
+    private JButton saveConfigButton;
+    private JButton loadConfigButton;
+    private JButton importHostListButton;
+    private JButton addGroupButton;
+    private JButton deleteGroupButton;
+    private JButton editGroupButton;
+    private JButton moveToGroupButton;
+    private JButton optimizeButton;
+    private JButton resetStatsButton;
+    private JButton exportStatsButton;
+    private JButton heartbeatButton;
+    private JCheckBox heartbeatBox;
+    private JCheckBox templaterBox;
+    private JButton templateButton;
+    private JComboBox<FilterEngine.Action> engineActionBox;
+    private JTextArea finalRuleArea;
+    private JLabel filePathLabel;
+    private JTextField searchField;
+    private javax.swing.Timer searchTimer;
+    private static final int SEARCH_DELAY_MS = 200;
+    // 定时重绘命中统计，卸载时停止
+    private javax.swing.Timer statsRepaintTimer;
+    // 旧版的单个规则文件，第一次启动时拆分成分片后改名为 .bak
+    private File legacyConfigFile;
+    private static final String DEFAULT_FILENAME = "Filter_Pro_Rule.txt";
+    private static final String SHARD_DIRECTORY = "Filter_Pro_Rules";
+    private RuleShards shards;
+    // 正在后台加载的分组；导入配置时 loadGeneration 加一，之前发起的分组加载结果作废
+    private final Map<String, ConfigLoader> loadingGroups = new HashMap<>();
+    private int loadGeneration;
+    // 正在读取的分组清单和正在导入的规则文件，卸载时要先等它们完成
+    private SwingWorker<List<RuleGroup>, Void> manifestReader;
+    private ConfigLoader fullLoader;
+    private String fullLoadRemark;
+    private boolean fullLoadChanged;
+    // 卸载时等待后台加载完成的上限
+    private static final long FINAL_LOAD_TIMEOUT_SECONDS = 10;
+    // 由保存线程更新，EDT 读取
+    private volatile long lastSaveTime;
+    private volatile int autoSaveCount;
+    // 修改后安静 2 秒再保存，持续修改时最多延迟 30 秒
+    private static final long SAVE_QUIET_MS = 2000;
+    private static final long SAVE_MAX_DELAY_MS = 30000;
+    private SaveScheduler saveScheduler;
+    // 规则有未持久化的变化，自动保存只在为 true 时才比较和写入
+    private volatile boolean dirty;
+    // 后台读取分组清单或导入规则文件期间为 true
+    private volatile boolean loading;
+
+    public RuleManagerPanel(MontoyaApi api, FilterEngine filterEngine, HeartbeatDetector heartbeatDetector,
+                            RequestTemplater requestTemplater) {
+        this.api = api;
+        this.logging = api.logging();
+        this.filterEngine = filterEngine;
+        this.heartbeatDetector = heartbeatDetector;
+        this.requestTemplater = requestTemplater;
+        this.groupList = new ArrayList<>();
+        this.autoSaveCount = 0;
+        this.lastSaveTime = System.currentTimeMillis();
+        this.saveScheduler = new SaveScheduler(() -> {
+            try {
+                autoSaveConfig();
+            } catch (Exception e) {
+                logging.logToError("自动保存配置时出错: " + e.getMessage());
+            }
+        }, SAVE_QUIET_MS, SAVE_MAX_DELAY_MS);
+
+        // 初始化Default group
+        initializeDefaultGroups();
+
+        // 设置当前分组为Default group
+        if (!groupList.isEmpty()) {
+            currentGroup = groupList.get(0);
+        }
+
+        initializeConfigFile();
+        initializeUI(); // 先初始化UI组件
+        loadDefaultConfig(); // 然后加载配置
+    }
+
+    private void initializeDefaultGroups() {
+        groupList.add(new RuleGroup("Default group", "Default group"));
+        // 移除固定的测试分组，改为动态加载
+    }
+
+    private void initializeConfigFile() {
+        String currentDir = System.getProperty("user.dir");
+        legacyConfigFile = new File(currentDir, DEFAULT_FILENAME);
+        shards = new RuleShards(new File(currentDir, SHARD_DIRECTORY));
+    }
+
+    /**
+     * 启动时在后台读取分组清单，第一次运行时先把旧的单个规则文件按分组拆成分片。
+     * 只加载当前分组和启用的分组，其余分组在选中或启用时才加载。
+     */
+    private void loadDefaultConfig() {
+        loading = true;
+        filePathLabel.setText(saveStatusText() + " | 正在读取分组...");
+        manifestReader = new SwingWorker<List<RuleGroup>, Void>() {
+            @Override
+            protected List<RuleGroup> doInBackground() throws Exception {
+                if (!shards.exists() && legacyConfigFile.isFile()) {
+                    RuleJournal legacy = new RuleJournal(legacyConfigFile);
+                    List<String> lines = legacy.load();
+                    shards.migrate(lines, "Default group");
+                    Files.move(legacyConfigFile.toPath(), new File(legacyConfigFile.getPath() + ".bak").toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    Files.deleteIfExists(legacy.getJournalFile().toPath());
+                    logging.logToOutput("已将 " + legacyConfigFile.getName() + " 的 " + lines.size() + " 条规则按分组拆分到 "
+                            + shards.getDirectory().getAbsolutePath() + "，原文件已改名为 .bak");
+                }
+                return shards.exists() ? shards.open() : new ArrayList<>();
+            }
+
+            @Override
+            protected void done() {
+                // 插件卸载时可能已经提前处理过
+                if (manifestReader == this) {
+                    manifestRead(this::get);
+                }
+            }
+        };
+        manifestReader.execute();
+    }
+
+    /**
+     * 分组清单读取完成（或失败），在 EDT 上合并到分组列表并开始加载当前分组
+     */
+    private void manifestRead(Callable<List<RuleGroup>> result) {
+        manifestReader = null;
+        loading = false;
+        filePathLabel.setText(saveStatusText());
+        List<RuleGroup> groups;
+        try {
+            groups = result.call();
+        } catch (Exception e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logging.logToError("读取规则分组失败: " + cause);
+            return;
+        }
+        Set<String> known = new HashSet<>();
+        for (RuleGroup group : groups) {
+            known.add(group.getGroupName());
+            RuleGroup existing = findGroup(group.getGroupName());
+            if (existing == null) {
+                groupTableModel.addGroup(group);
+            } else {
+                existing.setRemark(group.getRemark());
+                existing.setActive(group.isActive());
+            }
+        }
+        // 读取清单期间在界面上新建的分组
+        for (RuleGroup group : groupList) {
+            if (!known.contains(group.getGroupName())) {
+                shards.addGroup(group.getGroupName(), group.getRemark());
+            }
+        }
+        groupTableModel.countsChanged();
+        logging.logToOutput("读取规则分组: " + groups.size() + " 个");
+        if (currentGroup != null) {
+            loadGroup(currentGroup.getGroupName());
+        }
+        updateFilterEngine();
+    }
+
+    /**
+     * 在后台加载一个分组的规则，已加载或正在加载时什么都不做。
+     * 加载完成前分组中新加的规则不受影响，保存会跳过该分组，加载完成后再一起保存。
+     */
+    private void loadGroup(String groupName) {
+        if (loading || shards.isLoaded(groupName) || loadingGroups.containsKey(groupName)) {
+            return;
+        }
+        int generation = loadGeneration;
+        ConfigLoader loader = new ConfigLoader(() -> shards.load(groupName), groupName, batch -> {
+            if (generation == loadGeneration) {
+                appendLoadedRules(inGroup(batch, groupName), "");
+            }
+        });
+        loader.addPropertyChangeListener(evt -> {
+            if ("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE) {
+                // 导入配置或插件卸载时已经作废或提前处理过
+                if (generation != loadGeneration || loadingGroups.get(groupName) != loader) {
+                    return;
+                }
+                loadingGroups.remove(groupName);
+                try {
+                    logging.logToOutput("加载分组 '" + groupName + "': " + loader.get() + " 条规则");
+                    groupLoaded(groupName);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logging.logToError("加载分组 '" + groupName + "' 失败: " + cause.getMessage());
+                }
+            }
+        });
+        loadingGroups.put(groupName, loader);
+        loader.execute();
+    }
+
+    private void groupLoaded(String groupName) {
+        shards.loaded(groupName);
+        ruleCache.invalidate(groupName);
+        updateFilterEngine();
+        // 加载期间可能已经修改过该分组，现在才能保存
+        markDirty();
+    }
+
+    /**
+     * 在 EDT 上直接加载分组，用于删除、合并分组这类必须先拿到分组全部规则的操作
+     */
+    private void loadGroupNow(String groupName) throws IOException {
+        if (shards.isLoaded(groupName)) {
+            return;
+        }
+        List<FilterRule> rules = new ArrayList<>();
+        for (String line : shards.load(groupName)) {
+            FilterRule rule = FilterRule.fromConfigLine(line, groupName);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        appendLoadedRules(inGroup(rules, groupName), "");
+        shards.loaded(groupName);
+        ruleCache.invalidate(groupName);
+    }
+
+    /**
+     * 分片中的规则行保存的可能是分组改名前的组名，以分片所属的分组为准
+     */
+    private static List<FilterRule> inGroup(List<FilterRule> rules, String groupName) {
+        for (int i = 0; i < rules.size(); i++) {
+            FilterRule rule = rules.get(i);
+            if (!groupName.equals(rule.getGroupName())) {
+                rules.set(i, rule.withGroupName(groupName));
+            }
+        }
+        return rules;
+    }
+
+    private RuleGroup findGroup(String groupName) {
+        for (RuleGroup group : groupList) {
+            if (group.getGroupName().equals(groupName)) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 清空当前规则并在后台重新加载。加载期间禁用保存和导入，自动保存也会跳过，
+     * 避免把只加载了一部分的规则写回文件。
+     */
+    private void startLoading(Callable<List<String>> source, String defaultGroup, String groupRemark,
+                              boolean changed, Consumer<Integer> onLoaded) {
+        loading = true;
+        // 之前发起的分组加载全部作废，所有分组都以重新加载的规则为准
+        loadGeneration++;
+        loadingGroups.clear();
+        shards.replaceAll();
+        saveConfigButton.setEnabled(false);
+        loadConfigButton.setEnabled(false);
+        filePathLabel.setText(saveStatusText() + " | 正在加载规则...");
+        ruleStore.clear();
+        tableModel.clear();
+
+        ConfigLoader loader = new ConfigLoader(source, defaultGroup, batch -> appendLoadedRules(batch, groupRemark));
+        fullLoader = loader;
+        fullLoadRemark = groupRemark;
+        fullLoadChanged = changed;
+        loader.addPropertyChangeListener(evt -> {
+            if ("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE) {
+                // 插件卸载时已经提前处理过
+                if (fullLoader != loader) {
+                    return;
+                }
+                fullLoadFinished();
+                try {
+                    onLoaded.accept(loader.get());
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logging.logToError("加载规则文件失败: " + cause.getMessage());
+                }
+            }
+        });
+        loader.execute();
+    }
+
+    private void fullLoadFinished() {
+        fullLoader = null;
+        loading = false;
+        saveConfigButton.setEnabled(true);
+        loadConfigButton.setEnabled(true);
+        filePathLabel.setText(saveStatusText());
+        ruleCache.invalidateAll();
+        if (fullLoadChanged) {
+            markDirty();
+        }
+        updateFilterEngine();
+    }
+
+    /**
+     * 在 EDT 上追加一批后台解析好的规则
+     */
+    private void appendLoadedRules(List<FilterRule> batch, String groupRemark) {
+        Set<String> ensured = new HashSet<>();
+        for (FilterRule rule : batch) {
+            // 确保分组存在，如果不存在则动态创建；同一批中每个分组只查一次
+            if (ensured.add(rule.getGroupName())) {
+                ensureGroupExists(rule.getGroupName(), groupRemark);
+            }
+        }
+        ruleStore.addAll(batch);
+        tableModel.addRules(batch);
+    }
+
+    private void initializeUI() {
+        setLayout(new BorderLayout());
+
+        // 创建顶部面板：文件路径和搜索框
+        JPanel topPanel = new JPanel(new BorderLayout());
+        filePathLabel = new JLabel(saveStatusText());
+        filePathLabel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+        // 搜索面板
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        searchPanel.add(new JLabel("搜索: "));
+        searchField = new JTextField(20);
+        // 输入停顿后才搜索，连续输入时只执行最后一次
+        searchTimer = new javax.swing.Timer(SEARCH_DELAY_MS, e -> performSearch());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void changedUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void removeUpdate(DocumentEvent e) { searchTimer.restart(); }
+            public void insertUpdate(DocumentEvent e) { searchTimer.restart(); }
+        });
+        searchPanel.add(searchField);
+
+        topPanel.add(filePathLabel, BorderLayout.WEST);
+        topPanel.add(searchPanel, BorderLayout.EAST);
+
+        // 创建主分割面板：左侧分组管理，右侧规则管理
+        JSplitPane mainSplitPane = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT);
+        mainSplitPane.setDividerLocation(300);
+
+        // 左侧分组面板
+        JPanel groupPanel = createGroupPanel();
+        // 右侧规则面板
+        JPanel rulePanel = createRulePanel();
+
+        mainSplitPane.setLeftComponent(groupPanel);
+        mainSplitPane.setRightComponent(rulePanel);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(mainSplitPane, BorderLayout.CENTER);
+
+        // 命中统计由代理线程累加，定时重绘表格以显示最新数值
+        statsRepaintTimer = new javax.swing.Timer(2000, e -> {
+            ruleTable.repaint();
+            groupTable.repaint();
+        });
+        statsRepaintTimer.start();
+    }
+
+    private JPanel createGroupPanel() {
+        JPanel groupPanel = new JPanel(new BorderLayout());
+
+        // 分组表格
+        groupTableModel = new GroupTableModel(groupList);
+        groupTableModel.setGroupActivationListener(group -> {
+            shards.setActive(group.getGroupName(), group.isActive());
+            markDirty();
+            updateFilterEngine();
+        });
+        groupTableModel.setRuleCountProvider(group -> shards.isLoaded(group.getGroupName())
+                ? ruleStore.getGroupRules(group.getGroupName()).size() : shards.ruleCount(group.getGroupName()));
+        groupTable = new JTable(groupTableModel);
+        groupTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        groupTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                int selectedRow = groupTable.getSelectedRow();
+                if (selectedRow >= 0) {
+                    currentGroup = groupList.get(selectedRow);
+                    loadGroup(currentGroup.getGroupName());
+                    applyRuleFilter();
+                    updateFilterEngine();
+                }
+            }
+        });
+
+        JScrollPane groupScrollPane = new JScrollPane(groupTable);
+
+        // 分组操作按钮
+        JPanel groupButtonPanel = new JPanel(new GridLayout(2, 4, 5, 5));
+        addGroupButton = new JButton("添加分组");
+        moveToGroupButton = new JButton("移动规则");
+        deleteGroupButton = new JButton("删除分组");
+        editGroupButton = new JButton("编辑分组");
+
+
+        addGroupButton.addActionListener(e -> addGroup());
+        deleteGroupButton.addActionListener(e -> deleteGroup());
+        editGroupButton.addActionListener(e -> editGroup());
+        moveToGroupButton.addActionListener(e -> moveRulesToGroup());
+
+        groupButtonPanel.add(addGroupButton);
+        groupButtonPanel.add(deleteGroupButton);
+        groupButtonPanel.add(editGroupButton);
+        groupButtonPanel.add(moveToGroupButton);
+
+//        groupPanel.add(new JLabel("规则分组"), BorderLayout.NORTH);
+        groupPanel.add(groupScrollPane, BorderLayout.CENTER);
+        groupPanel.add(groupButtonPanel, BorderLayout.SOUTH);
+
+        return groupPanel;
+    }
+
+    private JPanel createRulePanel() {
+        JPanel rulePanel = new JPanel(new BorderLayout());
+
+        // 规则表格
+        tableModel = new RuleTableModel();
+        tableModel.setRuleEditListener(this::ruleEdited);
+        tableModel.setRiskProvider(ruleCache::describeRisk);
+        tableModel.setCoverageProvider(this::describeCoverage);
+        ruleTable = new JTable(tableModel);
+        // 风险在后台线程分析，分析完一条就重绘规则表
+        ruleCache.setRiskListener(() -> SwingUtilities.invokeLater(ruleTable::repaint));
+        // 表格模型包含全部规则，当前分组和搜索结果都通过 RowFilter 显示，行变化时只重新过滤变化的行
+        ruleSorter = new TableRowSorter<>(tableModel);
+        ruleSorter.setSortsOnUpdates(true);
+        ruleTable.setRowSorter(ruleSorter);
+        applyRuleFilter();
+        ruleTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        ruleTable.setDefaultEditor(RuleTarget.class, new DefaultCellEditor(new JComboBox<>(RuleTarget.values())));
+        // 表格内容变化后同步到代理过滤引擎，分组版本没变时不会重新编译
+        tableModel.addTableModelListener(e -> updateFilterEngine());
+        JScrollPane tableScrollPane = new JScrollPane(ruleTable);
+
+        // 规则操作按钮
+        JPanel ruleButtonPanel = new JPanel(new FlowLayout());
+        deleteButton = new JButton("删除选中规则");
+        generateButton = new JButton("生成过滤规则");
+        saveConfigButton = new JButton("保存配置");
+        loadConfigButton = new JButton("导入配置");
+
+        deleteButton.addActionListener(e -> deleteSelectedRules());
+        generateButton.addActionListener(e -> generateFinalRule());
+
+        // 历史回溯：把代理过滤启用的分组应用到已有的代理历史
+        backfillButton = new JButton("回溯历史");
+        backfillButton.addActionListener(e -> toggleBackfill());
+        backfillProgress = new JProgressBar(0, 100);
+        backfillProgress.setStringPainted(true);
+        backfillProgress.setVisible(false);
+        saveConfigButton.addActionListener(e -> saveConfig());
+        loadConfigButton.addActionListener(e -> loadConfig());
+        importHostListButton = new JButton("导入域名列表");
+        importHostListButton.addActionListener(e -> importHostList());
+
+        optimizeButton = new JButton("优化规则");
+        optimizeButton.addActionListener(e -> optimizeRules());
+
+        resetStatsButton = new JButton("重置统计");
+        exportStatsButton = new JButton("导出统计");
+        resetStatsButton.addActionListener(e -> resetStats());
+        exportStatsButton.addActionListener(e -> exportStats());
+
+        heartbeatButton = new JButton("心跳建议");
+        heartbeatButton.addActionListener(e -> showHeartbeatSuggestions());
+        templateButton = new JButton("模板建议");
+        templateButton.addActionListener(e -> showTemplateSuggestions());
+
+        // 代理过滤动作：命中当前分组规则的请求直接在代理中处理
+        engineActionBox = new JComboBox<>(FilterEngine.Action.values());
+        engineActionBox.setSelectedItem(filterEngine.getAction());
+        engineActionBox.addActionListener(e -> filterEngine.setAction((FilterEngine.Action) engineActionBox.getSelectedItem()));
+        // 流量分析开关，关闭后代理线程不再为对应的检测做任何事
+        heartbeatBox = new JCheckBox("心跳检测", heartbeatDetector.isEnabled());
+        heartbeatBox.addActionListener(e -> heartbeatDetector.setEnabled(heartbeatBox.isSelected()));
+        templaterBox = new JCheckBox("模板归纳", requestTemplater.isEnabled());
+        templaterBox.addActionListener(e -> requestTemplater.setEnabled(templaterBox.isSelected()));
+
+        ruleButtonPanel.add(deleteButton);
+        ruleButtonPanel.add(generateButton);
+        ruleButtonPanel.add(backfillButton);
+        ruleButtonPanel.add(backfillProgress);
+        ruleButtonPanel.add(saveConfigButton);
+        ruleButtonPanel.add(loadConfigButton);
+        ruleButtonPanel.add(importHostListButton);
+        ruleButtonPanel.add(optimizeButton);
+        ruleButtonPanel.add(resetStatsButton);
+        ruleButtonPanel.add(exportStatsButton);
+        ruleButtonPanel.add(heartbeatButton);
+        ruleButtonPanel.add(templateButton);
+        ruleButtonPanel.add(new JLabel("代理过滤:"));
+        ruleButtonPanel.add(engineActionBox);
+        ruleButtonPanel.add(heartbeatBox);
+        ruleButtonPanel.add(templaterBox);
+
+        // 规则显示区域
+        finalRuleArea = new JTextArea(5, 50);
+        finalRuleArea.setEditable(true);
+        JScrollPane ruleScrollPane = new JScrollPane(finalRuleArea);
+        JPanel ruleDisplayPanel = new JPanel(new BorderLayout());
+        ruleDisplayPanel.add(new JLabel("过滤规则:复制到过滤器进行过滤或匹配"), BorderLayout.NORTH);
+        ruleDisplayPanel.add(ruleScrollPane, BorderLayout.CENTER);
+
+        // 垂直分割面板
+        JSplitPane verticalSplitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tableScrollPane, ruleDisplayPanel);
+        verticalSplitPane.setDividerLocation(0.9); // 设置分割条在 80% 的位置（上方占 4/5，下方占 1/5）
+
+        rulePanel.add(verticalSplitPane, BorderLayout.CENTER);
+        rulePanel.add(ruleButtonPanel, BorderLayout.SOUTH);
+
+        return rulePanel;
+    }
+
+    /**
+     * 自动保存配置（静默保存，不显示提示框），由 SaveScheduler 在保存线程中调用。
+     * 规则没有变化时不写文件；有变化时只把增删追加到变更日志，日志过长才重写规则文件。
+     */
+    public void autoSaveConfig() {
+        if (loading && dirty) {
+            // 加载完成前不写文件，稍后再试
+            saveScheduler.changed();
+            return;
+        }
+        if (!dirty || loading) {
+            return; // 没有变化或正在加载，不执行保存
+        }
+
+        dirty = false;
+        try {
+            // 只有加载过且有变化的分组会写入，没加载的分组文件原样保留
+            if (!shards.save(ruleStore.snapshot())) {
+                return;
+            }
+            autoSaveCount++;
+            long currentTime = System.currentTimeMillis();
+            long timeSinceLastSave = (currentTime - lastSaveTime) / 1000;
+            lastSaveTime = currentTime;
+
+            // 更新文件路径标签显示自动保存信息，Swing 组件只能在 EDT 上修改
+            String status = saveStatusText() + " | 距上次: " + timeSinceLastSave + "秒前";
+            SwingUtilities.invokeLater(() -> {
+                if (filePathLabel != null) {
+                    filePathLabel.setText(status);
+                }
+            });
+
+            logging.logToOutput("自动保存配置成功！已加载规则: " + ruleStore.size() + " 条, 保存次数: " + autoSaveCount);
+        } catch (IOException e) {
+            dirty = true;
+            logging.logToError("自动保存配置时出错: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 规则发生了需要持久化的变化，安静期过后自动保存
+     */
+    private void markDirty() {
+        dirty = true;
+        saveScheduler.changed();
+        groupTableModel.countsChanged();
+    }
+
+    /**
+     * 插件卸载：停止定时器和历史回溯，结束后台加载，再立即保存尚未保存的修改
+     */
+    void shutdown() {
+        runOnEdt(() -> {
+            stopBackgroundWork();
+            finishLoading();
+        });
+        saveScheduler.flush();
+    }
+
+    /**
+     * 停止重绘和搜索定时器、流量分析的后台线程，取消正在进行的历史回溯。回溯在每条记录之间检查取消，很快就会结束
+     */
+    private void stopBackgroundWork() {
+        statsRepaintTimer.stop();
+        searchTimer.stop();
+        heartbeatDetector.shutdown();
+        requestTemplater.shutdown();
+        if (backfill != null && !backfill.isDone()) {
+            backfill.cancel(false);
+        }
+    }
+
+    /**
+     * 卸载时还在读取清单、导入规则或加载分组：等后台读完（有上限），把还没追加的规则直接补上并结束加载状态，
+     * 加载期间的修改才能随最后一次保存写入。超时或失败的部分保持未加载，保存时跳过，不会用不完整的规则覆盖文件。
+     */
+    private void finishLoading() {
+        SwingWorker<List<RuleGroup>, Void> reader = manifestReader;
+        if (reader != null) {
+            manifestRead(() -> reader.get(FINAL_LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        ConfigLoader loader = fullLoader;
+        if (loader != null) {
+            try {
+                appendLoadedRules(loader.drain(FINAL_LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS), fullLoadRemark);
+                fullLoadFinished();
+            } catch (Exception e) {
+                logging.logToError("卸载时规则文件还没有导入完成，导入期间的修改不会保存: " + e);
+            }
+        }
+        for (Map.Entry<String, ConfigLoader> entry : new ArrayList<>(loadingGroups.entrySet())) {
+            String groupName = entry.getKey();
+            try {
+                appendLoadedRules(inGroup(entry.getValue().drain(FINAL_LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS), groupName), "");
+                loadingGroups.remove(groupName);
+                groupLoaded(groupName);
+            } catch (Exception e) {
+                logging.logToError("卸载时分组 '" + groupName + "' 还没有加载完成，该分组的修改不会保存: " + e);
+            }
+        }
+    }
+
+    private void runOnEdt(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+            return;
+        }
+        try {
+            SwingUtilities.invokeAndWait(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            logging.logToError("卸载时结束加载出错: " + e.getCause());
+        }
+    }
+
+    private String saveStatusText() {
+        return "规则目录: " + shards.getDirectory().getAbsolutePath() + " | 自动保存: 修改后 " + SAVE_QUIET_MS / 1000
+                + " 秒 | 已保存: " + autoSaveCount + " 次";
+    }
+
+    private List<FilterRule> getCurrentGroupRules() {
+        if (currentGroup == null) {
+            return new ArrayList<>();
+        }
+        return ruleStore.getGroupRules(currentGroup.getGroupName());
+    }
+
+    /**
+     * 参与代理过滤的分组：勾选了"启用"的分组，一个都没有勾选时为当前分组
+     */
+    private List<RuleGroup> getActiveGroups() {
+        List<RuleGroup> active = new ArrayList<>();
+        for (RuleGroup group : groupList) {
+            if (group.isActive()) {
+                active.add(group);
+            }
+        }
+        if (active.isEmpty() && currentGroup != null) {
+            active.add(currentGroup);
+        }
+        return active;
+    }
+
+    private String activeGroupNames() {
+        StringBuilder names = new StringBuilder();
+        for (RuleGroup group : getActiveGroups()) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append('\'').append(group.getGroupName()).append('\'');
+        }
+        return names.length() > 0 ? names.toString() : "'Default'";
+    }
+
+    /**
+     * 获取生成规则使用的规则列表（搜索时返回搜索结果，否则返回启用分组的规则）
+     */
+    private List<FilterRule> getDisplayedRules() {
+        String searchText = searchField.getText().trim();
+        if (!searchText.isEmpty()) {
+            // 返回搜索结果的规则列表
+            return ruleStore.search(searchText);
+        } else {
+            // 返回启用分组的规则列表
+            List<FilterRule> rules = new ArrayList<>();
+            for (RuleGroup group : getActiveGroups()) {
+                rules.addAll(ruleStore.getGroupRules(group.getGroupName()));
+            }
+            return rules;
+        }
+    }
+
+    private void performSearch() {
+        applyRuleFilter();
+    }
+
+    /**
+     * 搜索框为空时显示当前分组规则，否则显示全局搜索结果。只替换过滤条件，不复制规则列表。
+     */
+    private void applyRuleFilter() {
+        String searchText = searchField.getText().trim();
+        if (!searchText.isEmpty()) {
+            Set<FilterRule> matches = Collections.newSetFromMap(new IdentityHashMap<>());
+            matches.addAll(ruleStore.search(searchText));
+            ruleSorter.setRowFilter(new RowFilter<RuleTableModel, Integer>() {
+                @Override
+                public boolean include(Entry<? extends RuleTableModel, ? extends Integer> entry) {
+                    return matches.contains(entry.getModel().getRule(entry.getIdentifier()));
+                }
+            });
+        } else {
+            String groupName = currentGroup != null ? currentGroup.getGroupName() : null;
+            ruleSorter.setRowFilter(new RowFilter<RuleTableModel, Integer>() {
+                @Override
+                public boolean include(Entry<? extends RuleTableModel, ? extends Integer> entry) {
+                    return entry.getModel().getRule(entry.getIdentifier()).getGroupName().equals(groupName);
+                }
+            });
+        }
+    }
+
+    // 分组操作方法
+    private void addGroup() {
+        String groupName = JOptionPane.showInputDialog(this, "请输入分组名称:", "添加分组", JOptionPane.QUESTION_MESSAGE);
+        if (groupName != null && !groupName.trim().isEmpty()) {
+            String remark ="" ;
+            groupTableModel.addGroup(new RuleGroup(groupName.trim(), remark));
+            shards.addGroup(groupName.trim(), remark);
+            markDirty();
+        }
+    }
+
+    private void deleteGroup() {
+        int selectedRow = groupTable.getSelectedRow();
+        if (selectedRow >= 0) {
+            RuleGroup groupToDelete = groupList.get(selectedRow);
+            if (groupToDelete.getGroupName().equals("Default group")) {
+                JOptionPane.showMessageDialog(this, "不能删除Default group！");
+                return;
+            }
+            if (loading || loadingGroups.containsKey(groupToDelete.getGroupName())) {
+                JOptionPane.showMessageDialog(this, "分组正在加载，请稍后再试");
+                return;
+            }
+
+            int result = JOptionPane.showConfirmDialog(this,
+                    "确定要删除分组 '" + groupToDelete.getGroupName() + "' 及其所有规则吗？",
+                    "确认删除", JOptionPane.YES_NO_OPTION);
+
+            if (result == JOptionPane.YES_OPTION) {
+                // 将属于该分组的规则移动到Default group，分组没有加载过时先读出它的规则
+                try {
+                    loadGroupNow(groupToDelete.getGroupName());
+                } catch (IOException e) {
+                    logging.logToError("加载分组失败: " + e.getMessage());
+                    JOptionPane.showMessageDialog(this, "加载分组失败: " + e.getMessage());
+                    return;
+                }
+                Map<FilterRule, FilterRule> movedRules = ruleStore.mergeGroup(groupToDelete.getGroupName(), "Default group");
+                shards.removeGroup(groupToDelete.getGroupName());
+                loadGroup("Default group");
+                ruleCache.remove(groupToDelete.getGroupName());
+                ruleCache.invalidate("Default group");
+                markDirty();
+                groupTableModel.removeGroup(selectedRow);
+                if (currentGroup == groupToDelete) {
+                    currentGroup = groupList.get(0);
+                }
+                tableModel.rulesReplaced(movedRules);
+                // 被删除的分组可能是启用的分组
+                updateFilterEngine();
+            }
+        } else {
+            JOptionPane.showMessageDialog(this, "请先选择要删除的分组");
+        }
+    }
+
+    private void editGroup() {
+        int selectedRow = groupTable.getSelectedRow();
+        if (selectedRow >= 0) {
+            RuleGroup groupToEdit = groupList.get(selectedRow);
+            if (loading || loadingGroups.containsKey(groupToEdit.getGroupName())) {
+                JOptionPane.showMessageDialog(this, "分组正在加载，请稍后再试");
+                return;
+            }
+            String newName = JOptionPane.showInputDialog(this, "修改分组名称:", groupToEdit.getGroupName());
+            if (newName != null && !newName.trim().isEmpty()) {
+                String oldName = groupToEdit.getGroupName();
+                groupToEdit.setGroupName(newName.trim());
+                groupRenamed(groupToEdit, oldName);
+                groupTableModel.fireTableRowsUpdated(selectedRow, selectedRow);
+            }
+
+            String newRemark = JOptionPane.showInputDialog(this, "修改分组备注:", groupToEdit.getRemark());
+            if (newRemark != null) {
+                groupToEdit.setRemark(newRemark);
+                shards.setRemark(groupToEdit.getGroupName(), newRemark);
+                markDirty();
+                groupTableModel.fireTableRowsUpdated(selectedRow, selectedRow);
+            }
+        } else {
+            JOptionPane.showMessageDialog(this, "请先选择要编辑的分组");
+        }
+    }
+
+    /**
+     * 分组改名后更新该分组内的规则，分组编号不变，其它分组的规则不受影响
+     */
+    private void groupRenamed(RuleGroup group, String oldName) {
+        if (oldName.equals(group.getGroupName())) {
+            return;
+        }
+        boolean merging = false;
+        for (RuleGroup other : groupList) {
+            merging |= other != group && other.getGroupName().equals(group.getGroupName());
+        }
+        if (merging) {
+            // 与已有分组合并：原分组的规则必须先读出来才能并入目标分组
+            try {
+                loadGroupNow(oldName);
+            } catch (IOException e) {
+                logging.logToError("加载分组失败: " + e.getMessage());
+            }
+        }
+        Map<FilterRule, FilterRule> renamed = ruleStore.renameGroup(oldName, group.getGroupName());
+        shards.renameGroup(oldName, group.getGroupName());
+        if (merging) {
+            loadGroup(group.getGroupName());
+        }
+        ruleCache.rename(oldName, group.getGroupName());
+        markDirty();
+        // 过滤条件中的分组名也要更新
+        applyRuleFilter();
+        tableModel.rulesReplaced(renamed);
+    }
+
+    private void moveRulesToGroup() {
+        int[] selectedRuleRows = ruleTable.getSelectedRows();
+        if (selectedRuleRows.length == 0) {
+            JOptionPane.showMessageDialog(this, "请先选择要移动的规则");
+            return;
+        }
+
+        // 选择目标分组
+        String[] groupNames = groupList.stream().map(RuleGroup::getGroupName).toArray(String[]::new);
+        String targetGroupName = (String) JOptionPane.showInputDialog(this,
+                "选择目标分组:", "移动规则", JOptionPane.QUESTION_MESSAGE, null, groupNames, groupNames[0]);
+
+        if (targetGroupName != null) {
+            List<FilterRule> selectedRules = getSelectedRules();
+            // 搜索时选中的规则可能来自多个分组，移动前记下原分组
+            invalidateGroupsOf(selectedRules);
+            Map<FilterRule, FilterRule> moved = ruleStore.move(selectedRules, targetGroupName);
+            ruleCache.invalidate(targetGroupName);
+            markDirty();
+            loadGroup(targetGroupName);
+            tableModel.rulesReplaced(moved);
+            JOptionPane.showMessageDialog(this, "已移动 " + selectedRuleRows.length + " 条规则到分组: " + targetGroupName);
+        }
+    }
+
+    /**
+     * 让规则所在的各个分组重新编译。搜索结果跨分组，不能只处理当前分组
+     */
+    private void invalidateGroupsOf(Collection<FilterRule> rules) {
+        Set<String> groupNames = new HashSet<>();
+        for (FilterRule rule : rules) {
+            groupNames.add(rule.getGroupName());
+        }
+        for (String groupName : groupNames) {
+            ruleCache.invalidate(groupName);
+        }
+    }
+
+    /**
+     * 添加一条规则，表格只插入这一行
+     */
+    public void addRule(FilterRule rule) {
+        ruleStore.add(rule);
+        ruleCache.invalidate(rule.getGroupName());
+        markDirty();
+        tableModel.addRule(rule);
+        loadGroup(rule.getGroupName());
+    }
+
+    /**
+     * 表格中直接编辑了规则，规则原来所在的分组和现在所在的分组都需要重新编译
+     */
+    private void ruleEdited(FilterRule previous, FilterRule updated) {
+        ruleStore.replace(previous, updated);
+        markDirty();
+        ruleCache.invalidate(previous.getGroupName());
+        if (!previous.getGroupName().equals(updated.getGroupName())) {
+            ruleCache.invalidate(updated.getGroupName());
+        }
+    }
+
+    /**
+     * 将启用分组的匹配器同步到代理过滤引擎。每个分组的匹配器单独缓存，只有规则变化过的分组才会重新编译。
+     */
+    private void updateFilterEngine() {
+        // 加载中的规则不完整，加载完成后会再同步一次
+        if (loading) {
+            return;
+        }
+        List<RuleGroup> groups = getActiveGroups();
+        List<RuleMatcher> matchers = new ArrayList<>(groups.size());
+        for (RuleGroup group : groups) {
+            String groupName = group.getGroupName();
+            // 没加载的分组先用已有的规则，加载完成后会再同步一次
+            loadGroup(groupName);
+            matchers.add(ruleCache.get(groupName, () -> ruleStore.getGroupRules(groupName)));
+        }
+        filterEngine.setMatchers(groups, matchers);
+    }
+
+    /**
+     * 表格中选中的规则
+     */
+    private List<FilterRule> getSelectedRules() {
+        List<FilterRule> selected = new ArrayList<>();
+        for (int row : ruleTable.getSelectedRows()) {
+            int modelRow = ruleTable.convertRowIndexToModel(row);
+            if (modelRow >= 0 && modelRow < tableModel.getRowCount()) {
+                selected.add(tableModel.getRule(modelRow));
+            }
+        }
+        return selected;
+    }
+
+    private void deleteSelectedRules() {
+        int[] selectedRows = ruleTable.getSelectedRows();
+        if (selectedRows.length > 0) {
+            List<FilterRule> selectedRules = getSelectedRules();
+            invalidateGroupsOf(selectedRules);
+            ruleStore.removeAll(selectedRules);
+            markDirty();
+            tableModel.removeRules(selectedRules);
+            JOptionPane.showMessageDialog(this, "已删除 " + selectedRows.length + " 条规则");
+        } else {
+            JOptionPane.showMessageDialog(this, "请先选择要删除的规则");
+        }
+    }
+
+    /**
+     * 生成最终规则 - 搜索时基于搜索结果，否则基于启用分组的规则
+     */
+    private void generateFinalRule() {
+        List<FilterRule> displayedRules = getDisplayedRules();
+        // 重复和被覆盖的规则不影响匹配结果，不写进生成的正则
+        List<FilterRule> minimizedRules = RuleOptimizer.minimize(displayedRules);
+        List<String> regexes = new ArrayList<>();
+        int hostLists = 0;
+        for (FilterRule rule : minimizedRules) {
+            if (!rule.isEnabled()) {
+                continue;
+            }
+            String regex = rule.toHistoryFilterRegex();
+            if (regex == null) {
+                hostLists++;
+            } else {
+                regexes.add(regex);
+            }
+        }
+
+        // 字面量规则按公共前缀合并，表达式更短，History Filter 也不必对每个分支重复比较前缀
+        String ruleText = RegexAssembler.assemble(regexes);
+        try {
+            // 逐条校验，已编译过的规则直接命中缓存；每条都合法时合并的结果也合法
+            for (String regex : regexes) {
+                ruleCache.pattern(regex);
+            }
+            finalRuleArea.setText(ruleText);
+            copyToClipboard(ruleText);
+
+            // 显示生成规则的来源信息
+            String sourceInfo = searchField.getText().isEmpty() ?
+                    "分组 " + activeGroupNames() :
+                    "搜索结果（关键词: '" + searchField.getText() + "'）";
+
+            logging.logToOutput("基于" + sourceInfo + "生成规则: " + ruleText);
+            JOptionPane.showMessageDialog(this,
+                    "规则已生成并复制到剪贴板！\n生成来源: " + sourceInfo +
+                            "\n规则数量: " + displayedRules.size() + " 条" +
+                            (minimizedRules.size() < displayedRules.size()
+                                    ? "（跳过重复或被覆盖的规则 " + (displayedRules.size() - minimizedRules.size()) + " 条）" : "") +
+                            (hostLists > 0 ? "\n主机列表 " + hostLists + " 个无法写成正则，只在代理过滤中生效" : ""));
+        } catch (PatternSyntaxException e) {
+            logging.logToError("生成的正则表达式无效: " + e.getMessage());
+            JOptionPane.showMessageDialog(this, "生成的正则表达式无效: " + e.getMessage());
+        } catch (RegexCostAnalyzer.QuarantinedException e) {
+            // 粘贴到 History Filter 后会拖死整个历史视图，直接拒绝生成
+            logging.logToError("存在被隔离的规则，拒绝生成: " + e.getMessage());
+            JOptionPane.showMessageDialog(this, "存在被隔离的规则（见\"风险\"列），拒绝生成: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 列出当前分组中重复或被覆盖的规则，确认后删除勾选的规则
+     */
+    private void optimizeRules() {
+        List<RuleOptimizer.Proposal> proposals = RuleOptimizer.analyze(getCurrentGroupRules());
+        if (proposals.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "当前分组没有重复或被覆盖的规则");
+            return;
+        }
+
+        DefaultTableModel proposalModel = new DefaultTableModel(new Object[]{"删除", "多余规则", "匹配目标", "原因", "覆盖它的规则"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                return columnIndex == 0 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int rowIndex, int columnIndex) {
+                return columnIndex == 0;
+            }
+        };
+        for (RuleOptimizer.Proposal proposal : proposals) {
+            proposalModel.addRow(new Object[]{Boolean.TRUE, proposal.getRedundant().getRuleContent(),
+                    proposal.getRedundant().getTarget().toString(), proposal.getReason(),
+                    proposal.getCoveredBy().getRuleContent()});
+        }
+        JScrollPane proposalPane = new JScrollPane(new JTable(proposalModel));
+        proposalPane.setPreferredSize(new Dimension(800, 300));
+
+        int result = JOptionPane.showConfirmDialog(this, proposalPane,
+                "发现 " + proposals.size() + " 条多余规则，删除勾选的规则？", JOptionPane.OK_CANCEL_OPTION);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        List<FilterRule> toRemove = new ArrayList<>();
+        for (int i = 0; i < proposals.size(); i++) {
+            if (Boolean.TRUE.equals(proposalModel.getValueAt(i, 0))) {
+                toRemove.add(proposals.get(i).getRedundant());
+            }
+        }
+        if (!toRemove.isEmpty()) {
+            ruleStore.removeAll(toRemove);
+            ruleCache.invalidate(currentGroup.getGroupName());
+            markDirty();
+            tableModel.removeRules(toRemove);
+            logging.logToOutput("分组 '" + currentGroup.getGroupName() + "' 删除多余规则 " + toRemove.size() + " 条");
+        }
+    }
+
+    /**
+     * 列出心跳检测发现的周期性请求，确认后把勾选的建议作为路径规则加入当前分组。
+     * 当前分组已有相同规则的建议不再列出。
+     */
+    private void showHeartbeatSuggestions() {
+        if (currentGroup == null) {
+            return;
+        }
+        String groupName = currentGroup.getGroupName();
+        Set<String> existing = new HashSet<>();
+        for (FilterRule rule : getCurrentGroupRules()) {
+            if (rule.getTarget() == RuleTarget.PATH) {
+                existing.add(rule.getTargetParam() + ' ' + rule.getRuleContent());
+            }
+        }
+        List<HeartbeatDetector.Suggestion> suggestions = new ArrayList<>();
+        for (HeartbeatDetector.Suggestion suggestion : heartbeatDetector.suggestions()) {
+            // 同一主机同一路径的 GET 和 POST 心跳对应同一条规则
+            if (existing.add(suggestion.getHost() + ' ' + suggestion.getPathPattern())) {
+                suggestions.add(suggestion);
+            }
+        }
+        if (suggestions.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "暂未发现新的周期性请求");
+            return;
+        }
+
+        DefaultTableModel suggestionModel = new DefaultTableModel(new Object[]{"添加", "主机", "方法", "路径规则", "次数", "周期(s)", "抖动"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                return columnIndex == 0 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int rowIndex, int columnIndex) {
+                return columnIndex == 0;
+            }
+        };
+        for (HeartbeatDetector.Suggestion suggestion : suggestions) {
+            suggestionModel.addRow(new Object[]{Boolean.TRUE, suggestion.getHost(), suggestion.getMethod(),
+                    suggestion.getPathPattern(), String.valueOf(suggestion.getCount()),
+                    String.format("%.1f", suggestion.getPeriodMs() / 1000), String.format("%.0f%%", suggestion.getJitter() * 100)});
+        }
+        JScrollPane suggestionPane = new JScrollPane(new JTable(suggestionModel));
+        suggestionPane.setPreferredSize(new Dimension(800, 300));
+
+        int result = JOptionPane.showConfirmDialog(this, suggestionPane,
+                "发现 " + suggestions.size() + " 个周期性请求，添加勾选的规则到分组 '" + groupName + "'？", JOptionPane.OK_CANCEL_OPTION);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        int added = 0;
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (Boolean.TRUE.equals(suggestionModel.getValueAt(i, 0))) {
+                addRule(suggestions.get(i).toRule(groupName));
+                added++;
+            }
+        }
+        if (added > 0) {
+            logging.logToOutput("分组 '" + groupName + "' 添加心跳规则 " + added + " 条");
+        }
+    }
+
+    /**
+     * 列出从代理流量归纳出的路径模板，确认后把勾选的模板加入当前分组，
+     * 再提示删除当前分组中已被新模板覆盖的字面量路径规则
+     */
+    private void showTemplateSuggestions() {
+        if (currentGroup == null) {
+            return;
+        }
+        String groupName = currentGroup.getGroupName();
+        Set<String> existing = new HashSet<>();
+        for (FilterRule rule : getCurrentGroupRules()) {
+            if (rule.getTarget() == RuleTarget.PATH) {
+                existing.add(rule.getTargetParam() + ' ' + rule.getRuleContent());
+            }
+        }
+        List<RequestTemplater.Suggestion> suggestions = new ArrayList<>();
+        for (RequestTemplater.Suggestion suggestion : requestTemplater.suggestions()) {
+            if (existing.add(suggestion.getHost() + ' ' + suggestion.getTemplate())) {
+                suggestions.add(suggestion);
+            }
+        }
+        if (suggestions.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "暂未归纳出新的路径模板");
+            return;
+        }
+
+        DefaultTableModel suggestionModel = new DefaultTableModel(new Object[]{"添加", "主机", "方法", "模板规则", "请求数"}, 0) {
+            @Override
+            public Class<?> getColumnClass(int columnIndex) {
+                return columnIndex == 0 ? Boolean.class : String.class;
+            }
+
+            @Override
+            public boolean isCellEditable(int rowIndex, int columnIndex) {
+                return columnIndex == 0;
+            }
+        };
+        for (RequestTemplater.Suggestion suggestion : suggestions) {
+            suggestionModel.addRow(new Object[]{Boolean.TRUE, suggestion.getHost(), suggestion.getMethod(),
+                    suggestion.getTemplate(), String.valueOf(suggestion.getCount())});
+        }
+        JScrollPane suggestionPane = new JScrollPane(new JTable(suggestionModel));
+        suggestionPane.setPreferredSize(new Dimension(800, 300));
+
+        int result = JOptionPane.showConfirmDialog(this, suggestionPane,
+                "归纳出 " + suggestions.size() + " 个路径模板，添加勾选的模板到分组 '" + groupName + "'？", JOptionPane.OK_CANCEL_OPTION);
+        if (result != JOptionPane.OK_OPTION) {
+            return;
+        }
+        // 主机 -> 该主机上新加的模板
+        Map<String, List<Pattern>> added = new HashMap<>();
+        int addedCount = 0;
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (Boolean.TRUE.equals(suggestionModel.getValueAt(i, 0))) {
+                FilterRule rule = suggestions.get(i).toRule(groupName);
+                addRule(rule);
+                added.computeIfAbsent(HostIndex.normalize(rule.getTargetParam()), k -> new ArrayList<>())
+                        .add(Pattern.compile(rule.getRuleContent()));
+                addedCount++;
+            }
+        }
+        if (addedCount == 0) {
+            return;
+        }
+        logging.logToOutput("分组 '" + groupName + "' 添加模板规则 " + addedCount + " 条");
+
+        // 模板两端锚定，只有字面量本身就是一条符合模板的完整路径时才算被覆盖。
+        // 模板只在自己的主机上生效，只有主机条件相同的字面量规则才可能被覆盖，不带主机条件的规则对所有主机生效，不算。
+        // 字面量规则按子串匹配，删除后只把这些内容当作一部分的其它路径不再被过滤，所以只提示、由用户决定
+        List<FilterRule> covered = new ArrayList<>();
+        for (FilterRule rule : getCurrentGroupRules()) {
+            String scope = rule.getTargetParam();
+            List<Pattern> templates = scope == null || scope.trim().isEmpty() ? null : added.get(HostIndex.normalize(scope));
+            if (rule.getTarget() == RuleTarget.PATH && templates != null && isCoveredByTemplate(rule, templates)) {
+                covered.add(rule);
+            }
+        }
+        if (covered.isEmpty()) {
+            return;
+        }
+        int remove = JOptionPane.showConfirmDialog(this,
+                "分组中有 " + covered.size() + " 条同一主机上的字面量路径规则本身就是符合新模板的完整路径，是否删除？\n"
+                        + "字面量规则按子串匹配，删除后只包含这些内容、整体不符合模板的路径不再被过滤。",
+                "删除被覆盖的规则", JOptionPane.YES_NO_OPTION);
+        if (remove == JOptionPane.YES_OPTION) {
+            ruleStore.removeAll(covered);
+            ruleCache.invalidate(groupName);
+            markDirty();
+            tableModel.removeRules(covered);
+            logging.logToOutput("分组 '" + groupName + "' 删除被模板覆盖的规则 " + covered.size() + " 条");
+        }
+    }
+
+    /**
+     * 字面量规则的每个分支作为一条完整路径时都能匹配某个模板。
+     * 模板以 ^ 开头、以 (?:\?|$) 结尾，find 只会在整条路径上成立
+     */
+    private static boolean isCoveredByTemplate(FilterRule rule, List<Pattern> templates) {
+        if (rule.getRuleContent() == null) {
+            return false;
+        }
+        List<String> alternatives = TextMatcher.literalAlternatives(rule.getRuleContent());
+        if (alternatives == null) {
+            return false;
+        }
+        for (String alternative : alternatives) {
+            boolean found = false;
+            for (Pattern template : templates) {
+                if (template.matcher(alternative).find()) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 开始回溯代理历史，正在回溯时再次点击则取消
+     */
+    private void toggleBackfill() {
+        if (backfill != null && !backfill.isDone()) {
+            backfill.cancel(false);
+            return;
+        }
+        // 与代理过滤使用同一组启用分组和匹配器，分组都加载完才能开始
+        updateFilterEngine();
+        if (loading || !loadingGroups.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "规则还在加载，请稍后再试");
+            return;
+        }
+        FilterEngine.ActiveSet activeSet = filterEngine.getActiveSet();
+        String groupNames = activeGroupNames();
+        if (activeSet.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "启用的分组没有可用的规则");
+            return;
+        }
+        // 历史记录无法丢弃，除了标注以外一律高亮
+        FilterEngine.Action action = filterEngine.getAction() == FilterEngine.Action.ANNOTATE
+                ? FilterEngine.Action.ANNOTATE : FilterEngine.Action.HIGHLIGHT;
+
+        HistoryBackfill worker = new HistoryBackfill(() -> api.proxy().history(), activeSet, action);
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                backfillProgress.setValue((Integer) evt.getNewValue());
+            } else if ("state".equals(evt.getPropertyName()) && evt.getNewValue() == SwingWorker.StateValue.DONE) {
+                backfillFinished(worker, groupNames);
+            }
+        });
+        backfill = worker;
+        backfillButton.setText("取消回溯");
+        backfillProgress.setValue(0);
+        backfillProgress.setVisible(true);
+        revalidate();
+        logging.logToOutput("开始回溯代理历史，分组: " + groupNames + "，动作: " + action);
+        worker.execute();
+    }
+
+    private void backfillFinished(HistoryBackfill worker, String groupNames) {
+        backfillButton.setText("回溯历史");
+        backfillProgress.setVisible(false);
+        revalidate();
+        if (worker.isCancelled()) {
+            logging.logToOutput("已取消回溯，已处理 " + worker.getProcessed() + " / " + worker.getTotal() + " 条");
+            return;
+        }
+        try {
+            int hits = worker.get();
+            logging.logToOutput("回溯完成，分组 " + groupNames + " 命中 " + hits + " / " + worker.getTotal() + " 条历史记录");
+            JOptionPane.showMessageDialog(this, "回溯完成！\n命中: " + hits + " 条\n历史记录: " + worker.getTotal() + " 条");
+        } catch (Exception e) {
+            logging.logToError("回溯代理历史时出错: " + e.getMessage());
+            JOptionPane.showMessageDialog(this, "回溯代理历史时出错: " + e.getMessage());
+        }
+    }
+
+    private void resetStats() {
+        for (FilterRule rule : ruleStore.getAll()) {
+            rule.getStats().reset();
+        }
+        for (RuleGroup group : groupList) {
+            group.getStats().reset();
+        }
+        ruleTable.repaint();
+        groupTable.repaint();
+        logging.logToOutput("已重置全部规则的命中统计");
+    }
+
+    /**
+     * 规则在所在分组的匹配器中被其它规则覆盖时返回说明，否则返回空字符串。
+     * 只有编译过的分组（启用的分组）才有结果
+     */
+    private String describeCoverage(FilterRule rule) {
+        FilterRule coveredBy = ruleCache.coveredBy(rule.getGroupName(), rule);
+        return coveredBy == null ? "" : "被 " + coveredBy.getRuleContent() + " 覆盖";
+    }
+
+    /**
+     * 导出全部规则的命中统计，文件名以 .json 结尾时导出 JSON，否则导出 CSV
+     */
+    private void exportStats() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导出统计 (.csv / .json)");
+        fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+        fileChooser.setSelectedFile(new File("FilterPro_Stats.csv"));
+
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                if (file.getName().toLowerCase().endsWith(".json")) {
+                    RuleStatsExporter.writeJson(ruleStore.getAll(), this::describeCoverage, writer);
+                } else {
+                    RuleStatsExporter.writeCsv(ruleStore.getAll(), this::describeCoverage, writer);
+                }
+                JOptionPane.showMessageDialog(this, "统计导出成功！\n文件路径: " + file.getAbsolutePath());
+            } catch (IOException e) {
+                logging.logToError("导出统计时出错: " + e.getMessage());
+                JOptionPane.showMessageDialog(this, "导出统计时出错: " + e.getMessage());
+            }
+        }
+    }
+
+    private void copyToClipboard(String text) {
+        try {
+            Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+            StringSelection stringSelection = new StringSelection(text);
+            clipboard.setContents(stringSelection, null);
+        } catch (Exception e) {
+            logging.logToError("复制到剪贴板失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 手动保存：把已加载的分组完整写成新的分片并清空变更日志
+     */
+    private void saveConfig() {
+        try {
+            shards.compact(ruleStore.snapshot());
+            dirty = false;
+            JOptionPane.showMessageDialog(this, "配置保存成功！\n规则目录: " + shards.getDirectory().getAbsolutePath());
+            filePathLabel.setText(saveStatusText());
+        } catch (IOException e) {
+            logging.logToError("保存配置时出错: " + e.getMessage());
+            JOptionPane.showMessageDialog(this, "保存配置时出错: " + e.getMessage());
+        }
+    }
+
+    private void loadConfig() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导入配置");
+        fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+
+        int userSelection = fileChooser.showOpenDialog(this);
+        if (userSelection == JFileChooser.APPROVE_OPTION) {
+            File fileToOpen = fileChooser.getSelectedFile();
+            startLoading(() -> readLines(fileToOpen), "默认分组", "从文件加载", true, loaded -> {
+                logging.logToOutput("导入配置: " + fileToOpen.getAbsolutePath() + "，规则 " + loaded + " 条");
+                JOptionPane.showMessageDialog(this, "配置导入成功！");
+            });
+        }
+    }
+
+    /**
+     * 导入 hosts 文件或 adblock 格式的域名列表：去重后的列表保存在规则目录中，当前分组里只增加一条主机列表规则。
+     * 再次导入同名的列表时覆盖原来的列表文件，不重复添加规则。
+     */
+    private void importHostList() {
+        if (currentGroup == null) {
+            return;
+        }
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("导入域名列表 (hosts / adblock)");
+        fileChooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File source = fileChooser.getSelectedFile();
+        String baseName = source.getName().replaceFirst("\\.[^.]*$", "").replaceAll("[^\\w.-]", "_");
+        File target = new File(shards.getDirectory(), "hostlist-" + baseName + ".txt").getAbsoluteFile();
+        String groupName = currentGroup.getGroupName();
+        importHostListButton.setEnabled(false);
+        new SwingWorker<BlockListImporter, Void>() {
+            @Override
+            protected BlockListImporter doInBackground() throws Exception {
+                Files.createDirectories(target.getParentFile().toPath());
+                File temp = new File(target.getPath() + ".tmp");
+                BlockListImporter importer = new BlockListImporter();
+                try (Reader in = new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8);
+                     Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+                    out.write("# " + source.getAbsolutePath() + "\n");
+                    importer.read(in, out);
+                }
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                // 提前读入缓存，之后编译匹配器时不必在界面线程上读取
+                HostSet.load(target);
+                return importer;
+            }
+
+            @Override
+            protected void done() {
+                importHostListButton.setEnabled(true);
+                BlockListImporter importer;
+                try {
+                    importer = get();
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    logging.logToError("导入域名列表失败: " + cause.getMessage());
+                    JOptionPane.showMessageDialog(RuleManagerPanel.this, "导入域名列表失败: " + cause.getMessage());
+                    return;
+                }
+                boolean updated = false;
+                for (FilterRule rule : ruleStore.getAll()) {
+                    if (rule.getTarget() == RuleTarget.HOST_LIST && target.getPath().equals(rule.getRuleContent())) {
+                        // 规则没变，列表文件变了，匹配器需要重新读取
+                        ruleCache.recompile(rule.getGroupName());
+                        updated = true;
+                    }
+                }
+                if (updated) {
+                    updateFilterEngine();
+                } else {
+                    addRule(new FilterRule(target.getPath(), "Host List", true,
+                            source.getName() + "，" + importer.getEntries() + " 个条目", groupName, RuleTarget.HOST_LIST, ""));
+                }
+                String summary = "域名列表 " + source.getName() + ": " + importer.getEntries() + " 个条目，重复 "
+                        + importer.getDuplicates() + " 个，无法识别 " + importer.getSkipped() + " 行";
+                logging.logToOutput("导入" + summary + "，保存到 " + target.getPath());
+                JOptionPane.showMessageDialog(RuleManagerPanel.this, (updated ? "已更新" : "已导入") + summary);
+            }
+        }.execute();
+    }
+
+    /**
+     * 按 UTF-8 读取导入的规则文件，与保存时的编码一致。
+     * 旧版按平台默认编码导出的文件不是合法的 UTF-8 时，改按平台默认编码读取
+     */
+    private static List<String> readLines(File file) throws IOException {
+        try {
+            return readLines(file, StandardCharsets.UTF_8);
+        } catch (MalformedInputException e) {
+            return readLines(file, Charset.defaultCharset());
+        }
+    }
+
+    private static List<String> readLines(File file, Charset charset) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), charset)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 确保分组存在，如果不存在则创建
+     */
+    private void ensureGroupExists(String groupName, String defaultRemark) {
+        if (groupName == null || groupName.trim().isEmpty()) {
+//            没有组默认创建Default
+            groupName = "Default group";
+        }
+
+        for (RuleGroup group : groupList) {
+            if (group.getGroupName().equals(groupName)) {
+                return; // 分组已存在
+            }
+        }
+
+        // 分组不存在，创建新分组
+        groupTableModel.addGroup(new RuleGroup(groupName, defaultRemark.isEmpty() ? "" : defaultRemark));
+        shards.addGroup(groupName, defaultRemark);
+//        关闭动态加载的日志
+//        logging.logToOutput("动态创建分组: " + groupName);
+    }
+}
+
+class RuleTableModel extends AbstractTableModel {
+    /**
+     * 规则在表格中被直接编辑后回调，表格中的原规则已经换成编辑后的新规则
+     */
+    interface RuleEditListener {
+        void ruleEdited(FilterRule previous, FilterRule updated);
+    }
+
+    // 全部规则，按加入顺序；表格显示哪些行由 RowFilter 决定
+    private final List<FilterRule> ruleList = new ArrayList<>();
+    private RuleEditListener ruleEditListener;
+    private Function<FilterRule, String> riskProvider = rule -> "";
+    private Function<FilterRule, String> coverageProvider = rule -> "";
+    private final String[] columnNames = {"启用", "规则内容", "规则类型", "匹配目标", "目标参数", "备注", "组名", "风险", "命中", "耗时(ms)", "覆盖"};
+
+    FilterRule getRule(int rowIndex) {
+        return ruleList.get(rowIndex);
+    }
+
+    void clear() {
+        ruleList.clear();
+        fireTableDataChanged();
+    }
+
+    void addRule(FilterRule rule) {
+        ruleList.add(rule);
+        fireTableRowsInserted(ruleList.size() - 1, ruleList.size() - 1);
+    }
+
+    void addRules(List<FilterRule> rules) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        int first = ruleList.size();
+        ruleList.addAll(rules);
+        fireTableRowsInserted(first, ruleList.size() - 1);
+    }
+
+    /**
+     * 删除多条规则，按连续区间从后往前发出删除事件
+     */
+    void removeRules(Collection<FilterRule> rules) {
+        Set<FilterRule> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(rules);
+        int end = ruleList.size() - 1;
+        while (end >= 0) {
+            if (!removed.contains(ruleList.get(end))) {
+                end--;
+                continue;
+            }
+            int start = end;
+            while (start > 0 && removed.contains(ruleList.get(start - 1))) {
+                start--;
+            }
+            ruleList.subList(start, end + 1).clear();
+            fireTableRowsDeleted(start, end);
+            end = start - 1;
+        }
+    }
+
+    /**
+     * 规则在表格之外被替换（移动、分组改名），replacements 为原规则到新规则的对应关系，只更新涉及的行
+     */
+    void rulesReplaced(Map<FilterRule, FilterRule> replacements) {
+        if (replacements.isEmpty()) {
+            return;
+        }
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i < ruleList.size(); i++) {
+            FilterRule updated = replacements.get(ruleList.get(i));
+            if (updated != null) {
+                ruleList.set(i, updated);
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+            }
+        }
+        if (first >= 0) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+
+    public void setRuleEditListener(RuleEditListener ruleEditListener) {
+        this.ruleEditListener = ruleEditListener;
+    }
+
+    public void setRiskProvider(Function<FilterRule, String> riskProvider) {
+        this.riskProvider = riskProvider;
+    }
+
+    /**
+     * 规则被同组其它规则覆盖、不参与匹配时的说明，命中数为 0 的原因
+     */
+    public void setCoverageProvider(Function<FilterRule, String> coverageProvider) {
+        this.coverageProvider = coverageProvider;
+    }
+
+    @Override
+    public int getRowCount() {
+        return ruleList.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        if (columnIndex == 0) {
+            return Boolean.class;
+        }
+        if (columnIndex == 3) {
+            return RuleTarget.class;
+        }
+        if (columnIndex == 8) {
+            return Long.class;
+        }
+        if (columnIndex == 9) {
+            return Double.class;
+        }
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        // 风险和统计列由程序生成，只读
+        return columnIndex < 7;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        FilterRule rule = ruleList.get(rowIndex);
+        switch (columnIndex) {
+            case 0: return rule.isEnabled();
+            case 1: return rule.getRuleContent();
+            case 2: return rule.getRuleType();
+            case 3: return rule.getTarget();
+            case 4: return rule.getTargetParam();
+            case 5: return rule.getRemark();
+            case 6: return rule.getGroupName();
+            case 7: return riskProvider.apply(rule);
+            case 8: return rule.getStats().getHits();
+            case 9: return rule.getStats().getMatchMillis();
+            case 10: return coverageProvider.apply(rule);
+            default: return null;
+        }
+    }
+
+    @Override
+    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+        FilterRule rule = ruleList.get(rowIndex);
+        FilterRule updated;
+        switch (columnIndex) {
+            case 0: updated = rule.withEnabled((Boolean) aValue); break;
+            case 1: updated = rule.withRuleContent((String) aValue); break;
+            case 2: updated = rule.withRuleType((String) aValue); break;
+            case 3: updated = rule.withTarget((RuleTarget) aValue); break;
+            case 4: updated = rule.withTargetParam((String) aValue); break;
+            case 5: updated = rule.withRemark((String) aValue); break;
+            case 6: updated = rule.withGroupName((String) aValue); break;
+            default: return;
+        }
+        ruleList.set(rowIndex, updated);
+        if (ruleEditListener != null) {
+            ruleEditListener.ruleEdited(rule, updated);
+        }
+        fireTableCellUpdated(rowIndex, columnIndex);
+    }
+}
+
+class GroupTableModel extends AbstractTableModel {
+    /**
+     * 分组的"启用"被勾选或取消后回调
+     */
+    interface GroupActivationListener {
+        void groupActivationChanged(RuleGroup group);
+    }
+
+    private final List<RuleGroup> groupList;
+    private GroupActivationListener groupActivationListener;
+    private ToIntFunction<RuleGroup> ruleCountProvider = group -> 0;
+    private final String[] columnNames = {"组名", "备注", "命中总数", "匹配耗时(ms)", "启用", "规则数"};
+
+    public GroupTableModel(List<RuleGroup> groupList) {
+        this.groupList = groupList;
+    }
+
+    public void setGroupActivationListener(GroupActivationListener groupActivationListener) {
+        this.groupActivationListener = groupActivationListener;
+    }
+
+    /**
+     * 分组的规则条数，没有加载的分组取清单中记录的条数
+     */
+    public void setRuleCountProvider(ToIntFunction<RuleGroup> ruleCountProvider) {
+        this.ruleCountProvider = ruleCountProvider;
+    }
+
+    /**
+     * 规则条数可能变化，刷新所有行但不影响选中
+     */
+    void countsChanged() {
+        if (!groupList.isEmpty()) {
+            fireTableRowsUpdated(0, groupList.size() - 1);
+        }
+    }
+
+    void addGroup(RuleGroup group) {
+        groupList.add(group);
+        fireTableRowsInserted(groupList.size() - 1, groupList.size() - 1);
+    }
+
+    void removeGroup(int rowIndex) {
+        groupList.remove(rowIndex);
+        fireTableRowsDeleted(rowIndex, rowIndex);
+    }
+
+    @Override
+    public int getRowCount() {
+        return groupList.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        RuleGroup group = groupList.get(rowIndex);
+        switch (columnIndex) {
+            case 0: return group.getGroupName();
+            case 1: return group.getRemark();
+            case 2: return group.getStats().getHits();
+            case 3: return group.getStats().getMatchMillis();
+            case 4: return group.isActive();
+            case 5: return ruleCountProvider.applyAsInt(group);
+            default: return null;
+        }
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return columnIndex == 4 ? Boolean.class : Object.class;
+    }
+
+    /**
+     * 只有"启用"可以直接勾选，组名和备注通过"编辑分组"修改
+     */
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return columnIndex == 4;
+    }
+
+    @Override
+    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+        if (columnIndex != 4) {
+            return;
+        }
+        RuleGroup group = groupList.get(rowIndex);
+        group.setActive((Boolean) aValue);
+        if (groupActivationListener != null) {
+            groupActivationListener.groupActivationChanged(group);
+        }
+        fireTableCellUpdated(rowIndex, columnIndex);
+    }
+}
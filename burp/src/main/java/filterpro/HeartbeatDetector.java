@@ -0,0 +1,266 @@
+package filterpro;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.handler.HttpHandler;
+import burp.api.montoya.http.handler.HttpRequestToBeSent;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.handler.RequestToBeSentAction;
+import burp.api.montoya.http.handler.ResponseReceivedAction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 被动发现心跳、日志上报这类按固定间隔重复出现的请求，给出过滤规则建议。
+ * 按 (主机, 方法, 归一化路径) 统计经过代理的请求：
+ * <ul>
+ *   <li>先用 Count-Min 草图估计每个端点的出现次数，草图定期减半，反映的是近期频率；
+ *       只出现一两次的页面请求不会占用计数器。草图每行用不同种子的 FNV-1a 哈希键的 UTF-8 字节，各行互相独立；</li>
+ *   <li>估计次数达到门槛的端点才分配计数器，计数器数量固定，满了淘汰最久没出现的端点；</li>
+ *   <li>每个计数器用指数加权的均值和方差跟踪请求间隔，间隔足够稳定的判定为周期性请求。</li>
+ * </ul>
+ * 草图和计数器的大小都是固定的，内存不随会话时长和请求种类增长。
+ * 代理线程只取出主机、方法、路径和时间，统计在 ObservationQueue 的后台线程上进行，可以随时关闭。
+ * 路径去掉查询参数后按 RequestTemplater 归一化，数字、十六进制、UUID 和日期段不区分取值。
+ * 建议的规则是以主机为条件的路径规则，代理过滤时只读取主机和路径，不会过滤其它主机上的同名路径。
+ */
+class HeartbeatDetector implements HttpHandler {
+    // 同时跟踪的端点数
+    private static final int CAPACITY = 512;
+    // Count-Min 草图的行数和每行宽度（2 的幂）
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 1 << 15;
+    // 草图累计这么多次观察后所有计数减半，保证单次出现的请求很难凑出足够的估计次数
+    private static final int SKETCH_RESET = SKETCH_WIDTH;
+    // 估计次数达到该值才开始跟踪间隔
+    private static final int ADMIT_COUNT = 2;
+    // 至少观察到这么多次间隔才做判断
+    private static final int MIN_INTERVALS = 8;
+    // 间隔的变异系数（标准差 / 均值）上限
+    private static final double MAX_JITTER = 0.25;
+    private static final long MIN_PERIOD_MS = 1000;
+    private static final long MAX_PERIOD_MS = 15 * 60 * 1000;
+    private static final double ALPHA = 0.2;
+    // 草图各行的哈希种子
+    private static final long[] SKETCH_SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+    // 根路径多半是页面本身的刷新，不作为心跳建议
+    private static final String ROOT_PATTERN = normalizePath("/");
+
+    /**
+     * 一条周期性请求及对应的规则建议
+     */
+    static class Suggestion {
+        private final String host;
+        private final String method;
+        private final String pathPattern;
+        private final long count;
+        private final double periodMs;
+        private final double jitter;
+
+        Suggestion(String host, String method, String pathPattern, long count, double periodMs, double jitter) {
+            this.host = host;
+            this.method = method;
+            this.pathPattern = pathPattern;
+            this.count = count;
+            this.periodMs = periodMs;
+            this.jitter = jitter;
+        }
+
+        String getHost() { return host; }
+        String getMethod() { return method; }
+        String getPathPattern() { return pathPattern; }
+        long getCount() { return count; }
+        double getPeriodMs() { return periodMs; }
+        double getJitter() { return jitter; }
+
+        FilterRule toRule(String groupName) {
+            String remark = host + " " + method + " 约每 " + Math.round(periodMs / 1000) + " 秒";
+            return new FilterRule(pathPattern, "Heartbeat", true, remark, groupName, RuleTarget.PATH, host);
+        }
+    }
+
+    private static final class Counter {
+        private final String host;
+        private final String method;
+        private final String pathPattern;
+        private long count;
+        private long lastSeen;
+        private int intervals;
+        private double meanInterval;
+        private double varInterval;
+
+        Counter(String host, String method, String pathPattern) {
+            this.host = host;
+            this.method = method;
+            this.pathPattern = pathPattern;
+        }
+
+        void observe(long now) {
+            count++;
+            if (lastSeen > 0) {
+                double interval = Math.max(0, now - lastSeen);
+                if (intervals == 0) {
+                    meanInterval = interval;
+                } else {
+                    double diff = interval - meanInterval;
+                    double increment = ALPHA * diff;
+                    meanInterval += increment;
+                    varInterval = (1 - ALPHA) * (varInterval + diff * increment);
+                }
+                intervals++;
+            }
+            lastSeen = now;
+        }
+
+        double jitter() {
+            return meanInterval > 0 ? Math.sqrt(varInterval) / meanInterval : Double.MAX_VALUE;
+        }
+    }
+
+    private final ObservationQueue queue = new ObservationQueue("heartbeat");
+    private final int[][] sketch = new int[SKETCH_DEPTH][SKETCH_WIDTH];
+    private int sketchAdditions;
+    // 按最近出现的顺序排列，满了淘汰最久没出现的端点
+    private final Map<String, Counter> counters = new LinkedHashMap<String, Counter>(CAPACITY * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Counter> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    @Override
+    public RequestToBeSentAction handleHttpRequestToBeSent(HttpRequestToBeSent request) {
+        // 只看浏览器经过代理的流量，扫描器和 Intruder 的请求不代表页面行为
+        if (queue.isEnabled() && request.toolSource().isFromTool(ToolType.PROXY)) {
+            String host = request.httpService().host();
+            String method = request.method();
+            String path = request.path();
+            // 间隔按请求经过代理的时间计算，不受后台线程排队的影响
+            long now = System.currentTimeMillis();
+            queue.submit(() -> observe(host, method, path, now));
+        }
+        return RequestToBeSentAction.continueWith(request);
+    }
+
+    @Override
+    public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived response) {
+        return ResponseReceivedAction.continueWith(response);
+    }
+
+    boolean isEnabled() { return queue.isEnabled(); }
+
+    void setEnabled(boolean enabled) {
+        queue.setEnabled(enabled);
+    }
+
+    void shutdown() {
+        queue.shutdown();
+    }
+
+    synchronized void observe(String host, String method, String path, long now) {
+        String pathPattern = normalizePath(path);
+        String key = host + ' ' + method + ' ' + pathPattern;
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            if (addToSketch(key) < ADMIT_COUNT) {
+                return;
+            }
+            counter = new Counter(host, method, pathPattern);
+            counters.put(key, counter);
+        }
+        counter.observe(now);
+    }
+
+    /**
+     * 把一次出现计入草图，返回估计的近期出现次数。
+     * 保守更新：只增加等于最小值的计数，减少哈希冲突带来的高估。
+     */
+    private int addToSketch(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int[] indexes = new int[SKETCH_DEPTH];
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            indexes[row] = (int) hash(bytes, SKETCH_SEEDS[row]) & (SKETCH_WIDTH - 1);
+            estimate = Math.min(estimate, sketch[row][indexes[row]]);
+        }
+        estimate++;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            if (sketch[row][indexes[row]] < estimate) {
+                sketch[row][indexes[row]] = estimate;
+            }
+        }
+        if (++sketchAdditions >= SKETCH_RESET) {
+            for (int[] row : sketch) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>>= 1;
+                }
+            }
+            sketchAdditions = 0;
+        }
+        return estimate;
+    }
+
+    /**
+     * 以 seed 为初值的 64 位 FNV-1a，再做一次 murmur3 的 fmix64 让低位也充分混合。
+     * 不同种子的结果互不相关，两个键在一行冲突不代表在其它行也冲突
+     */
+    static long hash(byte[] bytes, long seed) {
+        long h = seed ^ 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * 当前判定为周期性的端点，按请求次数从多到少排列
+     */
+    synchronized List<Suggestion> suggestions() {
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (Counter counter : counters.values()) {
+            if (counter.intervals < MIN_INTERVALS || ROOT_PATTERN.equals(counter.pathPattern)) {
+                continue;
+            }
+            if (counter.meanInterval < MIN_PERIOD_MS || counter.meanInterval > MAX_PERIOD_MS) {
+                continue;
+            }
+            double jitter = counter.jitter();
+            if (jitter <= MAX_JITTER) {
+                suggestions.add(new Suggestion(counter.host, counter.method, counter.pathPattern,
+                        counter.count, counter.meanInterval, jitter));
+            }
+        }
+        suggestions.sort((a, b) -> Long.compare(b.count, a.count));
+        return suggestions;
+    }
+
+    synchronized void clear() {
+        counters.clear();
+        for (int[] row : sketch) {
+            Arrays.fill(row, 0);
+        }
+        sketchAdditions = 0;
+    }
+
+    /**
+     * 去掉查询参数，动态段替换为对应的正则，其余字符按字面量转义，结果两端锚定，用于区分端点，也是建议的路径规则
+     */
+    static String normalizePath(String path) {
+        return RequestTemplater.generalize(stripQuery(path));
+    }
+
+    private static String stripQuery(String path) {
+        int query = path.indexOf('?');
+        return query < 0 ? path : path.substring(0, query);
+    }
+}
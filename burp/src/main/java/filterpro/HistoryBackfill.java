@@ -0,0 +1,100 @@
+package filterpro;
+
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+
+import javax.swing.SwingWorker;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 历史回溯：把代理过滤当前启用的分组应用到已经抓到的代理历史上，命中的记录按命中的分组标注。
+ * 与代理过滤一样按分组顺序逐个匹配，取第一个命中的分组，各分组的匹配器不合并成一个。
+ * 历史记录按块处理，每块在 ForkJoin 线程池中拆分并行匹配，块之间检查取消并汇报进度，
+ * 整个过程不占用 EDT。进度通过 SwingWorker 的 progress 属性（0-100）通知界面。
+ */
+class HistoryBackfill extends SwingWorker<Integer, Void> {
+    // 每次从历史列表中取出处理的条数，也是进度和取消检查的粒度
+    private static final int CHUNK_SIZE = 4096;
+    // 单个 ForkJoin 任务处理的最少条数，再小拆分开销就超过匹配本身
+    private static final int SPLIT_THRESHOLD = 256;
+
+    private final Supplier<List<ProxyHttpRequestResponse>> history;
+    private final FilterEngine.ActiveSet activeSet;
+    private final FilterEngine.Action action;
+    private final AtomicInteger processed = new AtomicInteger();
+    private volatile int total;
+
+    /**
+     * action 只能是标注或高亮，历史记录无法丢弃
+     */
+    HistoryBackfill(Supplier<List<ProxyHttpRequestResponse>> history, FilterEngine.ActiveSet activeSet,
+                    FilterEngine.Action action) {
+        this.history = history;
+        this.activeSet = activeSet;
+        this.action = action;
+    }
+
+    int getProcessed() { return processed.get(); }
+    int getTotal() { return total; }
+
+    /**
+     * 返回命中的历史条数
+     */
+    @Override
+    protected Integer doInBackground() {
+        List<ProxyHttpRequestResponse> items = history.get();
+        total = items.size();
+        if (total == 0 || activeSet.isEmpty()) {
+            return 0;
+        }
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        int hits = 0;
+        try {
+            for (int start = 0; start < total && !isCancelled(); start += CHUNK_SIZE) {
+                List<ProxyHttpRequestResponse> chunk = items.subList(start, Math.min(start + CHUNK_SIZE, total));
+                hits += pool.invoke(new MatchTask(chunk, 0, chunk.size()));
+                setProgress((int) ((long) processed.get() * 100 / total));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return hits;
+    }
+
+    private class MatchTask extends RecursiveTask<Integer> {
+        private final List<ProxyHttpRequestResponse> items;
+        private final int from;
+        private final int to;
+
+        MatchTask(List<ProxyHttpRequestResponse> items, int from, int to) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                MatchTask left = new MatchTask(items, from, mid);
+                left.fork();
+                int right = new MatchTask(items, mid, to).compute();
+                return left.join() + right;
+            }
+            int hits = 0;
+            for (int i = from; i < to && !isCancelled(); i++) {
+                ProxyHttpRequestResponse item = items.get(i);
+                RuleGroup group = item.finalRequest() == null ? null : activeSet.match(new HttpRequestInput(item.finalRequest()));
+                if (group != null) {
+                    FilterEngine.applyAnnotations(item.annotations(), action, group.getGroupName());
+                    hits++;
+                }
+                processed.incrementAndGet();
+            }
+            return hits;
+        }
+    }
+}
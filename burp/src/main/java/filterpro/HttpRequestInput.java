@@ -0,0 +1,60 @@
+package filterpro;
+
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+/**
+ * 基于 Montoya HttpRequest 的匹配输入，各部分在匹配器需要时才读取。
+ * 请求体和完整请求的序列化开销较大，第一次读取后缓存，多个分组依次匹配时只序列化一次。
+ */
+class HttpRequestInput implements MatchInput {
+    private final HttpRequest request;
+    private String body;
+    private String text;
+
+    HttpRequestInput(HttpRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public String method() {
+        return request.method();
+    }
+
+    @Override
+    public String host() {
+        return request.httpService().host();
+    }
+
+    @Override
+    public String path() {
+        return request.path();
+    }
+
+    @Override
+    public String query() {
+        String path = request.path();
+        int index = path.indexOf('?');
+        return index < 0 ? "" : path.substring(index + 1);
+    }
+
+    @Override
+    public String header(String name) {
+        return request.headerValue(name);
+    }
+
+    @Override
+    public CharSequence body() {
+        if (body == null) {
+            body = request.bodyToString();
+        }
+        return body;
+    }
+
+    @Override
+    public CharSequence text() {
+        if (text == null) {
+            text = request.toString();
+        }
+        return text;
+    }
+}
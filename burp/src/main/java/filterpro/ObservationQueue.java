@@ -0,0 +1,47 @@
+package filterpro;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把代理线程上的流量统计交给单独的后台线程串行执行，代理线程只做一次入队，不会在检测器的锁上排队。
+ * 队列有界，积压时直接丢弃新的观察：检测只依赖统计规律，偶尔丢几条不影响结果，也不会拖慢代理。
+ * 关闭检测或卸载插件后的观察直接丢弃。
+ */
+class ObservationQueue {
+    private static final int CAPACITY = 4096;
+
+    private final ThreadPoolExecutor executor;
+    private volatile boolean enabled = true;
+
+    ObservationQueue(String name) {
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(CAPACITY), r -> {
+            Thread thread = new Thread(r, "FilterPro-" + name);
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    boolean isEnabled() { return enabled; }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 在后台线程执行一次观察，可在任意线程调用
+     */
+    void submit(Runnable observation) {
+        if (enabled) {
+            executor.execute(observation);
+        }
+    }
+
+    /**
+     * 丢弃排队中的观察并结束后台线程，用于插件卸载
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
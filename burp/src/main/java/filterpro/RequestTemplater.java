@@ -0,0 +1,481 @@
+package filterpro;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.handler.HttpHandler;
+import burp.api.montoya.http.handler.HttpRequestToBeSent;
+import burp.api.montoya.http.handler.HttpResponseReceived;
+import burp.api.montoya.http.handler.RequestToBeSentAction;
+import burp.api.montoya.http.handler.ResponseReceivedAction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把路径和查询参数中每次请求都会变化的部分归纳成模板，生成一条通用的路径规则，
+ * 代替成百上千条只差一个时间戳或 ID 的字面量规则。例如 /track?t=1700000000&id=&lt;UUID&gt;
+ * 归纳为 ^/track\?t=\d+&amp;id=[0-9a-fA-F-]{36}(?:\?|$)。
+ * 模板两端锚定，只匹配整条路径，不会命中把它当作子串的其它路径；
+ * 超过 MAX_PATH_LENGTH 被截断的路径只锚定开头。模板是从某个主机的流量中归纳出来的，建议的规则以该主机为条件，
+ * 不会过滤其它主机上碰巧同构的路径。
+ * <ul>
+ *   <li>路径按 / ? &amp; = ; 切分，纯数字（包括时间戳）、十六进制串、UUID、ISO 日期直接识别为动态段；</li>
+ *   <li>经过代理的请求按 (主机, 方法, 分隔符结构) 增量聚类，某个位置在其余部分相同的请求中
+ *       出现了足够多的不同取值时，这个位置也归纳为通配段；</li>
+ *   <li>结构数、每个结构的聚类数和记录的取值数都有上限，内存不随会话时长增长。</li>
+ * </ul>
+ * 聚类在 ObservationQueue 的后台线程上进行，代理线程只取出主机、方法和路径，可以随时关闭。
+ */
+class RequestTemplater implements HttpHandler {
+    private static final String SEPARATORS = "/?&=;";
+    private static final int MAX_PATH_LENGTH = 512;
+    // 同时跟踪的分隔符结构数，满了淘汰最久没出现的
+    private static final int MAX_SHAPES = 512;
+    private static final int MAX_CLUSTERS_PER_SHAPE = 16;
+    // 一个位置出现这么多不同的取值后归纳为通配段
+    private static final int MIN_VARIANTS = 4;
+    // 聚类至少包含这么多请求才给出建议
+    private static final int MIN_COUNT = 10;
+
+    /**
+     * 片段的类别，包含关系：DIGITS ⊂ HEX ⊂ ANY，UUID、DATE ⊂ ANY
+     */
+    enum TokenClass {
+        LITERAL(null),
+        DIGITS("\\d+"),
+        HEX("[0-9a-fA-F]+"),
+        UUID("[0-9a-fA-F-]{36}"),
+        DATE("\\d{4}-\\d{2}-\\d{2}[^/?&=;]*"),
+        ANY("[^/?&=;]*");
+
+        private final String regex;
+
+        TokenClass(String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * 本类别的片段是否都属于 other
+         */
+        boolean within(TokenClass other) {
+            return this == other || other == ANY || (this == DIGITS && other == HEX);
+        }
+
+        static TokenClass union(TokenClass a, TokenClass b) {
+            if (a.within(b)) {
+                return b;
+            }
+            if (b.within(a)) {
+                return a;
+            }
+            return ANY;
+        }
+    }
+
+    /**
+     * 切分后的路径：tokens 比 separators 多一个，依次交替排列
+     */
+    private static final class Tokens {
+        private final String[] tokens;
+        private final TokenClass[] classes;
+        private final String separators;
+        private final boolean truncated;
+
+        Tokens(String[] tokens, TokenClass[] classes, String separators, boolean truncated) {
+            this.tokens = tokens;
+            this.classes = classes;
+            this.separators = separators;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * 一个聚类：每个位置是一个字面量或一个类别
+     */
+    private static final class Cluster {
+        private final String[] literals;
+        private final TokenClass[] classes;
+        private final String separators;
+        private final boolean truncated;
+        private long count;
+        // 位置 -> 与本聚类仅在该位置不同的请求出现过的取值
+        private final Map<Integer, Set<String>> variants = new HashMap<>();
+
+        Cluster(Tokens tokens) {
+            this.literals = tokens.tokens.clone();
+            this.classes = tokens.classes.clone();
+            this.separators = tokens.separators;
+            this.truncated = tokens.truncated;
+            for (int i = 0; i < classes.length; i++) {
+                if (classes[i] != TokenClass.LITERAL) {
+                    literals[i] = null;
+                }
+            }
+        }
+
+        boolean accepts(int i, String token, TokenClass tokenClass) {
+            if (classes[i] == TokenClass.LITERAL) {
+                return tokenClass == TokenClass.LITERAL && literals[i].equals(token);
+            }
+            return tokenClass == TokenClass.LITERAL ? classes[i] == TokenClass.ANY : tokenClass.within(classes[i]);
+        }
+
+        /**
+         * 不接受的位置数超过一个时返回 -2，全部接受返回 -1，否则返回唯一不接受的位置
+         */
+        int mismatch(Tokens tokens) {
+            int position = -1;
+            for (int i = 0; i < classes.length; i++) {
+                if (!accepts(i, tokens.tokens[i], tokens.classes[i])) {
+                    if (position >= 0) {
+                        return -2;
+                    }
+                    position = i;
+                }
+            }
+            return position;
+        }
+
+        boolean covers(Cluster other) {
+            for (int i = 0; i < classes.length; i++) {
+                boolean accepted = other.classes[i] == TokenClass.LITERAL
+                        ? accepts(i, other.literals[i], TokenClass.LITERAL)
+                        : other.classes[i].within(classes[i]);
+                if (!accepted) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void generalize(int i, TokenClass tokenClass) {
+            classes[i] = tokenClass;
+            literals[i] = null;
+            variants.remove(i);
+        }
+
+        boolean isDynamic() {
+            for (TokenClass tokenClass : classes) {
+                if (tokenClass != TokenClass.LITERAL) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String toRegex() {
+            return RequestTemplater.toRegex(literals, classes, separators, truncated);
+        }
+    }
+
+    /**
+     * 一条模板规则建议
+     */
+    static class Suggestion {
+        private final String host;
+        private final String method;
+        private final String template;
+        private final long count;
+
+        Suggestion(String host, String method, String template, long count) {
+            this.host = host;
+            this.method = method;
+            this.template = template;
+            this.count = count;
+        }
+
+        String getHost() { return host; }
+        String getMethod() { return method; }
+        String getTemplate() { return template; }
+        long getCount() { return count; }
+
+        FilterRule toRule(String groupName) {
+            return new FilterRule(template, "Template Rule", true, host + " " + method, groupName, RuleTarget.PATH, host);
+        }
+    }
+
+    private static final class Shape {
+        private final String host;
+        private final String method;
+        private final List<Cluster> clusters = new ArrayList<>();
+
+        Shape(String host, String method) {
+            this.host = host;
+            this.method = method;
+        }
+    }
+
+    private final ObservationQueue queue = new ObservationQueue("templater");
+    private final Map<String, Shape> shapes = new LinkedHashMap<String, Shape>(MAX_SHAPES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Shape> eldest) {
+            return size() > MAX_SHAPES;
+        }
+    };
+
+    @Override
+    public RequestToBeSentAction handleHttpRequestToBeSent(HttpRequestToBeSent request) {
+        if (queue.isEnabled() && request.toolSource().isFromTool(ToolType.PROXY)) {
+            String host = request.httpService().host();
+            String method = request.method();
+            String path = request.path();
+            queue.submit(() -> observe(host, method, path));
+        }
+        return RequestToBeSentAction.continueWith(request);
+    }
+
+    @Override
+    public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived response) {
+        return ResponseReceivedAction.continueWith(response);
+    }
+
+    boolean isEnabled() { return queue.isEnabled(); }
+
+    void setEnabled(boolean enabled) {
+        queue.setEnabled(enabled);
+    }
+
+    void shutdown() {
+        queue.shutdown();
+    }
+
+    synchronized void observe(String host, String method, String path) {
+        Tokens tokens = tokenize(path);
+        Shape shape = shapes.computeIfAbsent(shapeKey(host, method, tokens), k -> new Shape(host, method));
+
+        Cluster near = null;
+        int nearPosition = -1;
+        for (Cluster cluster : shape.clusters) {
+            int position = cluster.mismatch(tokens);
+            if (position == -1) {
+                cluster.count++;
+                return;
+            }
+            if (position < 0) {
+                continue;
+            }
+            TokenClass current = cluster.classes[position];
+            TokenClass incoming = tokens.classes[position];
+            if (current != TokenClass.LITERAL && incoming != TokenClass.LITERAL
+                    && TokenClass.union(current, incoming) != TokenClass.ANY) {
+                // 类别之间的放宽（数字 -> 十六进制）不需要等更多取值
+                cluster.generalize(position, TokenClass.union(current, incoming));
+                cluster.count++;
+                absorb(shape, cluster);
+                return;
+            }
+            if (near == null && current == TokenClass.LITERAL) {
+                near = cluster;
+                nearPosition = position;
+            }
+        }
+
+        if (near != null) {
+            Set<String> values = near.variants.computeIfAbsent(nearPosition, k -> new HashSet<>());
+            values.add(tokens.tokens[nearPosition]);
+            if (values.size() + 1 >= MIN_VARIANTS) {
+                // 加上聚类自己的取值，这个位置已经出现了足够多的不同取值
+                near.generalize(nearPosition, TokenClass.ANY);
+                near.count++;
+                absorb(shape, near);
+                return;
+            }
+        }
+
+        if (shape.clusters.size() >= MAX_CLUSTERS_PER_SHAPE) {
+            Cluster smallest = shape.clusters.get(0);
+            for (Cluster cluster : shape.clusters) {
+                if (cluster.count < smallest.count) {
+                    smallest = cluster;
+                }
+            }
+            shape.clusters.remove(smallest);
+        }
+        Cluster cluster = new Cluster(tokens);
+        cluster.count = 1;
+        shape.clusters.add(cluster);
+    }
+
+    /**
+     * 聚类泛化后，把被它覆盖的其它聚类并入它
+     */
+    private static void absorb(Shape shape, Cluster general) {
+        for (Iterator<Cluster> it = shape.clusters.iterator(); it.hasNext(); ) {
+            Cluster other = it.next();
+            if (other != general && general.covers(other)) {
+                general.count += other.count;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 包含动态段且请求数足够的模板，按请求数从多到少排列
+     */
+    synchronized List<Suggestion> suggestions() {
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (Shape shape : shapes.values()) {
+            for (Cluster cluster : shape.clusters) {
+                if (cluster.count >= MIN_COUNT && cluster.isDynamic()) {
+                    suggestions.add(new Suggestion(shape.host, shape.method, cluster.toRegex(), cluster.count));
+                }
+            }
+        }
+        suggestions.sort((a, b) -> Long.compare(b.count, a.count));
+        return suggestions;
+    }
+
+    /**
+     * 请求对应的模板：已经学到的聚类优先，否则只按片段类别归纳这一条路径
+     */
+    synchronized String templateFor(String host, String method, String path) {
+        Tokens tokens = tokenize(path);
+        Shape shape = shapes.get(shapeKey(host, method, tokens));
+        if (shape != null) {
+            for (Cluster cluster : shape.clusters) {
+                if (cluster.mismatch(tokens) == -1) {
+                    return cluster.toRegex();
+                }
+            }
+        }
+        return toRegex(tokens.tokens, tokens.classes, tokens.separators, tokens.truncated);
+    }
+
+    synchronized void clear() {
+        shapes.clear();
+    }
+
+    /**
+     * 只按片段类别归纳一条路径，数字、十六进制、UUID 和日期段替换为对应的正则，其余按字面量转义，结果两端锚定
+     */
+    static String generalize(String path) {
+        Tokens tokens = tokenize(path);
+        return toRegex(tokens.tokens, tokens.classes, tokens.separators, tokens.truncated);
+    }
+
+    private static String shapeKey(String host, String method, Tokens tokens) {
+        return host + ' ' + method + ' ' + tokens.separators + (tokens.truncated ? " ..." : "");
+    }
+
+    private static Tokens tokenize(String path) {
+        boolean truncated = path.length() > MAX_PATH_LENGTH;
+        if (truncated) {
+            path = path.substring(0, MAX_PATH_LENGTH);
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder separators = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < path.length(); i++) {
+            if (SEPARATORS.indexOf(path.charAt(i)) >= 0) {
+                tokens.add(path.substring(start, i));
+                separators.append(path.charAt(i));
+                start = i + 1;
+            }
+        }
+        tokens.add(path.substring(start));
+
+        String[] tokenArray = tokens.toArray(new String[0]);
+        TokenClass[] classes = new TokenClass[tokenArray.length];
+        for (int i = 0; i < tokenArray.length; i++) {
+            classes[i] = classify(tokenArray[i]);
+        }
+        return new Tokens(tokenArray, classes, separators.toString(), truncated);
+    }
+
+    static TokenClass classify(String token) {
+        int length = token.length();
+        if (length == 0) {
+            return TokenClass.LITERAL;
+        }
+        boolean digits = true;
+        boolean hex = true;
+        for (int i = 0; i < length; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                digits = false;
+                if ((c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                    hex = false;
+                }
+            }
+        }
+        if (digits) {
+            return TokenClass.DIGITS;
+        }
+        // 较短的十六进制串多半是普通单词（cafe、add、beef）
+        if (hex && length >= 8 && hasDigit(token)) {
+            return TokenClass.HEX;
+        }
+        if (isUuid(token)) {
+            return TokenClass.UUID;
+        }
+        if (isDate(token)) {
+            return TokenClass.DATE;
+        }
+        return TokenClass.LITERAL;
+    }
+
+    private static boolean hasDigit(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.isDigit(token.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUuid(String token) {
+        if (token.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = token.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * yyyy-MM-dd 开头，后面可以跟时间部分
+     */
+    private static boolean isDate(String token) {
+        if (token.length() < 10 || token.charAt(4) != '-' || token.charAt(7) != '-') {
+            return false;
+        }
+        for (int i : new int[]{0, 1, 2, 3, 5, 6, 8, 9}) {
+            if (!Character.isDigit(token.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从路径开头锚定；结尾必须是路径末尾或查询串的开始，截断的路径结尾不锚定
+     */
+    private static String toRegex(String[] literals, TokenClass[] classes, String separators, boolean truncated) {
+        String regex = "^" + segments(literals, classes, separators);
+        return truncated ? regex : regex + FilterRule.PATH_END;
+    }
+
+    private static String segments(String[] literals, TokenClass[] classes, String separators) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < classes.length; i++) {
+            if (i > 0) {
+                regex.append(RegexAssembler.escape(String.valueOf(separators.charAt(i - 1))));
+            }
+            regex.append(classes[i] == TokenClass.LITERAL ? RegexAssembler.escape(literals[i]) : classes[i].regex);
+        }
+        return regex.toString();
+    }
+}
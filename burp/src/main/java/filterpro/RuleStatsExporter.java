@@ -0,0 +1,67 @@
+package filterpro;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 导出规则命中统计，便于长期项目中清理不再命中的规则、优化耗时高的规则。
+ * 被其它规则覆盖的规则命中数总是 0，同时导出覆盖说明，以免被误当作失效的规则。
+ */
+class RuleStatsExporter {
+    private static final String[] CSV_HEADER = {"组名", "规则内容", "规则类型", "匹配目标", "启用", "命中", "耗时(ms)", "覆盖"};
+
+    static void writeCsv(List<FilterRule> rules, Function<FilterRule, String> coverage, Writer out) throws IOException {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println(String.join(",", CSV_HEADER));
+        for (FilterRule rule : rules) {
+            RuleStats stats = rule.getStats();
+            writer.println(csv(rule.getGroupName()) + "," +
+                    csv(rule.getRuleContent()) + "," +
+                    csv(rule.getRuleType()) + "," +
+                    rule.getTarget().name() + "," +
+                    rule.isEnabled() + "," +
+                    stats.getHits() + "," +
+                    stats.getMatchMillis() + "," +
+                    csv(coverage.apply(rule)));
+        }
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("写入统计文件失败");
+        }
+    }
+
+    static void writeJson(List<FilterRule> rules, Function<FilterRule, String> coverage, Writer out) throws IOException {
+        JSONArray array = new JSONArray();
+        for (FilterRule rule : rules) {
+            RuleStats stats = rule.getStats();
+            JSONObject item = new JSONObject();
+            item.put("group", rule.getGroupName());
+            item.put("content", rule.getRuleContent());
+            item.put("type", rule.getRuleType());
+            item.put("target", rule.getTarget().name());
+            item.put("enabled", rule.isEnabled());
+            item.put("hits", stats.getHits());
+            item.put("matchMillis", stats.getMatchMillis());
+            item.put("coveredBy", coverage.apply(rule));
+            array.put(item);
+        }
+        out.write(array.toString(2));
+        out.flush();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
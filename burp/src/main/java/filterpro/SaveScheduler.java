@@ -0,0 +1,93 @@
+package filterpro;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 由修改事件驱动的保存调度：每次修改后等待一段安静期再保存，期间的连续修改合并成一次写入；
+ * 持续修改时从第一次未保存的修改算起最多延迟 maxDelayMillis。
+ * 保存在单独的后台线程中串行执行，没有修改时不会触发任何写入。
+ */
+class SaveScheduler {
+    // 卸载时等待最后一次保存的上限
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    private final Runnable save;
+    private final long quietMillis;
+    private final long maxDelayMillis;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private ScheduledFuture<?> pending;
+    // 当前这批修改中第一次修改的时间，没有待保存的修改时为 0
+    private long firstChangeAt;
+
+    SaveScheduler(Runnable save, long quietMillis, long maxDelayMillis) {
+        this.save = save;
+        this.quietMillis = quietMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "FilterPro-save");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 重新排期时取消的任务立即移出队列，连续修改不会堆积
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    long getQuietMillis() { return quietMillis; }
+
+    /**
+     * 发生了需要保存的修改，可在任意线程调用
+     */
+    synchronized void changed() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (firstChangeAt == 0) {
+            firstChangeAt = now;
+        }
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        long delay = Math.max(0, Math.min(quietMillis, firstChangeAt + maxDelayMillis - now));
+        pending = executor.schedule(this::runSave, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 立即保存尚未保存的修改并停止调度，用于插件卸载
+     */
+    void flush() {
+        Future<?> last;
+        synchronized (this) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+            last = executor.submit(this::runSave);
+            executor.shutdown();
+        }
+        try {
+            last.get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // 保存本身的错误已经由 save 记录，这里只是不再等待
+        }
+    }
+
+    private void runSave() {
+        synchronized (this) {
+            pending = null;
+            firstChangeAt = 0;
+        }
+        save.run();
+    }
+}
@@ -0,0 +1,125 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HeartbeatDetectorTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private static void repeat(HeartbeatDetector detector, String host, String path, long... intervals) {
+        long now = START;
+        detector.observe(host, "GET", path, now);
+        for (long interval : intervals) {
+            now += interval;
+            detector.observe(host, "GET", path, now);
+        }
+    }
+
+    private static long[] every(long interval, int times) {
+        long[] intervals = new long[times];
+        Arrays.fill(intervals, interval);
+        return intervals;
+    }
+
+    @Test
+    public void numericSegmentsAreNormalizedAndQueryDropped() {
+        assertEquals("^/api/v1/users/\\d+/ping(?:\\?|$)", HeartbeatDetector.normalizePath("/api/v1/users/42/ping?t=1"));
+        assertEquals("^/static/app\\.js(?:\\?|$)", HeartbeatDetector.normalizePath("/static/app.js"));
+        assertEquals("^/s/[0-9a-fA-F-]{36}/beat(?:\\?|$)",
+                HeartbeatDetector.normalizePath("/s/3f2a9c1e-8b7d-4e2f-9a61-0c5d7e8f9a1b/beat"));
+    }
+
+    @Test
+    public void steadyRequestIsSuggested() {
+        HeartbeatDetector detector = new HeartbeatDetector();
+        repeat(detector, "a.example.com", "/api/ping?t=1", every(30_000, 12));
+
+        List<HeartbeatDetector.Suggestion> suggestions = detector.suggestions();
+
+        assertEquals(1, suggestions.size());
+        HeartbeatDetector.Suggestion suggestion = suggestions.get(0);
+        assertEquals("a.example.com", suggestion.getHost());
+        assertEquals("GET", suggestion.getMethod());
+        assertEquals("^/api/ping(?:\\?|$)", suggestion.getPathPattern());
+        assertEquals(30_000, suggestion.getPeriodMs(), 1);
+        assertTrue(suggestion.getJitter() < 0.01);
+        assertTrue(suggestion.getCount() >= 12);
+    }
+
+    @Test
+    public void irregularRequestsAreNotSuggested() {
+        HeartbeatDetector detector = new HeartbeatDetector();
+        repeat(detector, "a.example.com", "/api/search", 2_000, 90_000, 5_000, 40_000, 1_500, 120_000, 3_000, 60_000,
+                2_500, 75_000);
+
+        assertTrue(detector.suggestions().isEmpty());
+    }
+
+    @Test
+    public void tooFastRequestsAreIgnored() {
+        HeartbeatDetector detector = new HeartbeatDetector();
+        repeat(detector, "a.example.com", "/poll", every(100, 12));
+
+        assertTrue(detector.suggestions().isEmpty());
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        HeartbeatDetector detector = new HeartbeatDetector();
+        repeat(detector, "a.example.com", "/api/ping", every(30_000, 12));
+
+        detector.clear();
+
+        assertTrue(detector.suggestions().isEmpty());
+    }
+
+    @Test
+    public void rootPathIsNotSuggested() {
+        HeartbeatDetector detector = new HeartbeatDetector();
+        repeat(detector, "a.example.com", "/?refresh=1", every(30_000, 12));
+
+        assertTrue(detector.suggestions().isEmpty());
+    }
+
+    @Test
+    public void suggestedRuleIsAPathRuleScopedToThatHost() {
+        HeartbeatDetector detector = new HeartbeatDetector();
+        repeat(detector, "a.example.com", "/api/ping", every(30_000, 12));
+
+        FilterRule rule = detector.suggestions().get(0).toRule("心跳");
+        RuleMatcher matcher = RuleMatcher.compile(Collections.singletonList(rule));
+
+        assertEquals(RuleTarget.PATH, rule.getTarget());
+        assertEquals("a.example.com", rule.getTargetParam());
+        assertEquals("心跳", rule.getGroupName());
+        assertFalse(matcher.getTargets().contains(RuleTarget.REQUEST));
+        assertEquals(rule, matcher.match(new RawRequestInput("GET /api/ping?t=2 HTTP/1.1\r\nAccept: */*\r\nHost: a.example.com:443\r\n\r\n")));
+        assertNull(matcher.match(new RawRequestInput("GET /api/ping HTTP/1.1\r\nHost: b.example.com\r\n\r\n")));
+        assertNull(matcher.match(new RawRequestInput("GET /api/ping/x HTTP/1.1\r\nHost: a.example.com\r\n\r\n")));
+
+        Pattern history = Pattern.compile(rule.toHistoryFilterRegex());
+        assertTrue(history.matcher("GET /api/ping?t=2 HTTP/1.1\r\nAccept: */*\r\nHost: a.example.com:443\r\n\r\n").find());
+        assertFalse(history.matcher("GET /api/ping HTTP/1.1\r\nHost: b.example.com\r\n\r\n").find());
+        assertFalse(history.matcher("GET /api/ping/x HTTP/1.1\r\nHost: a.example.com\r\n\r\n").find());
+        assertFalse(history.matcher("GET /api/ping HTTP/1.1\r\nX: 1\r\n\r\nHost: a.example.com\r\n").find());
+    }
+
+    @Test
+    public void sketchRowsUseIndependentHashes() {
+        byte[] key = "a.example.com GET /api/ping".getBytes(StandardCharsets.UTF_8);
+
+        assertNotEquals(HeartbeatDetector.hash(key, 1), HeartbeatDetector.hash(key, 2));
+        assertEquals(HeartbeatDetector.hash(key, 1), HeartbeatDetector.hash(key.clone(), 1));
+    }
+}
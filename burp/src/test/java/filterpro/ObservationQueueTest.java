@@ -0,0 +1,52 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class ObservationQueueTest {
+
+    @Test
+    public void observationsRunOnTheBackgroundThreadInOrder() throws InterruptedException {
+        ObservationQueue queue = new ObservationQueue("test");
+        StringBuilder order = new StringBuilder();
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        for (int i = 0; i < 5; i++) {
+            int n = i;
+            queue.submit(() -> order.append(n));
+        }
+        queue.submit(() -> {
+            thread.set(Thread.currentThread());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), thread.get());
+        assertEquals("01234", order.toString());
+        queue.shutdown();
+    }
+
+    @Test
+    public void disabledOrShutDownQueueDropsObservations() throws InterruptedException {
+        ObservationQueue queue = new ObservationQueue("test");
+        AtomicInteger runs = new AtomicInteger();
+
+        queue.setEnabled(false);
+        queue.submit(runs::incrementAndGet);
+        queue.setEnabled(true);
+        queue.shutdown();
+        queue.submit(runs::incrementAndGet);
+        Thread.sleep(100);
+
+        assertEquals(0, runs.get());
+    }
+}
@@ -0,0 +1,138 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RequestTemplaterTest {
+    private static final String UUID = "3f2a9c1e-8b7d-4e2f-9a61-0c5d7e8f9a1b";
+
+    @Test
+    public void tokensAreClassified() {
+        assertEquals(RequestTemplater.TokenClass.DIGITS, RequestTemplater.classify("1700000000"));
+        assertEquals(RequestTemplater.TokenClass.HEX, RequestTemplater.classify("3f2a9c1e"));
+        assertEquals(RequestTemplater.TokenClass.UUID, RequestTemplater.classify(UUID));
+        assertEquals(RequestTemplater.TokenClass.DATE, RequestTemplater.classify("2024-01-02T10:00:00"));
+        // 较短或不含数字的十六进制串按普通单词处理
+        assertEquals(RequestTemplater.TokenClass.LITERAL, RequestTemplater.classify("cafe"));
+        assertEquals(RequestTemplater.TokenClass.LITERAL, RequestTemplater.classify("deadbeefcafe"));
+        assertEquals(RequestTemplater.TokenClass.LITERAL, RequestTemplater.classify(""));
+    }
+
+    @Test
+    public void dynamicTokensAreGeneralized() {
+        assertEquals("^/track\\?t=\\d+&id=[0-9a-fA-F-]{36}(?:\\?|$)",
+                RequestTemplater.generalize("/track?t=1700000000&id=" + UUID));
+        assertEquals("^/static/app\\.js(?:\\?|$)", RequestTemplater.generalize("/static/app.js"));
+    }
+
+    @Test
+    public void templatesMatchWholePathsOnly() {
+        Pattern template = Pattern.compile(RequestTemplater.generalize("/track?t=1700000000"));
+
+        assertTrue(template.matcher("/track?t=1700000001").find());
+        assertFalse(template.matcher("/track?t=1700000001&x=1").find());
+        assertFalse(template.matcher("/v2/track?t=1").find());
+
+        Pattern path = Pattern.compile(RequestTemplater.generalize("/item/42"));
+        assertTrue(path.matcher("/item/7?from=list").find());
+        assertFalse(path.matcher("/item/7/edit").find());
+    }
+
+    @Test
+    public void truncatedPathsAreOnlyAnchoredAtTheStart() {
+        StringBuilder path = new StringBuilder("/a");
+        while (path.length() < 600) {
+            path.append("/segment");
+        }
+        String template = RequestTemplater.generalize(path.toString());
+
+        assertTrue(template.startsWith("^/a/segment/"));
+        assertFalse(template.endsWith("$)"));
+        assertTrue(Pattern.compile(template).matcher(path + "/more").find());
+    }
+
+    @Test
+    public void numericPositionsClusterRightAway() {
+        RequestTemplater templater = new RequestTemplater();
+        for (int i = 0; i < 12; i++) {
+            templater.observe("a.example.com", "GET", "/item/" + (1000 + i) + "/view");
+        }
+
+        List<RequestTemplater.Suggestion> suggestions = templater.suggestions();
+
+        assertEquals(1, suggestions.size());
+        assertEquals("^/item/\\d+/view(?:\\?|$)", suggestions.get(0).getTemplate());
+        assertEquals(12, suggestions.get(0).getCount());
+        assertEquals("a.example.com", suggestions.get(0).getHost());
+    }
+
+    @Test
+    public void positionWithManyValuesBecomesWildcard() {
+        RequestTemplater templater = new RequestTemplater();
+        String[] names = {"alice", "bob", "carol", "dave", "erin", "frank", "grace", "heidi", "ivan", "judy", "mallory"};
+        for (String name : names) {
+            templater.observe("a.example.com", "GET", "/user/" + name + "/profile");
+        }
+
+        List<RequestTemplater.Suggestion> suggestions = templater.suggestions();
+
+        assertEquals(1, suggestions.size());
+        assertEquals("^/user/[^/?&=;]*/profile(?:\\?|$)", suggestions.get(0).getTemplate());
+        assertEquals("^/user/[^/?&=;]*/profile(?:\\?|$)", templater.templateFor("a.example.com", "GET", "/user/zed/profile"));
+    }
+
+    @Test
+    public void staticPathsAndOtherHostsAreKeptApart() {
+        RequestTemplater templater = new RequestTemplater();
+        for (int i = 0; i < 20; i++) {
+            templater.observe("a.example.com", "GET", "/index.html");
+            templater.observe("b.example.com", "GET", "/item/" + i);
+        }
+
+        List<RequestTemplater.Suggestion> suggestions = templater.suggestions();
+
+        assertEquals(1, suggestions.size());
+        assertEquals("b.example.com", suggestions.get(0).getHost());
+        assertEquals("^/index\\.html(?:\\?|$)", templater.templateFor("a.example.com", "GET", "/index.html"));
+
+        templater.clear();
+        assertTrue(templater.suggestions().isEmpty());
+    }
+
+    @Test
+    public void suggestedRuleTargetsThePathOnThatHost() {
+        RequestTemplater templater = new RequestTemplater();
+        for (int i = 0; i < 12; i++) {
+            templater.observe("a.example.com", "POST", "/log?ts=" + (1700000000 + i));
+        }
+
+        FilterRule rule = templater.suggestions().get(0).toRule("模板");
+
+        assertEquals(RuleTarget.PATH, rule.getTarget());
+        assertEquals("^/log\\?ts=\\d+(?:\\?|$)", rule.getRuleContent());
+        assertEquals("a.example.com", rule.getTargetParam());
+        assertEquals("模板", rule.getGroupName());
+        assertEquals("a.example.com POST", rule.getRemark());
+    }
+
+    @Test
+    public void suggestedRuleDoesNotMatchOtherHosts() {
+        RequestTemplater templater = new RequestTemplater();
+        for (int i = 0; i < 12; i++) {
+            templater.observe("a.example.com", "GET", "/item/" + (1000 + i));
+        }
+        FilterRule rule = templater.suggestions().get(0).toRule("模板");
+        RuleMatcher matcher = RuleMatcher.compile(Collections.singletonList(rule));
+
+        assertEquals(rule, matcher.match(new RawRequestInput("GET /item/77 HTTP/1.1\r\nHost: a.example.com\r\n\r\n")));
+        assertNull(matcher.match(new RawRequestInput("GET /item/77 HTTP/1.1\r\nHost: b.example.com\r\n\r\n")));
+    }
+}
@@ -0,0 +1,65 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SaveSchedulerTest {
+
+    @Test
+    public void burstOfChangesIsSavedOnce() throws InterruptedException {
+        AtomicInteger saves = new AtomicInteger();
+        SaveScheduler scheduler = new SaveScheduler(saves::incrementAndGet, 100, 5000);
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.changed();
+        }
+        Thread.sleep(50);
+        assertEquals(0, saves.get());
+        Thread.sleep(450);
+
+        assertEquals(1, saves.get());
+    }
+
+    @Test
+    public void nothingIsSavedWithoutChanges() throws InterruptedException {
+        AtomicInteger saves = new AtomicInteger();
+        new SaveScheduler(saves::incrementAndGet, 10, 50);
+
+        Thread.sleep(200);
+
+        assertEquals(0, saves.get());
+    }
+
+    @Test
+    public void continuousChangesAreSavedWithinMaxDelay() throws InterruptedException {
+        AtomicInteger saves = new AtomicInteger();
+        SaveScheduler scheduler = new SaveScheduler(saves::incrementAndGet, 200, 300);
+
+        long end = System.currentTimeMillis() + 1000;
+        while (System.currentTimeMillis() < end) {
+            scheduler.changed();
+            Thread.sleep(20);
+        }
+
+        assertTrue(saves.get() >= 2);
+    }
+
+    @Test
+    public void flushSavesPendingChangesAndStops() throws InterruptedException {
+        AtomicInteger saves = new AtomicInteger();
+        SaveScheduler scheduler = new SaveScheduler(saves::incrementAndGet, 10_000, 60_000);
+        scheduler.changed();
+
+        scheduler.flush();
+        assertEquals(1, saves.get());
+
+        scheduler.changed();
+        scheduler.flush();
+        Thread.sleep(100);
+        assertEquals(1, saves.get());
+    }
+}
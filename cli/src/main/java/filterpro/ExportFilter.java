@@ -0,0 +1,230 @@
+package filterpro;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 过滤大体积的 HAR / Burp XML 导出文件，文件可以远大于内存。
+ * 扫描线程按窗口内存映射输入，只找记录边界，凑满一块就交给线程池并行匹配；
+ * 写出按块的原始顺序进行，保留的记录直接从输入通道 transferTo 到输出，不经过堆。
+ * 在途的块数有上限，堆占用只和块大小、线程数有关，与文件大小无关。
+ */
+class ExportFilter {
+    private static final long WINDOW_BYTES = 1L << 30;
+    private static final long CHUNK_BYTES = 8L << 20;
+
+    private final RuleMatcher matcher;
+    private final int threads;
+    private final boolean writeMatched;
+
+    private long records;
+    private long matched;
+    private long unreadable;
+
+    /**
+     * writeMatched 为 true 时输出被规则命中的记录，否则输出未命中的记录
+     */
+    ExportFilter(RuleMatcher matcher, int threads, boolean writeMatched) {
+        this.matcher = matcher;
+        this.threads = Math.max(1, threads);
+        this.writeMatched = writeMatched;
+    }
+
+    long getRecords() { return records; }
+    long getMatched() { return matched; }
+    long getUnreadable() { return unreadable; }
+
+    void filter(Path input, Path output) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, daemon("FilterPro-match"));
+        ExecutorService scanner = Executors.newSingleThreadExecutor(daemon("FilterPro-scan"));
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ExportFormat format = ExportFormat.detect(in);
+            BlockingQueue<Future<Chunk>> pending = new ArrayBlockingQueue<>(threads * 2);
+            Future<?> scan = scanner.submit(() -> {
+                try {
+                    scan(in, format, workers, pending);
+                } finally {
+                    pending.put(CompletableFuture.completedFuture(null));
+                }
+                return null;
+            });
+            try {
+                write(in, out, format, pending);
+                scan.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("过滤被中断", e);
+            } finally {
+                scan.cancel(true);
+            }
+        } finally {
+            scanner.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    private void scan(FileChannel in, ExportFormat format, ExecutorService workers,
+                      BlockingQueue<Future<Chunk>> pending) throws IOException, InterruptedException {
+        long size = in.size();
+        Chunk[] current = {new Chunk()};
+        ExportFormat.RecordSink sink = (start, end) -> {
+            Chunk chunk = current[0];
+            chunk.add(start, end);
+            if (end - chunk.starts[0] >= CHUNK_BYTES) {
+                submit(in, format, chunk, workers, pending);
+                current[0] = new Chunk();
+            }
+        };
+        long position = 0;
+        while (position < size && !format.isDone()) {
+            int end = (int) Math.min(WINDOW_BYTES, size - position);
+            long mapped = Math.min(size - position, end + ExportFormat.PEEK);
+            MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, mapped);
+            position = format.scan(window, position, end, sink);
+        }
+        if (current[0].count > 0) {
+            submit(in, format, current[0], workers, pending);
+        }
+    }
+
+    private void submit(FileChannel in, ExportFormat format, Chunk chunk, ExecutorService workers,
+                        BlockingQueue<Future<Chunk>> pending) throws IOException {
+        try {
+            pending.put(workers.submit(() -> match(in, format, chunk)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("过滤被中断", e);
+        }
+    }
+
+    /**
+     * 在匹配线程中执行，format 只用到无状态的记录解析部分
+     */
+    private Chunk match(FileChannel in, ExportFormat format, Chunk chunk) throws IOException {
+        long base = chunk.starts[0];
+        long length = chunk.ends[chunk.count - 1] - base;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("单条记录超过 2GB，位置 " + base);
+        }
+        MappedByteBuffer buf = in.map(FileChannel.MapMode.READ_ONLY, base, length);
+        chunk.matched = new boolean[chunk.count];
+        for (int i = 0; i < chunk.count; i++) {
+            ByteBuffer record = buf.duplicate();
+            record.limit((int) (chunk.ends[i] - base)).position((int) (chunk.starts[i] - base));
+            MatchInput input = format.toInput(record);
+            if (input == null) {
+                chunk.unreadable++;
+            } else {
+                chunk.matched[i] = matcher.match(input) != null;
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * 按原始顺序写出：开头到第一条记录之前原样保留，相邻的保留记录连同原有分隔一起整段复制，
+     * 中间有记录被丢掉的地方补上格式的分隔，最后一条记录之后原样保留
+     */
+    private void write(FileChannel in, FileChannel out, ExportFormat format,
+                       BlockingQueue<Future<Chunk>> pending) throws IOException, InterruptedException, ExecutionException {
+        ByteBuffer separator = ByteBuffer.wrap(format.separator());
+        long runStart = -1;
+        long runEnd = -1;
+        long lastEnd = -1;
+        boolean wroteRecord = false;
+        boolean previousKept = false;
+        while (true) {
+            Chunk chunk = pending.take().get();
+            if (chunk == null) {
+                break;
+            }
+            if (lastEnd < 0) {
+                transfer(in, 0, chunk.starts[0], out);
+            }
+            for (int i = 0; i < chunk.count; i++) {
+                if (chunk.matched[i] == writeMatched) {
+                    if (!previousKept) {
+                        if (runStart >= 0) {
+                            transfer(in, runStart, runEnd, out);
+                        }
+                        if (wroteRecord) {
+                            separator.rewind();
+                            while (separator.hasRemaining()) {
+                                out.write(separator);
+                            }
+                        }
+                        runStart = chunk.starts[i];
+                        wroteRecord = true;
+                    }
+                    runEnd = chunk.ends[i];
+                    previousKept = true;
+                } else {
+                    previousKept = false;
+                }
+                if (chunk.matched[i]) {
+                    matched++;
+                }
+            }
+            records += chunk.count;
+            unreadable += chunk.unreadable;
+            lastEnd = chunk.ends[chunk.count - 1];
+        }
+        if (runStart >= 0) {
+            transfer(in, runStart, runEnd, out);
+        }
+        transfer(in, Math.max(lastEnd, 0), in.size(), out);
+    }
+
+    private static void transfer(FileChannel in, long start, long end, FileChannel out) throws IOException {
+        long position = start;
+        while (position < end) {
+            position += in.transferTo(position, end - position, out);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 一组连续的记录，边界由扫描线程填写，命中结果由匹配线程填写
+     */
+    private static final class Chunk {
+        long[] starts = new long[256];
+        long[] ends = new long[256];
+        boolean[] matched;
+        int count;
+        int unreadable;
+
+        void add(long start, long end) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+    }
+}
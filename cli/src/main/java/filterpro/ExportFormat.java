@@ -0,0 +1,417 @@
+package filterpro;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 流量导出文件的记录划分与解析。扫描只认记录边界，是一个逐字节的状态机，可以跨映射窗口续扫；
+ * 单条记录的解析只读取请求部分，响应体再大也不会被解码。
+ */
+abstract class ExportFormat {
+    /**
+     * 扫描时允许越过窗口末尾向后查看的字节数，映射窗口需要多映射这么多
+     */
+    static final int PEEK = 16;
+
+    interface RecordSink {
+        void record(long start, long end) throws IOException;
+    }
+
+    /**
+     * 按文件开头第一个非空白字符判断格式：HAR 是 JSON，Burp 的 Save items 是 XML
+     */
+    static ExportFormat detect(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(64);
+        channel.read(head, 0);
+        head.flip();
+        while (head.hasRemaining()) {
+            int b = head.get() & 0xFF;
+            if (b == '{') {
+                return new Har();
+            }
+            if (b == '<') {
+                return new BurpXml();
+            }
+            // 跳过空白和 UTF-8 BOM
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != 0xEF && b != 0xBB && b != 0xBF) {
+                break;
+            }
+        }
+        throw new IOException("无法识别的导出格式，只支持 HAR 和 Burp XML");
+    }
+
+    /**
+     * 扫描 buf 中 [0, end) 的字节，base 为 buf 第 0 个字节在文件中的位置，每发现一条完整记录就交给 sink。
+     * 返回下一个窗口应当开始扫描的文件位置。
+     */
+    abstract long scan(ByteBuffer buf, long base, int end, RecordSink sink) throws IOException;
+
+    /**
+     * 记录之后的内容都不需要再扫描时返回 true
+     */
+    boolean isDone() {
+        return false;
+    }
+
+    /**
+     * 丢掉中间的记录后，写在两段保留记录之间的分隔
+     */
+    abstract byte[] separator();
+
+    /**
+     * 把一条记录解析成匹配输入，record 的 position 到 limit 为记录本身。无法解析时返回 null
+     */
+    abstract MatchInput toInput(ByteBuffer record);
+
+    static int indexOf(ByteBuffer buf, byte[] pattern, int from, int to) {
+        int last = to - pattern.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buf.get(i + j) != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int index, byte[] pattern) {
+        if (index + pattern.length > buf.limit()) {
+            return false;
+        }
+        for (int j = 0; j < pattern.length; j++) {
+            if (buf.get(index + j) != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * HAR：log.entries 数组中的每个对象是一条记录
+     */
+    static final class Har extends ExportFormat {
+        private static final byte[] ENTRIES = ascii("entries");
+        private static final byte[] REQUEST = ascii("request");
+        private static final byte[] SEPARATOR = ascii(",\n");
+
+        private int depth;
+        private boolean inString;
+        private boolean escape;
+        // 最近一个字符串的前几个字节，用来认出 "entries" 键
+        private final byte[] lastString = new byte[ENTRIES.length + 1];
+        private int lastStringLength;
+        private int entriesDepth = -1;
+        private long recordStart = -1;
+        private boolean done;
+
+        @Override
+        long scan(ByteBuffer buf, long base, int end, RecordSink sink) throws IOException {
+            // 状态放在局部变量里，热循环中不读写字段
+            int depth = this.depth;
+            boolean inString = this.inString;
+            boolean escape = this.escape;
+            for (int i = 0; i < end && !done; i++) {
+                byte b = buf.get(i);
+                if (inString) {
+                    if (escape) {
+                        escape = false;
+                    } else if (b == '\\') {
+                        escape = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    } else if (lastStringLength < lastString.length) {
+                        lastString[lastStringLength++] = b;
+                    }
+                    continue;
+                }
+                switch (b) {
+                    case '"':
+                        inString = true;
+                        lastStringLength = 0;
+                        break;
+                    case '[':
+                        if (entriesDepth < 0 && depth == 2 && isEntriesKey()) {
+                            entriesDepth = depth + 1;
+                        }
+                        depth++;
+                        break;
+                    case '{':
+                        if (depth == entriesDepth) {
+                            recordStart = base + i;
+                        }
+                        depth++;
+                        break;
+                    case '}':
+                        depth--;
+                        if (depth == entriesDepth && recordStart >= 0) {
+                            sink.record(recordStart, base + i + 1);
+                            recordStart = -1;
+                        }
+                        break;
+                    case ']':
+                        depth--;
+                        if (entriesDepth > 0 && depth < entriesDepth) {
+                            done = true;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            this.depth = depth;
+            this.inString = inString;
+            this.escape = escape;
+            return base + end;
+        }
+
+        private boolean isEntriesKey() {
+            if (lastStringLength != ENTRIES.length) {
+                return false;
+            }
+            for (int i = 0; i < ENTRIES.length; i++) {
+                if (lastString[i] != ENTRIES[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean isDone() {
+            return done;
+        }
+
+        @Override
+        byte[] separator() {
+            return SEPARATOR;
+        }
+
+        @Override
+        MatchInput toInput(ByteBuffer record) {
+            int[] range = requestRange(record);
+            if (range == null) {
+                return null;
+            }
+            byte[] bytes = new byte[range[1] - range[0]];
+            ByteBuffer slice = record.duplicate();
+            slice.limit(range[1]).position(range[0]);
+            slice.get(bytes);
+            try {
+                return toRawRequest(new JSONObject(new String(bytes, StandardCharsets.UTF_8)));
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * entry 对象中 request 值的字节范围，只有这一段交给 JSON 解析，response 整段跳过
+         */
+        private static int[] requestRange(ByteBuffer record) {
+            int depth = 0;
+            boolean string = false;
+            boolean esc = false;
+            int stringStart = 0;
+            boolean requestKey = false;
+            int valueStart = -1;
+            for (int i = record.position(); i < record.limit(); i++) {
+                byte b = record.get(i);
+                if (string) {
+                    if (esc) {
+                        esc = false;
+                    } else if (b == '\\') {
+                        esc = true;
+                    } else if (b == '"') {
+                        string = false;
+                        if (depth == 1 && i - stringStart == REQUEST.length && startsWith(record, stringStart, REQUEST)) {
+                            requestKey = true;
+                        }
+                    }
+                    continue;
+                }
+                if (b == '"') {
+                    string = true;
+                    stringStart = i + 1;
+                } else if (b == '{' || b == '[') {
+                    if (depth == 1 && requestKey && b == '{') {
+                        valueStart = i;
+                    }
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                    if (depth == 1 && valueStart >= 0) {
+                        return new int[]{valueStart, i + 1};
+                    }
+                } else if (b == ',') {
+                    requestKey = false;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 按 HAR 中的请求还原出原始请求文本，HTTP/2 的伪头部不写入
+         */
+        private static MatchInput toRawRequest(JSONObject request) {
+            String url = request.optString("url");
+            int schemeEnd = url.indexOf("://");
+            int authorityStart = schemeEnd < 0 ? 0 : schemeEnd + 3;
+            int pathStart = url.indexOf('/', authorityStart);
+            String authority = url.substring(authorityStart, pathStart < 0 ? url.length() : pathStart);
+            String target = pathStart < 0 ? "/" : url.substring(pathStart);
+            int fragment = target.indexOf('#');
+            if (fragment >= 0) {
+                target = target.substring(0, fragment);
+            }
+            String version = request.optString("httpVersion");
+
+            StringBuilder text = new StringBuilder(256);
+            text.append(request.optString("method")).append(' ').append(target).append(' ')
+                    .append(version.isEmpty() ? "HTTP/1.1" : version).append("\r\n");
+            boolean hasHost = false;
+            JSONArray headers = request.optJSONArray("headers");
+            for (int i = 0; headers != null && i < headers.length(); i++) {
+                JSONObject header = headers.optJSONObject(i);
+                String name = header == null ? "" : header.optString("name");
+                if (name.isEmpty() || name.charAt(0) == ':') {
+                    continue;
+                }
+                hasHost |= name.equalsIgnoreCase("Host");
+                text.append(name).append(": ").append(header.optString("value")).append("\r\n");
+            }
+            if (!hasHost) {
+                text.append("Host: ").append(authority).append("\r\n");
+            }
+            text.append("\r\n");
+            JSONObject postData = request.optJSONObject("postData");
+            if (postData != null) {
+                text.append(postData.optString("text"));
+            }
+            return new RawRequestInput(text.toString(), hostOf(authority));
+        }
+
+        private static String hostOf(String authority) {
+            String host = authority.substring(authority.lastIndexOf('@') + 1);
+            int colon = host.lastIndexOf(':');
+            if (colon > host.lastIndexOf(']')) {
+                host = host.substring(0, colon);
+            }
+            return host;
+        }
+    }
+
+    /**
+     * Burp 的 Save items：items 下的每个 item 元素是一条记录，请求在 request 元素的 CDATA 中
+     */
+    static final class BurpXml extends ExportFormat {
+        private static final byte[] CDATA_START = ascii("![CDATA[");
+        private static final byte[] CDATA_END = ascii("]]>");
+        private static final byte[] ITEM_START = ascii("item>");
+        private static final byte[] ITEM_END = ascii("/item>");
+        private static final byte[] REQUEST = ascii("<request");
+        private static final byte[] HOST = ascii("<host");
+        private static final byte[] HOST_END = ascii("</host>");
+        private static final byte[] BASE64 = ascii("base64=\"true\"");
+        private static final byte[] SEPARATOR = ascii("\n  ");
+
+        private boolean inCdata;
+        private long recordStart = -1;
+
+        @Override
+        long scan(ByteBuffer buf, long base, int end, RecordSink sink) throws IOException {
+            int i = 0;
+            while (i < end) {
+                byte b = buf.get(i);
+                if (inCdata) {
+                    if (b == ']' && startsWith(buf, i, CDATA_END)) {
+                        inCdata = false;
+                        i += CDATA_END.length;
+                    } else {
+                        i++;
+                    }
+                } else if (b != '<') {
+                    i++;
+                } else if (startsWith(buf, i + 1, CDATA_START)) {
+                    inCdata = true;
+                    i += 1 + CDATA_START.length;
+                } else if (recordStart < 0 && startsWith(buf, i + 1, ITEM_START)) {
+                    recordStart = base + i;
+                    i += 1 + ITEM_START.length;
+                } else if (recordStart >= 0 && startsWith(buf, i + 1, ITEM_END)) {
+                    i += 1 + ITEM_END.length;
+                    sink.record(recordStart, base + i);
+                    recordStart = -1;
+                } else {
+                    i++;
+                }
+            }
+            return base + i;
+        }
+
+        @Override
+        byte[] separator() {
+            return SEPARATOR;
+        }
+
+        @Override
+        MatchInput toInput(ByteBuffer record) {
+            int from = record.position();
+            int to = record.limit();
+            int request = indexOf(record, REQUEST, from, to);
+            if (request < 0) {
+                return null;
+            }
+            int tagEnd = indexOf(record, new byte[]{'>'}, request, to);
+            int cdata = tagEnd < 0 ? -1 : indexOf(record, CDATA_START, tagEnd, to);
+            int cdataEnd = cdata < 0 ? -1 : indexOf(record, CDATA_END, cdata, to);
+            if (cdataEnd < 0) {
+                return null;
+            }
+            ByteBuffer content = record.duplicate();
+            content.limit(cdataEnd).position(cdata + CDATA_START.length);
+            byte[] bytes;
+            if (indexOf(record, BASE64, request, tagEnd) >= 0) {
+                try {
+                    ByteBuffer decoded = Base64.getMimeDecoder().decode(content);
+                    bytes = new byte[decoded.remaining()];
+                    decoded.get(bytes);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            } else {
+                bytes = new byte[content.remaining()];
+                content.get(bytes);
+            }
+            return new RawRequestInput(new String(bytes, StandardCharsets.ISO_8859_1), host(record, from, request));
+        }
+
+        /**
+         * host 元素的文本，没有时返回 null，由请求中的 Host 头决定
+         */
+        private static String host(ByteBuffer record, int from, int to) {
+            int host = indexOf(record, HOST, from, to);
+            int open = host < 0 ? -1 : indexOf(record, new byte[]{'>'}, host, to);
+            int close = open < 0 ? -1 : indexOf(record, HOST_END, open, to);
+            if (close < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[close - open - 1];
+            ByteBuffer slice = record.duplicate();
+            slice.limit(close).position(open + 1);
+            slice.get(bytes);
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
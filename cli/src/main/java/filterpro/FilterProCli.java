@@ -0,0 +1,132 @@
+package filterpro;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 脱离 Burp 的命令行过滤：读取插件保存的规则（分片目录或旧版的单个规则文件），对离线保存的原始 HTTP 请求逐个匹配。
+ * 每个文件是一条完整请求，目录会递归遍历。默认输出未被过滤的文件，加 --matched 输出被过滤的文件及命中的规则。
+ * 指定 -o 时输入是一个 HAR 或 Burp XML 导出文件，按记录过滤后写到输出文件，见 {@link ExportFilter}。
+ */
+public class FilterProCli {
+    private static final String DEFAULT_GROUP = "Default group";
+    private static final String USAGE =
+            "用法: java -jar filterpro-cli.jar -r Filter_Pro_Rules [-g 分组名]... [--matched] 文件或目录...\n"
+            + "      java -jar filterpro-cli.jar -r Filter_Pro_Rules [-g 分组名]... [--matched] [-t 线程数] -o 输出文件 导出文件";
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args, System.out, System.err));
+        } catch (IOException e) {
+            System.err.println("读取失败: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 返回进程退出码：0 正常，2 参数错误
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) throws IOException {
+        File ruleFile = null;
+        Path output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Set<String> groups = new LinkedHashSet<>();
+        boolean printMatched = false;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("-r".equals(arg) && i + 1 < args.length) {
+                ruleFile = new File(args[++i]);
+            } else if ("-g".equals(arg) && i + 1 < args.length) {
+                groups.add(args[++i]);
+            } else if ("-o".equals(arg) && i + 1 < args.length) {
+                output = new File(args[++i]).toPath();
+            } else if ("-t".equals(arg) && i + 1 < args.length && args[i + 1].matches("[1-9]\\d{0,3}")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--matched".equals(arg)) {
+                printMatched = true;
+            } else if (arg.startsWith("-")) {
+                err.println(USAGE);
+                return 2;
+            } else {
+                inputs.add(new File(arg).toPath());
+            }
+        }
+        if (ruleFile == null || inputs.isEmpty() || (output != null && inputs.size() != 1)) {
+            err.println(USAGE);
+            return 2;
+        }
+        if (groups.isEmpty()) {
+            groups.add(DEFAULT_GROUP);
+        }
+
+        List<FilterRule> rules = new ArrayList<>();
+        if (ruleFile.isDirectory()) {
+            // 分片目录只读取选中的分组
+            RuleShards shards = new RuleShards(ruleFile);
+            shards.open();
+            for (String group : groups) {
+                for (String line : shards.load(group)) {
+                    FilterRule rule = FilterRule.fromConfigLine(line, group);
+                    if (rule != null) {
+                        rules.add(rule);
+                    }
+                }
+            }
+        } else {
+            for (String line : new RuleJournal(ruleFile).load()) {
+                FilterRule rule = FilterRule.fromConfigLine(line, DEFAULT_GROUP);
+                if (rule != null && groups.contains(rule.getGroupName())) {
+                    rules.add(rule);
+                }
+            }
+        }
+        RuleMatcher matcher = RuleMatcher.compile(RuleOptimizer.minimize(rules));
+        for (String error : matcher.getErrors()) {
+            err.println("规则错误: " + error);
+        }
+
+        if (output != null) {
+            ExportFilter filter = new ExportFilter(matcher, threads, printMatched);
+            filter.filter(inputs.get(0), output);
+            err.println("规则 " + rules.size() + " 条，记录 " + filter.getRecords() + " 条，过滤 " + filter.getMatched() + " 条"
+                    + (filter.getUnreadable() > 0 ? "，无法解析 " + filter.getUnreadable() + " 条（按未命中处理）" : ""));
+            return 0;
+        }
+
+        int total = 0;
+        int matched = 0;
+        for (Path input : inputs) {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(input)) {
+                files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                // ISO-8859-1 按字节一一对应，请求体不是 UTF-8 也不会损坏
+                String text = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+                FilterRule hit = matcher.match(new RawRequestInput(text));
+                total++;
+                if (hit != null) {
+                    matched++;
+                    if (printMatched) {
+                        out.println(file + "\t" + hit.getRuleContent());
+                    }
+                } else if (!printMatched) {
+                    out.println(file);
+                }
+            }
+        }
+        err.println("规则 " + rules.size() + " 条，请求 " + total + " 个，过滤 " + matched + " 个");
+        return 0;
+    }
+}
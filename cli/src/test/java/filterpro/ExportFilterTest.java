@@ -0,0 +1,91 @@
+package filterpro;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExportFilterTest {
+    private static final RuleMatcher MATCHER = RuleMatcher.compile(Collections.singletonList(
+            new FilterRule("/track", "Block", true, "", "默认", RuleTarget.PATH, "")));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String harEntry(int i) {
+        String path = i % 3 == 0 ? "/track/" + i : "/page/" + i;
+        return "{\"request\": {\"method\": \"GET\", \"url\": \"https://a.example" + path + "\", \"headers\": []},"
+                + " \"response\": {\"content\": {\"text\": \"]}" + i + "\"}}}";
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path path = folder.getRoot().toPath().resolve(name);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path;
+    }
+
+    private static String har(int count) {
+        StringBuilder har = new StringBuilder("{\"log\": {\"version\": \"1.2\", \"entries\": [\n");
+        for (int i = 0; i < count; i++) {
+            har.append(i == 0 ? "  " : ",\n  ").append(harEntry(i));
+        }
+        return har.append("\n], \"comment\": \"x\"}}\n").toString();
+    }
+
+    @Test
+    public void keepsUnmatchedHarEntriesAsValidJson() throws Exception {
+        Path input = write("in.har", har(100));
+        Path output = folder.getRoot().toPath().resolve("out.har");
+        ExportFilter filter = new ExportFilter(MATCHER, 4, false);
+        filter.filter(input, output);
+
+        assertEquals(100, filter.getRecords());
+        assertEquals(34, filter.getMatched());
+        assertEquals(0, filter.getUnreadable());
+        JSONObject log = new JSONObject(new String(Files.readAllBytes(output), StandardCharsets.UTF_8)).getJSONObject("log");
+        JSONArray entries = log.getJSONArray("entries");
+        assertEquals(66, entries.length());
+        assertEquals("x", log.getString("comment"));
+        for (int i = 0; i < entries.length(); i++) {
+            String url = entries.getJSONObject(i).getJSONObject("request").getString("url");
+            assertTrue(url, url.contains("/page/"));
+        }
+    }
+
+    @Test
+    public void writesMatchedBurpItemsInOriginalOrder() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<items>\n");
+        for (int i = 0; i < 50; i++) {
+            String path = i % 5 == 0 ? "/track/" + i : "/page/" + i;
+            xml.append("  <item>\n    <host>a.example</host>\n    <request base64=\"false\"><![CDATA[GET ")
+                    .append(path).append(" HTTP/1.1\r\nHost: a.example\r\n\r\n]]></request>\n  </item>\n");
+        }
+        xml.append("</items>\n");
+        Path input = write("in.xml", xml.toString());
+        Path output = folder.getRoot().toPath().resolve("out.xml");
+        ExportFilter filter = new ExportFilter(MATCHER, 3, true);
+        filter.filter(input, output);
+
+        assertEquals(50, filter.getRecords());
+        assertEquals(10, filter.getMatched());
+        String result = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+        assertTrue(result.startsWith("<?xml version=\"1.0\"?>\n<items>\n  <item>"));
+        assertTrue(result.endsWith("</item>\n</items>\n"));
+        int from = 0;
+        for (int i = 0; i < 50; i += 5) {
+            int at = result.indexOf("GET /track/" + i + " ", from);
+            assertTrue("缺少或顺序不对: " + i, at >= from);
+            from = at;
+        }
+        assertEquals(-1, result.indexOf("/page/"));
+    }
+}
@@ -0,0 +1,159 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExportFormatTest {
+    // 字符串里故意放进括号、转义的引号和 "entries"，扫描只能按 JSON 结构认边界
+    private static final String HAR = "{\"log\": {\"version\": \"1.2\", \"note\": \"entries [{\",\n"
+            + "  \"pages\": [{\"id\": \"p\", \"entries\": []}],\n"
+            + "  \"entries\": [\n"
+            + "    {\"request\": {\"method\": \"GET\", \"url\": \"https://a.example/track?x=1\", \"headers\": []},"
+            + " \"response\": {\"content\": {\"text\": \"}]} \\\"{\"}}},\n"
+            + "    {\"request\": {\"method\": \"POST\", \"url\": \"https://b.example:8443/api\", \"headers\":"
+            + " [{\"name\": \":authority\", \"value\": \"b.example\"}], \"postData\": {\"text\": \"a=\\\\\\\"}\"}},"
+            + " \"response\": {}},\n"
+            + "    {\"response\": {}, \"request\": {\"method\": \"GET\", \"url\": \"http://c.example/\"}}\n"
+            + "  ],\n"
+            + "  \"comment\": {\"entries\": [{\"x\": 1}]}\n"
+            + "}}\n";
+
+    private static final String XML = "<?xml version=\"1.0\"?>\n<!DOCTYPE items [\n<!ELEMENT items (item*)>\n]>\n"
+            + "<items burpVersion=\"2023.9\">\n"
+            + "  <item>\n    <host ip=\"1.2.3.4\">a.example</host>\n"
+            + "    <request base64=\"false\"><![CDATA[GET /track HTTP/1.1\r\nHost: a.example\r\n\r\n]]></request>\n"
+            + "    <response base64=\"false\"><![CDATA[<item></item> ]] ]]]></response>\n  </item>\n"
+            + "  <item>\n    <host ip=\"1.2.3.5\">b.example</host>\n"
+            + "    <request base64=\"true\"><![CDATA[" + base64("POST /api HTTP/1.1\r\nHost: b.example\r\n\r\nx=1")
+            + "]]></request>\n  </item>\n"
+            + "</items>\n";
+
+    private static String base64(String text) {
+        return Base64.getMimeEncoder().encodeToString(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 按 ExportFilter 的方式分窗口扫描：每个窗口多映射 PEEK 个字节，从上一次返回的位置继续
+     */
+    private static List<long[]> scan(ExportFormat format, byte[] data, int window) throws Exception {
+        List<long[]> records = new ArrayList<>();
+        long position = 0;
+        while (position < data.length && !format.isDone()) {
+            int end = (int) Math.min(window, data.length - position);
+            int mapped = (int) Math.min(data.length - position, end + ExportFormat.PEEK);
+            ByteBuffer buf = ByteBuffer.wrap(data, (int) position, mapped).slice();
+            long next = format.scan(buf, position, end, (start, recordEnd) -> records.add(new long[]{start, recordEnd}));
+            assertTrue(next > position);
+            position = next;
+        }
+        return records;
+    }
+
+    private static List<String> texts(byte[] data, List<long[]> records) {
+        List<String> texts = new ArrayList<>();
+        for (long[] record : records) {
+            texts.add(new String(data, (int) record[0], (int) (record[1] - record[0]), StandardCharsets.UTF_8));
+        }
+        return texts;
+    }
+
+    private static void assertSameRecordsForEveryWindow(Supplier<ExportFormat> formats, byte[] data, int count)
+            throws Exception {
+        List<String> expected = texts(data, scan(formats.get(), data, data.length));
+        assertEquals(count, expected.size());
+        for (int window = 1; window <= data.length; window++) {
+            assertEquals("窗口大小 " + window, expected, texts(data, scan(formats.get(), data, window)));
+        }
+    }
+
+    private static MatchInput input(ExportFormat format, byte[] data, long[] record) {
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        buf.limit((int) record[1]).position((int) record[0]);
+        return format.toInput(buf);
+    }
+
+    @Test
+    public void harEntriesAreFoundAcrossWindowEdges() throws Exception {
+        byte[] data = HAR.getBytes(StandardCharsets.UTF_8);
+        assertSameRecordsForEveryWindow(ExportFormat.Har::new, data, 3);
+        List<String> records = texts(data, scan(new ExportFormat.Har(), data, data.length));
+        assertTrue(records.get(0).startsWith("{\"request\""));
+        assertTrue(records.get(0).endsWith("\"}}}"));
+        assertTrue(records.get(2).endsWith("\"http://c.example/\"}}"));
+    }
+
+    @Test
+    public void harScanStopsAfterEntries() throws Exception {
+        ExportFormat.Har har = new ExportFormat.Har();
+        byte[] data = HAR.getBytes(StandardCharsets.UTF_8);
+        scan(har, data, 7);
+        assertTrue(har.isDone());
+    }
+
+    @Test
+    public void harRecordsParseOnlyTheRequest() throws Exception {
+        ExportFormat.Har har = new ExportFormat.Har();
+        byte[] data = HAR.getBytes(StandardCharsets.UTF_8);
+        List<long[]> records = scan(har, data, data.length);
+
+        MatchInput first = input(har, data, records.get(0));
+        assertEquals("GET", first.method());
+        assertEquals("a.example", first.host());
+        assertEquals("/track?x=1", first.path());
+        assertEquals("x=1", first.query());
+
+        MatchInput second = input(har, data, records.get(1));
+        assertEquals("POST", second.method());
+        assertEquals("b.example", second.host());
+        assertEquals("a=\\\"}", second.body().toString());
+
+        MatchInput third = input(har, data, records.get(2));
+        assertEquals("c.example", third.host());
+        assertEquals("/", third.path());
+    }
+
+    @Test
+    public void burpItemsAreFoundAcrossWindowEdges() throws Exception {
+        byte[] data = XML.getBytes(StandardCharsets.UTF_8);
+        assertSameRecordsForEveryWindow(ExportFormat.BurpXml::new, data, 2);
+        for (String record : texts(data, scan(new ExportFormat.BurpXml(), data, data.length))) {
+            assertTrue(record.startsWith("<item>"));
+            assertTrue(record.endsWith("</item>"));
+        }
+    }
+
+    @Test
+    public void burpRecordsDecodeCdataAndBase64() throws Exception {
+        ExportFormat.BurpXml xml = new ExportFormat.BurpXml();
+        byte[] data = XML.getBytes(StandardCharsets.UTF_8);
+        List<long[]> records = scan(xml, data, data.length);
+
+        MatchInput first = input(xml, data, records.get(0));
+        assertEquals("GET", first.method());
+        assertEquals("a.example", first.host());
+        assertEquals("/track", first.path());
+
+        MatchInput second = input(xml, data, records.get(1));
+        assertEquals("POST", second.method());
+        assertEquals("b.example", second.host());
+        assertEquals("x=1", second.body().toString());
+    }
+
+    @Test
+    public void recordWithoutRequestIsUnreadable() {
+        byte[] data = "<item><host>a</host></item>".getBytes(StandardCharsets.UTF_8);
+        assertNull(new ExportFormat.BurpXml().toInput(ByteBuffer.wrap(data)));
+        byte[] har = "{\"response\": {}}".getBytes(StandardCharsets.UTF_8);
+        assertNull(new ExportFormat.Har().toInput(ByteBuffer.wrap(har)));
+    }
+}
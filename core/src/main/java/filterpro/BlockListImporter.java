@@ -0,0 +1,156 @@
+package filterpro;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 逐行读取公开的域名拦截列表，去重后写成 HostSet 可以读取的主机列表文件，整个列表不需要放进内存。
+ * 支持的写法：
+ * <ul>
+ *   <li>hosts 文件："0.0.0.0 a.com b.com"，只匹配列出的主机</li>
+ *   <li>adblock："||a.com^"，匹配该域名及其子域名；带 $ 选项、路径、例外 (@@) 和元素隐藏的规则无法表示为主机，跳过</li>
+ *   <li>每行一个域名："a.com" 只匹配该主机，".a.com" 包括子域名，"*.a.com" 只匹配子域名</li>
+ * </ul>
+ * "#"、"!" 开头的行和 "[Adblock Plus 2.0]" 这样的文件头视为注释。
+ */
+class BlockListImporter {
+    // hosts 文件自带的本机条目，不是要拦截的域名
+    private static final Set<String> LOCAL_HOSTS = new HashSet<>(Arrays.asList(
+            "localhost", "localhost.localdomain", "local", "broadcasthost", "ip6-localhost", "ip6-loopback",
+            "ip6-localnet", "ip6-mcastprefix", "ip6-allnodes", "ip6-allrouters", "ip6-allhosts", "0.0.0.0"));
+
+    private final HostSet hosts = new HostSet();
+    private int entries;
+    private int duplicates;
+    private int skipped;
+
+    /**
+     * 读取 in 中的全部行，第一次出现的条目写到 out，每行一个
+     */
+    void read(Reader in, Writer out) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            readLine(line.trim(), out);
+        }
+        out.flush();
+    }
+
+    /**
+     * 写出的条目数（已去重）
+     */
+    int getEntries() { return entries; }
+    int getDuplicates() { return duplicates; }
+    /**
+     * 无法表示为主机的行数，注释和空行不计
+     */
+    int getSkipped() { return skipped; }
+
+    private void readLine(String line, Writer out) throws IOException {
+        if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '!' || line.charAt(0) == '[') {
+            return;
+        }
+        if (line.startsWith("@@") || line.contains("##") || line.contains("#@#") || line.contains("#?#")) {
+            skipped++;
+            return;
+        }
+        if (line.startsWith("||")) {
+            int end = line.indexOf('^');
+            String domain = end < 0 ? line.substring(2) : line.substring(2, end);
+            // "^" 之后只允许 "|"，其余都是路径或选项
+            String rest = end < 0 ? "" : line.substring(end + 1);
+            if (!isHost(domain) || !(rest.isEmpty() || "|".equals(rest))) {
+                skipped++;
+                return;
+            }
+            add(domain, out);
+            add("*." + domain, out);
+            return;
+        }
+        int comment = line.indexOf('#');
+        if (comment >= 0) {
+            line = line.substring(0, comment).trim();
+        }
+        String[] tokens = line.split("\\s+");
+        if (tokens.length > 1) {
+            if (!isAddress(tokens[0])) {
+                skipped++;
+                return;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                if (isHost(tokens[i]) && !LOCAL_HOSTS.contains(HostIndex.normalize(tokens[i]))) {
+                    add(tokens[i], out);
+                } else {
+                    skipped++;
+                }
+            }
+            return;
+        }
+        String host = tokens[0];
+        if (host.startsWith("*.") && isHost(host.substring(2))) {
+            add(host, out);
+        } else if (host.startsWith(".") && isHost(host.substring(1))) {
+            add(host.substring(1), out);
+            add("*" + host, out);
+        } else if (isHost(host) && !isAddress(host)) {
+            add(host, out);
+        } else {
+            skipped++;
+        }
+    }
+
+    private void add(String pattern, Writer out) throws IOException {
+        String normalized = HostIndex.normalize(pattern);
+        if (hosts.add(normalized)) {
+            out.write(normalized);
+            out.write('\n');
+            entries++;
+        } else {
+            duplicates++;
+        }
+    }
+
+    /**
+     * 由字母、数字、"-"、"_" 组成、以 "." 分隔的非空标签
+     */
+    private static boolean isHost(String text) {
+        if (text.isEmpty() || text.length() > 253) {
+            return false;
+        }
+        int end = text.endsWith(".") ? text.length() - 1 : text.length();
+        char previous = '.';
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (previous == '.') {
+                    return false;
+                }
+            } else if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_')) {
+                return false;
+            }
+            previous = c;
+        }
+        return end > 0 && previous != '.';
+    }
+
+    /**
+     * hosts 文件每行开头的 IPv4 / IPv6 地址
+     */
+    private static boolean isAddress(String text) {
+        if (text.indexOf(':') >= 0) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '.' && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return !text.isEmpty();
+    }
+}
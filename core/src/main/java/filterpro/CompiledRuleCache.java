@@ -0,0 +1,323 @@
+package filterpro;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 按分组缓存编译好的规则集。规则变化时只递增分组的版本号，真正需要匹配器时才更新；
+ * 正则按规则内容缓存，编辑、启停或移动一条规则最多只会重新编译和分析这一条正则。
+ * <p>
+ * 更新是增量的：规则不可修改，新旧两版规则列表按对象比较就能得到增删的规则。
+ * 新增的规则单独编译成一个小匹配器叠加在原匹配器上，删除的规则在原匹配器中屏蔽，
+ * 原有的自动机、主机索引和主机列表都不重建。被删除规则覆盖的多余规则（见 RuleOptimizer）随之加入叠加部分。
+ * 叠加和屏蔽的规则累计超过约 √n 条时整体重新编译一次，单次编辑的平均开销约为 O(√n) 条规则，
+ * 外加一次按对象比较两版列表的线性扫描。
+ */
+class CompiledRuleCache {
+    private static final int MAX_PATTERNS = 10000;
+
+    private final Map<String, GroupEntry> groups = new HashMap<>();
+    // 正则缓存有单独的锁：后台分析风险时不会挡住分组匹配器的编译，绘制表格也不用等编译
+    private final Map<String, CompiledPattern> patterns = new LinkedHashMap<String, CompiledPattern>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledPattern> eldest) {
+            return size() > MAX_PATTERNS;
+        }
+    };
+
+    // 排队等待后台分析的正则，由 patterns 的锁保护
+    private final Set<String> analyzing = new HashSet<>();
+    private Executor analyzer;
+    private volatile Runnable riskListener;
+
+    private static class CompiledPattern {
+        private Pattern pattern;
+        private RegexCostAnalyzer.Report report;
+        private PatternSyntaxException error;
+    }
+
+    private static final int MIN_PENDING_CHANGES = 32;
+
+    private static class GroupEntry {
+        private long version = 1;
+        private long compiledVersion;
+        private RuleMatcher matcher;
+        // 上次编译时的规则列表，下次按对象比较找出增删的规则
+        private List<FilterRule> rules;
+        // 整体编译的匹配器及其中的规则；被判为多余而没有编译的规则按覆盖它的规则索引
+        private RuleMatcher base;
+        private Set<FilterRule> baseRules;
+        private Map<FilterRule, List<FilterRule>> covered;
+        // 反向索引：多余规则 -> 覆盖它的规则
+        private Map<FilterRule, FilterRule> coveredBy;
+        // 叠加在 base 上的新规则，以及 base 中已删除的规则
+        private Set<FilterRule> added;
+        private Set<FilterRule> removed;
+    }
+
+    /**
+     * 分组中的规则发生变化（新增、删除、编辑、启停、移入移出）
+     */
+    synchronized void invalidate(String groupName) {
+        entry(groupName).version++;
+    }
+
+    /**
+     * 规则没变但规则引用的外部内容变了（例如主机列表文件被重新导入），下次整体重新编译
+     */
+    synchronized void recompile(String groupName) {
+        GroupEntry entry = entry(groupName);
+        entry.base = null;
+        entry.version++;
+    }
+
+    synchronized void invalidateAll() {
+        for (GroupEntry entry : groups.values()) {
+            entry.version++;
+        }
+    }
+
+    synchronized void rename(String oldName, String newName) {
+        GroupEntry entry = groups.remove(oldName);
+        if (entry != null) {
+            groups.put(newName, entry);
+        }
+    }
+
+    synchronized void remove(String groupName) {
+        groups.remove(groupName);
+    }
+
+    synchronized long getVersion(String groupName) {
+        return entry(groupName).version;
+    }
+
+    /**
+     * 返回分组当前版本的匹配器，版本没有变化时直接复用，rules 只在需要重新组装时才会被调用
+     */
+    synchronized RuleMatcher get(String groupName, Supplier<List<FilterRule>> rules) {
+        GroupEntry entry = entry(groupName);
+        if (entry.matcher == null || entry.compiledVersion != entry.version) {
+            List<FilterRule> current = rules.get();
+            if (entry.base == null || !update(entry, current)) {
+                compile(entry, current);
+            }
+            entry.rules = current;
+            entry.compiledVersion = entry.version;
+        }
+        return entry.matcher;
+    }
+
+    /**
+     * 整体编译：重复和被覆盖的规则不影响匹配结果，不编译进匹配器，记下覆盖关系供增量更新使用
+     */
+    private void compile(GroupEntry entry, List<FilterRule> rules) {
+        Map<FilterRule, List<FilterRule>> covered = new IdentityHashMap<>();
+        Map<FilterRule, FilterRule> coveredBy = new IdentityHashMap<>();
+        for (RuleOptimizer.Proposal proposal : RuleOptimizer.analyze(rules)) {
+            covered.computeIfAbsent(proposal.getCoveredBy(), k -> new ArrayList<>()).add(proposal.getRedundant());
+            coveredBy.put(proposal.getRedundant(), proposal.getCoveredBy());
+        }
+        Set<FilterRule> redundant = identitySet();
+        for (List<FilterRule> list : covered.values()) {
+            redundant.addAll(list);
+        }
+        List<FilterRule> compiled = new ArrayList<>(rules.size() - redundant.size());
+        Set<FilterRule> baseRules = identitySet();
+        for (FilterRule rule : rules) {
+            if (!redundant.contains(rule)) {
+                compiled.add(rule);
+                baseRules.add(rule);
+            }
+        }
+        entry.base = RuleMatcher.compile(compiled, this::pattern);
+        entry.baseRules = baseRules;
+        entry.covered = covered;
+        entry.coveredBy = coveredBy;
+        entry.added = Collections.newSetFromMap(new LinkedHashMap<>());
+        entry.removed = identitySet();
+        entry.matcher = entry.base;
+    }
+
+    /**
+     * 把两版规则列表之间的增删叠加到 base 上，累计改动太多时返回 false，由调用方整体编译
+     */
+    private boolean update(GroupEntry entry, List<FilterRule> rules) {
+        Set<FilterRule> previous = identitySet();
+        previous.addAll(entry.rules);
+        Set<FilterRule> current = identitySet();
+        current.addAll(rules);
+        int limit = Math.max(MIN_PENDING_CHANGES, (int) Math.sqrt(rules.size()));
+        int changes = entry.added.size() + entry.removed.size();
+        for (FilterRule rule : entry.rules) {
+            if (!current.contains(rule) && ++changes > limit) {
+                return false;
+            }
+        }
+        for (FilterRule rule : rules) {
+            if (!previous.contains(rule) && ++changes > limit) {
+                return false;
+            }
+        }
+
+        for (FilterRule rule : entry.rules) {
+            if (current.contains(rule)) {
+                continue;
+            }
+            if (!entry.added.remove(rule) && entry.baseRules.contains(rule)) {
+                entry.removed.add(rule);
+            }
+            // 被它覆盖而没有编译的规则现在需要自己匹配
+            for (FilterRule redundant : entry.covered.getOrDefault(rule, Collections.emptyList())) {
+                if (current.contains(redundant) && !isCompiled(entry, redundant)) {
+                    entry.added.add(redundant);
+                }
+            }
+        }
+        for (FilterRule rule : rules) {
+            if (!previous.contains(rule) && !entry.removed.remove(rule) && !isCompiled(entry, rule)) {
+                entry.added.add(rule);
+            }
+        }
+        if (entry.added.isEmpty() && entry.removed.isEmpty()) {
+            entry.matcher = entry.base;
+        } else {
+            Set<FilterRule> removed = identitySet();
+            removed.addAll(entry.removed);
+            entry.matcher = entry.base.withChanges(RuleMatcher.compile(new ArrayList<>(entry.added), this::pattern), removed);
+        }
+        return true;
+    }
+
+    /**
+     * 规则在分组的匹配器中被判为多余、没有编译时返回覆盖它的规则，否则返回 null。
+     * 这类规则的请求都由覆盖它的规则命中，自己的命中数一直是 0，界面据此说明原因。
+     * 覆盖它的规则删除后它会被加入叠加部分重新参与匹配，不再返回
+     */
+    synchronized FilterRule coveredBy(String groupName, FilterRule rule) {
+        GroupEntry entry = groups.get(groupName);
+        if (entry == null || entry.base == null || isCompiled(entry, rule)) {
+            return null;
+        }
+        return entry.coveredBy.get(rule);
+    }
+
+    private static boolean isCompiled(GroupEntry entry, FilterRule rule) {
+        return entry.added.contains(rule) || entry.baseRules.contains(rule) && !entry.removed.contains(rule);
+    }
+
+    private static Set<FilterRule> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * 编译并分析单条正则，已经编译过的内容直接复用。分析在调用线程上进行，不持有缓存的锁。
+     * 语法错误抛出 PatternSyntaxException，超出试跑预算抛出 RegexCostAnalyzer.QuarantinedException。
+     */
+    Pattern pattern(String regex) {
+        CompiledPattern compiled = compiledPattern(regex);
+        if (compiled.error != null) {
+            throw compiled.error;
+        }
+        if (compiled.report.isOverBudget()) {
+            throw new RegexCostAnalyzer.QuarantinedException("样本匹配读取字符超过 "
+                    + RegexCostAnalyzer.DEFAULT_BUDGET_STEPS + " 次，疑似灾难性回溯");
+        }
+        return compiled.pattern;
+    }
+
+    /**
+     * 分析完成一条正则后在分析线程上回调，界面据此重绘风险列
+     */
+    void setRiskListener(Runnable riskListener) {
+        this.riskListener = riskListener;
+    }
+
+    /**
+     * 规则的代价风险说明，纯字面量和没有风险的规则返回空字符串。
+     * 在绘制表格时调用，只读已有的分析结果；还没分析过的正则交给后台线程，先返回"分析中"。
+     */
+    String describeRisk(FilterRule rule) {
+        String content = rule.getRuleContent();
+        if (content == null || content.isEmpty() || TextMatcher.literalAlternatives(content) != null) {
+            return "";
+        }
+        if (rule.getTarget() == RuleTarget.HOST_LIST
+                || rule.getTarget() == RuleTarget.HOST && HostIndex.parseHostPattern(content) != null) {
+            return "";
+        }
+        CompiledPattern compiled;
+        synchronized (patterns) {
+            compiled = patterns.get(content);
+            if (compiled == null) {
+                if (analyzing.add(content)) {
+                    analyzer().execute(() -> {
+                        compiledPattern(content);
+                        synchronized (patterns) {
+                            analyzing.remove(content);
+                        }
+                        Runnable listener = riskListener;
+                        if (listener != null) {
+                            listener.run();
+                        }
+                    });
+                }
+                return "分析中";
+            }
+        }
+        return compiled.error != null ? "语法错误" : compiled.report.summary();
+    }
+
+    private CompiledPattern compiledPattern(String regex) {
+        synchronized (patterns) {
+            CompiledPattern compiled = patterns.get(regex);
+            if (compiled != null) {
+                return compiled;
+            }
+        }
+        CompiledPattern compiled = new CompiledPattern();
+        try {
+            compiled.pattern = Pattern.compile(regex);
+            compiled.report = RegexCostAnalyzer.analyze(compiled.pattern);
+        } catch (PatternSyntaxException e) {
+            compiled.error = e;
+        }
+        synchronized (patterns) {
+            CompiledPattern existing = patterns.putIfAbsent(regex, compiled);
+            return existing != null ? existing : compiled;
+        }
+    }
+
+    private Executor analyzer() {
+        if (analyzer == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "FilterPro-risk");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            // 空闲时线程自动退出，插件卸载后不会留下线程
+            executor.allowCoreThreadTimeOut(true);
+            analyzer = executor;
+        }
+        return analyzer;
+    }
+
+    private GroupEntry entry(String groupName) {
+        return groups.computeIfAbsent(groupName, k -> new GroupEntry());
+    }
+}
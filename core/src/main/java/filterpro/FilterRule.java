@@ -0,0 +1,215 @@
+package filterpro;
+
+/**
+ * 一条过滤规则，对应规则文件中的一行。
+ * 规则不可修改，规则快照、匹配器和保存线程可以直接共享；编辑时用 with 方法生成新规则替换原规则，
+ * 新规则沿用原规则的命中统计。
+ */
+public class FilterRule {
+    private static final String LEGACY_HOST_PREFIX = "Host: ";
+    // 路径规则的结尾锚点：路径结束或查询串开始，见 RequestTemplater
+    static final String PATH_END = "(?:\\?|$)";
+    private final String ruleContent;
+    private final String ruleType;
+    private final boolean enabled;
+    private final String remark;
+    private final String groupName;
+    private final RuleTarget target;
+    private final String targetParam;
+    // toConfigLine 的缓存，规则快照发布时直接复用；多个线程同时计算得到的结果相同
+    private String configLine;
+    private final RuleStats stats;
+
+    public FilterRule(String ruleContent, String ruleType, boolean enabled, String remark, String groupName) {
+        this(ruleContent, ruleType, enabled, remark, groupName, RuleTarget.REQUEST, "");
+    }
+
+    public FilterRule(String ruleContent, String ruleType, boolean enabled, String remark, String groupName,
+                      RuleTarget target, String targetParam) {
+        this(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, new RuleStats());
+    }
+
+    private FilterRule(String ruleContent, String ruleType, boolean enabled, String remark, String groupName,
+                       RuleTarget target, String targetParam, RuleStats stats) {
+        this.ruleContent = ruleContent;
+        this.ruleType = ruleType;
+        this.enabled = enabled;
+        this.remark = remark;
+        this.groupName = groupName;
+        this.target = target != null ? target : RuleTarget.REQUEST;
+        this.targetParam = targetParam;
+        this.stats = stats;
+    }
+
+    /**
+     * 解析规则文件中的一行：规则内容|规则类型|启用|备注|组名|匹配目标|目标参数，格式不对时返回 null
+     */
+    public static FilterRule fromConfigLine(String line, String defaultGroup) {
+        // 与 split("\\|", 7) 的结果一致，但不经过正则，加载大文件时每行只扫描一遍
+        String[] parts = new String[7];
+        int count = 0;
+        int start = 0;
+        int bar;
+        while (count < parts.length - 1 && (bar = line.indexOf('|', start)) >= 0) {
+            parts[count++] = line.substring(start, bar);
+            start = bar + 1;
+        }
+        parts[count++] = line.substring(start);
+        if (count < 3) {
+            return null;
+        }
+        String ruleContent = parts[0];
+        String ruleType = parts[1];
+        boolean enabled = Boolean.parseBoolean(parts[2]);
+        String remark = count > 3 ? parts[3] : "";
+        String groupName = count > 4 ? parts[4] : defaultGroup;
+        if (count > 5) {
+            String targetParam = count > 6 ? parts[6] : "";
+            return new FilterRule(ruleContent, ruleType, enabled, remark, groupName,
+                    RuleTarget.fromName(parts[5]), targetParam);
+        }
+        return fromLegacy(ruleContent, ruleType, enabled, remark, groupName);
+    }
+
+    /**
+     * 旧版本规则文件没有匹配目标，按规则类型和内容推断
+     */
+    private static FilterRule fromLegacy(String ruleContent, String ruleType, boolean enabled, String remark, String groupName) {
+        RuleTarget target = RuleTarget.REQUEST;
+        String content = ruleContent;
+        if (content.startsWith(LEGACY_HOST_PREFIX)
+                && HostIndex.parseHostPattern(content.substring(LEGACY_HOST_PREFIX.length())) != null) {
+            target = RuleTarget.HOST;
+            content = content.substring(LEGACY_HOST_PREFIX.length());
+        } else if ("Method Filter".equals(ruleType) && content.endsWith(" /")) {
+            target = RuleTarget.METHOD;
+            content = content.substring(0, content.length() - 2);
+        } else if ("API Filter".equals(ruleType)) {
+            target = RuleTarget.PATH;
+        }
+        return new FilterRule(content, ruleType, enabled, remark, groupName, target, "");
+    }
+
+    public String toConfigLine() {
+        String line = configLine;
+        if (line == null) {
+            line = ruleContent + "|" +
+                    ruleType + "|" +
+                    enabled + "|" +
+                    (remark != null ? remark : "") + "|" +
+                    groupName + "|" +
+                    target.name() + "|" +
+                    (targetParam != null ? targetParam : "");
+            configLine = line;
+        }
+        return line;
+    }
+
+    /**
+     * 转换成可以粘贴到 Burp History Filter 的正则，History Filter 只能对整个请求做匹配。
+     * 主机列表动辄十几万个域名，写成正则既超出 History Filter 的长度也无法编译，返回 null，只在代理过滤中生效。
+     */
+    public String toHistoryFilterRegex() {
+        switch (target) {
+            case METHOD:
+                return grouped(ruleContent) + " /";
+            case HOST:
+                String host = HostIndex.parseHostPattern(ruleContent);
+                if (host != null && host.startsWith("*.")) {
+                    // History Filter 不认识 *.example.com，展开成等价的正则
+                    return LEGACY_HOST_PREFIX + "[\\w.-]+\\." + host.substring(2).replace(".", "\\.");
+                }
+                return LEGACY_HOST_PREFIX + grouped(ruleContent);
+            case HOST_LIST:
+                return null;
+            case HEADER:
+                return targetParam + ": [^\\r\\n]*" + grouped(ruleContent);
+            case PATH:
+                String scope = targetParam == null || targetParam.trim().isEmpty() ? null : HostIndex.parseHostPattern(targetParam);
+                return scope == null ? pathHistoryFilterRegex(ruleContent) : scopedPathHistoryFilterRegex(ruleContent, scope);
+            default:
+                return ruleContent;
+        }
+    }
+
+    /**
+     * 以 ^ 锚定在路径开头的规则（模板规则）改为锚定在请求行的方法之后，结尾的 PATH_END 对应路径后的 "?" 或空格。
+     * 顶层有分支的正则 ^ 只作用于第一个分支，无法这样改写，原样返回
+     */
+    private static String pathHistoryFilterRegex(String regex) {
+        if (!regex.startsWith("^")) {
+            return regex;
+        }
+        String path = regex.substring(1);
+        if (path.endsWith(PATH_END)) {
+            path = path.substring(0, path.length() - PATH_END.length()) + "[? ]";
+        }
+        if (path.indexOf('|') >= 0) {
+            return regex;
+        }
+        return "(?:^|\\n)[A-Z]+ " + path;
+    }
+
+    /**
+     * 带主机条件的路径规则：路径符合规则，并且请求头结束前有一行 Host 符合条件（可以带端口）。
+     * 两端锚定的模板直接接在请求行的方法之后，其它正则先用前瞻确认 Host 再在请求中查找。
+     * 查找 Host 的循环体内没有无界量词，不会产生嵌套回溯
+     */
+    private static String scopedPathHistoryFilterRegex(String regex, String host) {
+        String hostRegex = host.startsWith("*.")
+                ? "[\\w.-]+\\." + RegexAssembler.escape(host.substring(2))
+                : RegexAssembler.escape(host);
+        String hostHeader = "[^\\r\\n]*(?:(?!\\r?\\n\\r?\\n)[\\s\\S])*?\\n[Hh]ost: " + hostRegex + "(?::\\d+)?\\r?\\n";
+        if (regex.startsWith("^")) {
+            String path = regex.substring(1);
+            if (path.endsWith(PATH_END)) {
+                path = path.substring(0, path.length() - PATH_END.length()) + "[? ]";
+            }
+            if (path.indexOf('|') < 0) {
+                return "\\A[A-Z]+ " + path + hostHeader;
+            }
+        }
+        return "\\A(?=" + hostHeader + ")[\\s\\S]*?" + grouped(regex);
+    }
+
+    private static String grouped(String regex) {
+        return regex.indexOf('|') >= 0 ? "(?:" + regex + ")" : regex;
+    }
+
+    public String getRuleContent() { return ruleContent; }
+    public String getRuleType() { return ruleType; }
+    public boolean isEnabled() { return enabled; }
+    public String getRemark() { return remark; }
+    public String getGroupName() { return groupName; }
+    public RuleTarget getTarget() { return target; }
+    public String getTargetParam() { return targetParam; }
+    public RuleStats getStats() { return stats; }
+
+    public FilterRule withRuleContent(String ruleContent) {
+        return new FilterRule(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, stats);
+    }
+
+    public FilterRule withRuleType(String ruleType) {
+        return new FilterRule(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, stats);
+    }
+
+    public FilterRule withEnabled(boolean enabled) {
+        return new FilterRule(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, stats);
+    }
+
+    public FilterRule withRemark(String remark) {
+        return new FilterRule(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, stats);
+    }
+
+    public FilterRule withGroupName(String groupName) {
+        return new FilterRule(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, stats);
+    }
+
+    public FilterRule withTarget(RuleTarget target) {
+        return new FilterRule(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, stats);
+    }
+
+    public FilterRule withTargetParam(String targetParam) {
+        return new FilterRule(ruleContent, ruleType, enabled, remark, groupName, target, targetParam, stats);
+    }
+}
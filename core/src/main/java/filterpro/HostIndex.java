@@ -0,0 +1,127 @@
+package filterpro;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 主机规则索引：精确主机放在哈希表中，*.example.com 这类通配符按标签倒序放进后缀树。
+ * 判断一个主机是否命中只需要一次哈希查找加上每个 DNS 标签一次查找，与规则数量无关。
+ */
+class HostIndex {
+    private final Map<String, FilterRule> exactHosts = new HashMap<>();
+    private final Node wildcardRoot = new Node();
+    private int wildcardCount;
+
+    private static class Node {
+        private final Map<String, Node> children = new HashMap<>();
+        // 非空表示该后缀的任意子域名都命中
+        private FilterRule wildcardRule;
+    }
+
+    void addExact(String host, FilterRule rule) {
+        exactHosts.putIfAbsent(normalize(host), rule);
+    }
+
+    /**
+     * 添加通配符规则，suffix 为去掉 "*." 之后的部分，只匹配其子域名
+     */
+    void addWildcard(String suffix, FilterRule rule) {
+        String normalized = normalize(suffix);
+        Node node = wildcardRoot;
+        int end = normalized.length();
+        while (end > 0) {
+            int dot = normalized.lastIndexOf('.', end - 1);
+            String label = normalized.substring(dot + 1, end);
+            node = node.children.computeIfAbsent(label, k -> new Node());
+            end = dot;
+        }
+        if (node.wildcardRule == null) {
+            node.wildcardRule = rule;
+            wildcardCount++;
+        }
+    }
+
+    /**
+     * 返回命中的主机规则，没有命中返回 null
+     */
+    FilterRule match(String host) {
+        return match(host, Collections.emptySet());
+    }
+
+    /**
+     * 同 match，但跳过 excluded 中的规则
+     */
+    FilterRule match(String host, Set<FilterRule> excluded) {
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        String normalized = normalize(host);
+        FilterRule exact = exactHosts.get(normalized);
+        if (exact != null && !excluded.contains(exact)) {
+            return exact;
+        }
+        if (wildcardCount == 0) {
+            return null;
+        }
+
+        Node node = wildcardRoot;
+        int end = normalized.length();
+        while (end > 0) {
+            int dot = normalized.lastIndexOf('.', end - 1);
+            node = node.children.get(normalized.substring(dot + 1, end));
+            // 已经到了最左侧标签，说明主机等于后缀本身，不算子域名
+            if (node == null || dot < 0) {
+                return null;
+            }
+            if (node.wildcardRule != null && !excluded.contains(node.wildcardRule)) {
+                return node.wildcardRule;
+            }
+            end = dot;
+        }
+        return null;
+    }
+
+    int size() {
+        return exactHosts.size() + wildcardCount;
+    }
+
+    /**
+     * 解析 "example\.com" 或 "*.example.com" 形式的主机规则，返回主机名
+     * （通配符保留 "*." 前缀），不是单纯的主机名时返回 null
+     */
+    static String parseHostPattern(String pattern) {
+        String host = pattern.trim();
+        String prefix = "";
+        if (host.startsWith("*\\.") || host.startsWith("*.")) {
+            prefix = "*.";
+            host = host.substring(host.charAt(1) == '\\' ? 3 : 2);
+        } else if (host.startsWith("\\*\\.")) {
+            prefix = "*.";
+            host = host.substring(4);
+        }
+        // 手写的主机规则里 "." 常常没有转义，这里按字面量处理
+        StringBuilder name = new StringBuilder(host.length());
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c == '\\' && i + 1 < host.length() && host.charAt(i + 1) == '.') {
+                continue;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '.' && c != '-' && c != '_') {
+                return null;
+            }
+            name.append(c);
+        }
+        return name.length() == 0 ? null : prefix + name;
+    }
+
+    static String normalize(String host) {
+        String normalized = host.trim().toLowerCase(Locale.ROOT);
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+}
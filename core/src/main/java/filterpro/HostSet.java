@@ -0,0 +1,225 @@
+package filterpro;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 大规模域名列表的紧凑集合，一个主机列表规则对应一个实例。
+ * 不保存字符串，只保存每个条目的 64 位指纹，开放寻址放在 long 数组中，10 万个域名约占 2 MB。
+ * 条目写法与主机规则相同："example.com" 只匹配该主机，"*.example.com" 只匹配其子域名。
+ * <p>
+ * 查找时从右向左扫描一遍主机名，指纹逐字符累加，每到一个标签边界就用已经累加出的后缀指纹查一次通配符表，
+ * 耗时只与主机名长度有关，与列表大小无关。不同域名指纹相同的概率约为 条目数 / 2^64，可以忽略。
+ */
+final class HostSet {
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 已加载的列表文件，按路径缓存，文件大小或修改时间变化后重新读取。
+    // 缓存只软引用集合：规则删除后没有匹配器再持有它时，内存紧张可以回收，被回收的条目在下次加载时清理
+    private static final Map<String, Cached> LOADED = new HashMap<>();
+    private static final ReferenceQueue<HostSet> CLEARED = new ReferenceQueue<>();
+
+    private static final class Cached extends SoftReference<HostSet> {
+        final String key;
+        final long length;
+        final long modified;
+
+        Cached(String key, long length, long modified, HostSet set) {
+            super(set, CLEARED);
+            this.key = key;
+            this.length = length;
+            this.modified = modified;
+        }
+    }
+
+    private long[] exact = new long[INITIAL_CAPACITY];
+    private int exactCount;
+    private long[] wildcard = new long[INITIAL_CAPACITY];
+    private int wildcardCount;
+
+    /**
+     * 读取主机列表文件（每行一个条目，# 开头为注释），同一文件没有变化时返回同一个实例。
+     * 返回的实例不会再被修改，可以被多个线程同时查询。
+     */
+    static HostSet load(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long length = file.length();
+        long modified = file.lastModified();
+        synchronized (LOADED) {
+            pruneCleared();
+            Cached cached = LOADED.get(key);
+            HostSet set = cached != null && cached.length == length && cached.modified == modified ? cached.get() : null;
+            if (set != null) {
+                return set;
+            }
+        }
+        HostSet set = new HostSet();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && line.charAt(0) != '#') {
+                    set.add(line);
+                }
+            }
+        }
+        synchronized (LOADED) {
+            LOADED.put(key, new Cached(key, length, modified, set));
+        }
+        return set;
+    }
+
+    // 只移除仍指向已回收集合的条目，同一路径可能已经放入了新的缓存
+    private static void pruneCleared() {
+        Reference<? extends HostSet> ref;
+        while ((ref = CLEARED.poll()) != null) {
+            Cached cleared = (Cached) ref;
+            if (LOADED.get(cleared.key) == cleared) {
+                LOADED.remove(cleared.key);
+            }
+        }
+    }
+
+    /**
+     * 加入一个条目，已存在时返回 false
+     */
+    boolean add(String pattern) {
+        String host = HostIndex.normalize(pattern);
+        boolean subdomains = host.startsWith("*.");
+        if (subdomains) {
+            host = host.substring(2);
+        }
+        if (host.isEmpty()) {
+            return false;
+        }
+        long fingerprint = fingerprint(host, 0, host.length());
+        if (subdomains) {
+            if (!insert(wildcard, fingerprint)) {
+                return false;
+            }
+            if (++wildcardCount * 2 > wildcard.length) {
+                wildcard = grow(wildcard);
+            }
+        } else {
+            if (!insert(exact, fingerprint)) {
+                return false;
+            }
+            if (++exactCount * 2 > exact.length) {
+                exact = grow(exact);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 主机是否命中：等于某个精确条目，或者是某个通配符条目的子域名
+     */
+    boolean contains(String host) {
+        if (host == null) {
+            return false;
+        }
+        int start = 0;
+        int end = host.length();
+        while (start < end && host.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && (host.charAt(end - 1) <= ' ' || host.charAt(end - 1) == '.')) {
+            end--;
+        }
+        if (start == end) {
+            return false;
+        }
+        long h = SEED;
+        for (int i = end - 1; i >= start; i--) {
+            char c = host.charAt(i);
+            if (c == '.' && wildcardCount > 0 && i < end - 1 && lookup(wildcard, mix(h))) {
+                return true;
+            }
+            h = (h ^ lower(c)) * PRIME;
+        }
+        return exactCount > 0 && lookup(exact, mix(h));
+    }
+
+    int size() {
+        return exactCount + wildcardCount;
+    }
+
+    /**
+     * 从右向左累加的指纹，与 contains 中逐字符累加的结果一致
+     */
+    private static long fingerprint(String host, int start, int end) {
+        long h = SEED;
+        for (int i = end - 1; i >= start; i--) {
+            h = (h ^ lower(host.charAt(i))) * PRIME;
+        }
+        return mix(h);
+    }
+
+    private static char lower(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * 让指纹的各位分布均匀，低位可以直接作为表下标；0 用来表示空槽，不会作为指纹出现
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static boolean lookup(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+            long slot = table[i];
+            if (slot == fingerprint) {
+                return true;
+            }
+            if (slot == 0) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean insert(long[] table, long fingerprint) {
+        int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask; ; i = (i + 1) & mask) {
+            long slot = table[i];
+            if (slot == fingerprint) {
+                return false;
+            }
+            if (slot == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+    }
+
+    private static long[] grow(long[] table) {
+        long[] grown = new long[table.length * 2];
+        for (long fingerprint : table) {
+            if (fingerprint != 0) {
+                insert(grown, fingerprint);
+            }
+        }
+        return grown;
+    }
+}
@@ -0,0 +1,170 @@
+package filterpro;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Aho-Corasick 多模式字面量自动机：一次扫描文本即可判断是否包含任意一个字面量，
+ * 扫描代价与文本长度相关，与字面量数量基本无关。构建完成后只读，可被多个线程共享。
+ */
+class LiteralAutomaton {
+    private static final int NO_MATCH = -1;
+
+    // 每个状态的出边按字符排序，查找时二分
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failure;
+    // 当前状态或其失败链上最先结束的模式下标，-1 表示无
+    private final int[] matchIndex;
+    // 在当前状态结束的模式下标，以及失败链上下一个有模式结束的状态，用于列出全部命中
+    private final int[] terminalIndex;
+    private final int[] outputLink;
+    private final int patternCount;
+
+    LiteralAutomaton(List<String> patterns) {
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        terminal.add(NO_MATCH);
+
+        int count = 0;
+        for (int index = 0; index < patterns.size(); index++) {
+            String pattern = patterns.get(index);
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    terminal.add(NO_MATCH);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == NO_MATCH) {
+                terminal.set(state, index);
+            }
+            count++;
+        }
+        this.patternCount = count;
+
+        int stateCount = trie.size();
+        edgeChars = new char[stateCount][];
+        edgeTargets = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            Map<Character, Integer> edges = trie.get(state);
+            char[] chars = new char[edges.size()];
+            int[] targets = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                chars[i] = edge.getKey();
+                targets[i] = edge.getValue();
+                i++;
+            }
+            edgeChars[state] = chars;
+            edgeTargets[state] = targets;
+        }
+
+        // 广度优先计算失败链接
+        failure = new int[stateCount];
+        matchIndex = new int[stateCount];
+        terminalIndex = new int[stateCount];
+        outputLink = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            terminalIndex[state] = terminal.get(state);
+        }
+        matchIndex[0] = terminal.get(0);
+        outputLink[0] = NO_MATCH;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int target : edgeTargets[0]) {
+            failure[target] = 0;
+            matchIndex[target] = terminal.get(target);
+            outputLink[target] = NO_MATCH;
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            char[] chars = edgeChars[state];
+            int[] targets = edgeTargets[state];
+            for (int i = 0; i < chars.length; i++) {
+                int child = targets[i];
+                int fail = failure[state];
+                int next;
+                while ((next = transition(fail, chars[i])) < 0 && fail != 0) {
+                    fail = failure[fail];
+                }
+                failure[child] = next < 0 ? 0 : next;
+                int own = terminal.get(child);
+                matchIndex[child] = own != NO_MATCH ? own : matchIndex[failure[child]];
+                outputLink[child] = terminalIndex[failure[child]] != NO_MATCH ? failure[child] : outputLink[failure[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    int getPatternCount() { return patternCount; }
+
+    /**
+     * 返回文本中最先出现的字面量下标，没有命中返回 -1
+     */
+    int findFirst(CharSequence text) {
+        if (patternCount == 0) {
+            return NO_MATCH;
+        }
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = next < 0 ? 0 : next;
+            if (matchIndex[state] != NO_MATCH) {
+                return matchIndex[state];
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * 按出现位置依次报告文本中出现的每个字面量下标（同一位置结束的按长到短），
+     * visitor 返回 true 时停止扫描。相同的字面量只报告第一次加入时的下标。
+     */
+    void forEachMatch(CharSequence text, IntPredicate visitor) {
+        if (patternCount == 0) {
+            return;
+        }
+        int state = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = transition(state, c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = next < 0 ? 0 : next;
+            for (int out = terminalIndex[state] != NO_MATCH ? state : outputLink[state]; out > 0; out = outputLink[out]) {
+                if (visitor.test(terminalIndex[out])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int transition(int state, char c) {
+        char[] chars = edgeChars[state];
+        if (chars.length == 0) {
+            return -1;
+        }
+        int i = Arrays.binarySearch(chars, c);
+        return i >= 0 ? edgeTargets[state][i] : -1;
+    }
+}
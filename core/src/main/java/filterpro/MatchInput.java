@@ -0,0 +1,33 @@
+package filterpro;
+
+/**
+ * 待匹配请求的各个组成部分。匹配器只会读取当前规则集用得到的部分，
+ * 实现应当在方法被调用时才去提取对应内容。
+ */
+public interface MatchInput {
+    String method();
+
+    String host();
+
+    /**
+     * 请求行中的路径，包含查询参数
+     */
+    String path();
+
+    /**
+     * 问号之后的查询参数，没有时返回空字符串
+     */
+    String query();
+
+    /**
+     * 指定请求头的值，不存在时返回 null
+     */
+    String header(String name);
+
+    CharSequence body();
+
+    /**
+     * 完整的序列化请求
+     */
+    CharSequence text();
+}
@@ -0,0 +1,130 @@
+package filterpro;
+
+import java.nio.CharBuffer;
+import java.util.Locale;
+
+/**
+ * 基于原始 HTTP 请求文本的匹配输入，用于离线流量、基准测试等没有 Montoya 对象的场景。
+ * 各部分在第一次读取时才解析，请求体以视图方式返回，不复制文本。
+ */
+public class RawRequestInput implements MatchInput {
+    private final String text;
+    private final String serviceHost;
+    private int requestLineEnd = -1;
+    private int headerEnd = -1;
+    private int bodyStart = -1;
+
+    public RawRequestInput(String text) {
+        this(text, null);
+    }
+
+    /**
+     * serviceHost 为请求实际发往的主机，为 null 时从 Host 请求头中取
+     */
+    public RawRequestInput(String text, String serviceHost) {
+        this.text = text;
+        this.serviceHost = serviceHost;
+    }
+
+    @Override
+    public String method() {
+        int space = text.indexOf(' ');
+        return space < 0 ? "" : text.substring(0, space);
+    }
+
+    @Override
+    public String host() {
+        if (serviceHost != null) {
+            return serviceHost;
+        }
+        String host = header("Host");
+        if (host == null) {
+            return "";
+        }
+        int colon = host.lastIndexOf(':');
+        // IPv6 地址带方括号，冒号在方括号内时不是端口
+        return colon > host.lastIndexOf(']') ? host.substring(0, colon) : host;
+    }
+
+    @Override
+    public String path() {
+        int lineEnd = requestLineEnd();
+        int first = text.indexOf(' ');
+        if (first < 0 || first >= lineEnd) {
+            return "";
+        }
+        int second = text.indexOf(' ', first + 1);
+        if (second < 0 || second > lineEnd) {
+            second = lineEnd > first + 1 && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+        }
+        return text.substring(first + 1, second);
+    }
+
+    @Override
+    public String query() {
+        String path = path();
+        int index = path.indexOf('?');
+        return index < 0 ? "" : path.substring(index + 1);
+    }
+
+    @Override
+    public String header(String name) {
+        parseHeaderBounds();
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        int lineStart = requestLineEnd();
+        while (lineStart < headerEnd) {
+            if (text.charAt(lineStart) == '\r' || text.charAt(lineStart) == '\n') {
+                lineStart++;
+                continue;
+            }
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0 || lineEnd > headerEnd) {
+                lineEnd = headerEnd;
+            }
+            int colon = text.indexOf(':', lineStart);
+            if (colon > 0 && colon < lineEnd && colon - lineStart == lowerName.length()
+                    && text.regionMatches(true, lineStart, lowerName, 0, lowerName.length())) {
+                return text.substring(colon + 1, lineEnd).trim();
+            }
+            lineStart = lineEnd + 1;
+        }
+        return null;
+    }
+
+    @Override
+    public CharSequence body() {
+        parseHeaderBounds();
+        return CharBuffer.wrap(text, bodyStart, text.length());
+    }
+
+    @Override
+    public CharSequence text() {
+        return text;
+    }
+
+    private int requestLineEnd() {
+        if (requestLineEnd < 0) {
+            int newline = text.indexOf('\n');
+            requestLineEnd = newline < 0 ? text.length() : newline;
+        }
+        return requestLineEnd;
+    }
+
+    private void parseHeaderBounds() {
+        if (headerEnd >= 0) {
+            return;
+        }
+        int crlf = text.indexOf("\r\n\r\n");
+        int lf = text.indexOf("\n\n");
+        if (crlf >= 0 && (lf < 0 || crlf < lf)) {
+            headerEnd = crlf;
+            bodyStart = crlf + 4;
+        } else if (lf >= 0) {
+            headerEnd = lf;
+            bodyStart = lf + 2;
+        } else {
+            headerEnd = text.length();
+            bodyStart = text.length();
+        }
+    }
+}
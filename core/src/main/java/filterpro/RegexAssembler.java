@@ -0,0 +1,145 @@
+package filterpro;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 把多条正则合并成一个表达式（思路同 Perl 的 Regexp::Assemble）：纯字面量的分支放进字符前缀树，
+ * 公共前缀只写一次，例如 /api/v1/log|/api/v1/ping 合并为 /api/v1/(?:log|ping)；
+ * 其余正则原样追加为独立分支。
+ * History Filter 只关心整段文本能否找到匹配，不关心命中的是哪个分支，因此：
+ * <ul>
+ *   <li>分支顺序可以调整；</li>
+ *   <li>某个字面量是另一个字面量的前缀时，较长的那个多余，直接省略。</li>
+ * </ul>
+ * 合并后的表达式与逐条 | 拼接的表达式对任意文本的 find() 结果相同。
+ */
+class RegexAssembler {
+    private static final String ESCAPED = ".[]{}()*+?^$|\\";
+
+    private static final class Node {
+        private final Map<Character, Node> children = new TreeMap<>();
+        private boolean terminal;
+    }
+
+    /**
+     * 合并多条正则，返回一个等价的表达式；空列表返回空字符串
+     */
+    static String assemble(List<String> regexes) {
+        Node root = new Node();
+        boolean hasLiterals = false;
+        List<String> others = new ArrayList<>();
+        for (String regex : regexes) {
+            List<String> literals = TextMatcher.literalAlternatives(regex);
+            if (literals == null) {
+                others.add(regex);
+                continue;
+            }
+            for (String literal : literals) {
+                insert(root, literal);
+            }
+            hasLiterals = true;
+        }
+
+        StringBuilder result = new StringBuilder();
+        if (hasLiterals) {
+            // 顶层本身就是分支，不需要再包一层分组
+            appendBranches(root, result);
+        }
+        for (String regex : others) {
+            if (result.length() > 0) {
+                result.append('|');
+            }
+            result.append(regex);
+        }
+        return result.toString();
+    }
+
+    /**
+     * 把字面量转义成只匹配它自身的正则，转义后仍能被识别为字面量规则
+     */
+    static String escape(String literal) {
+        StringBuilder out = new StringBuilder(literal.length() + 8);
+        for (int i = 0; i < literal.length(); i++) {
+            appendEscaped(literal.charAt(i), out);
+        }
+        return out.toString();
+    }
+
+    private static void insert(Node root, String literal) {
+        Node node = root;
+        for (int i = 0; i < literal.length() && !node.terminal; i++) {
+            node = node.children.computeIfAbsent(literal.charAt(i), k -> new Node());
+        }
+        if (!node.terminal) {
+            // 已有的更长字面量都以它为前缀，不再需要
+            node.terminal = true;
+            node.children.clear();
+        }
+    }
+
+    /**
+     * 输出 node 之后的部分：单个子节点的链直接连写，遇到分叉时输出分组
+     */
+    private static void append(Node node, StringBuilder out) {
+        while (!node.terminal && node.children.size() == 1) {
+            Map.Entry<Character, Node> only = node.children.entrySet().iterator().next();
+            appendEscaped(only.getKey(), out);
+            node = only.getValue();
+        }
+        if (node.terminal) {
+            return;
+        }
+        if (allTerminal(node)) {
+            appendCharClass(node, out);
+            return;
+        }
+        out.append("(?:");
+        appendBranches(node, out);
+        out.append(')');
+    }
+
+    private static void appendBranches(Node node, StringBuilder out) {
+        boolean first = true;
+        for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+            if (!first) {
+                out.append('|');
+            }
+            first = false;
+            appendEscaped(child.getKey(), out);
+            append(child.getValue(), out);
+        }
+    }
+
+    private static boolean allTerminal(Node node) {
+        for (Node child : node.children.values()) {
+            if (!child.terminal) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 子节点全部是结尾时，(?:a|b|c) 写成 [abc]
+     */
+    private static void appendCharClass(Node node, StringBuilder out) {
+        out.append('[');
+        for (char c : node.children.keySet()) {
+            if (c == ']' || c == '\\' || c == '^' || c == '-' || c == '[' || c == '&') {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+        out.append(']');
+    }
+
+    private static void appendEscaped(char c, StringBuilder out) {
+        if (ESCAPED.indexOf(c) >= 0) {
+            out.append('\\');
+        }
+        out.append(c);
+    }
+}
@@ -0,0 +1,244 @@
+package filterpro;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 正则代价分析：静态检查嵌套量词等容易灾难性回溯的写法，并在一组样本请求上限量试跑。
+ * 试跑按读取字符的次数计量而不是计时，结果不受 GC、JIT 和机器快慢影响，同一条正则每次结论相同。
+ * 超出预算的规则会被隔离，不进入代理匹配，也不会生成到 History Filter 中。
+ */
+class RegexCostAnalyzer {
+    // 全部样本共用的字符读取次数，线性和一般的平方级正则远低于此，指数级回溯很快就会超出
+    static final long DEFAULT_BUDGET_STEPS = 25_000_000L;
+
+    private static final List<String> SAMPLE_CORPUS = buildCorpus();
+
+    static class Report {
+        private final List<String> warnings;
+        private final long steps;
+        private final boolean overBudget;
+
+        Report(List<String> warnings, long steps, boolean overBudget) {
+            this.warnings = Collections.unmodifiableList(warnings);
+            this.steps = steps;
+            this.overBudget = overBudget;
+        }
+
+        List<String> getWarnings() { return warnings; }
+        /**
+         * 试跑全部样本读取字符的总次数，超出预算时为预算值
+         */
+        long getSteps() { return steps; }
+        boolean isOverBudget() { return overBudget; }
+
+        /**
+         * 在规则表格中显示的简短说明，没有风险时为空字符串
+         */
+        String summary() {
+            if (overBudget) {
+                return "已隔离: 样本匹配步数超限";
+            }
+            if (!warnings.isEmpty()) {
+                return "警告: " + String.join("、", warnings);
+            }
+            return "";
+        }
+    }
+
+    /**
+     * 规则超出试跑预算，被拒绝编译进匹配器
+     */
+    static class QuarantinedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        QuarantinedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class BudgetExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BudgetExceededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * 每读取一个字符扣减一次预算的文本，预算用完时中断失控的回溯。remaining 在各样本之间共用
+     */
+    private static class CountingCharSequence implements CharSequence {
+        private final String text;
+        private final long[] remaining;
+
+        CountingCharSequence(String text, long[] remaining) {
+            this.text = text;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--remaining[0] < 0) {
+                throw new BudgetExceededException();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new CountingCharSequence(text.substring(start, end), remaining);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    static Report analyze(Pattern pattern) {
+        return analyze(pattern, DEFAULT_BUDGET_STEPS);
+    }
+
+    /**
+     * 静态检查加样本试跑，所有样本共用同一个字符读取预算
+     */
+    static Report analyze(Pattern pattern, long budgetSteps) {
+        List<String> warnings = findRiskyConstructs(pattern.pattern());
+        long[] remaining = {budgetSteps};
+        try {
+            for (String sample : SAMPLE_CORPUS) {
+                pattern.matcher(new CountingCharSequence(sample, remaining)).find();
+            }
+        } catch (BudgetExceededException | StackOverflowError e) {
+            return new Report(warnings, budgetSteps, true);
+        }
+        return new Report(warnings, budgetSteps - remaining[0], false);
+    }
+
+    /**
+     * 找出容易导致灾难性回溯的结构：量词嵌套量词、量词作用于分支、多个无界通配符相连
+     */
+    static List<String> findRiskyConstructs(String regex) {
+        List<String> warnings = new ArrayList<>();
+        // 每层分组记录：是否包含无界量词、是否包含分支
+        Deque<boolean[]> groups = new ArrayDeque<>();
+        boolean[] current = new boolean[2];
+        boolean inClass = false;
+        int unboundedWildcards = 0;
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+                continue;
+            }
+            if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '[':
+                    inClass = true;
+                    break;
+                case '(':
+                    groups.push(current);
+                    current = new boolean[2];
+                    break;
+                case '|':
+                    current[1] = true;
+                    break;
+                case ')':
+                    boolean[] closed = current;
+                    current = groups.isEmpty() ? new boolean[2] : groups.pop();
+                    if (isUnboundedQuantifier(regex, i + 1)) {
+                        if (closed[0]) {
+                            addOnce(warnings, "嵌套量词");
+                        }
+                        if (closed[1]) {
+                            addOnce(warnings, "量词作用于分支");
+                        }
+                        current[0] = true;
+                    }
+                    current[0] |= closed[0];
+                    break;
+                default:
+                    if (isUnboundedQuantifier(regex, i)) {
+                        current[0] = true;
+                        if (i > 0 && regex.charAt(i - 1) == '.' && (i < 2 || regex.charAt(i - 2) != '\\')) {
+                            unboundedWildcards++;
+                        }
+                    }
+                    break;
+            }
+        }
+        if (unboundedWildcards > 1) {
+            addOnce(warnings, "多个无界通配符");
+        }
+        return warnings;
+    }
+
+    private static boolean isUnboundedQuantifier(String regex, int index) {
+        if (index >= regex.length()) {
+            return false;
+        }
+        char c = regex.charAt(index);
+        if (c == '*' || c == '+') {
+            return true;
+        }
+        if (c == '{') {
+            int close = regex.indexOf('}', index);
+            return close > 0 && regex.substring(index, close).endsWith(",");
+        }
+        return false;
+    }
+
+    private static void addOnce(List<String> warnings, String warning) {
+        if (!warnings.contains(warning)) {
+            warnings.add(warning);
+        }
+    }
+
+    private static List<String> buildCorpus() {
+        List<String> corpus = new ArrayList<>();
+        StringBuilder request = new StringBuilder();
+        request.append("POST /api/v1/report/upload?ts=1700000000000&id=3f2a9c1e-8b7d-4e2f-9a61-0c5d7e8f9a1b HTTP/1.1\r\n")
+                .append("Host: www.example.com\r\n")
+                .append("User-Agent: Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko)\r\n")
+                .append("Accept: application/json, text/plain, */*\r\n")
+                .append("Content-Type: application/json\r\n")
+                .append("Cookie: session=").append(repeat("0123456789abcdef", 16)).append("\r\n\r\n")
+                .append("{\"events\":[");
+        for (int i = 0; i < 100; i++) {
+            request.append("{\"name\":\"heartbeat\",\"value\":").append(i).append(",\"tags\":[\"a\",\"b\"]},");
+        }
+        request.append("{}]}");
+        corpus.add(request.toString());
+        // 针对常见回溯陷阱的病态输入：长串重复字符后跟一个无法匹配的结尾
+        corpus.add(repeat("a", 2000) + "!");
+        corpus.add(repeat("1", 2000) + "x");
+        corpus.add(repeat("/a", 1000) + "\n");
+        corpus.add(repeat(" ", 2000) + "\u0000");
+        corpus.add(repeat("x=1&", 500) + "=");
+        return Collections.unmodifiableList(corpus);
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder sb = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package filterpro;
+
+/**
+ * 规则分组及其命中统计
+ */
+public class RuleGroup {
+    private String groupName;
+    private String remark;
+    // 启用的分组同时参与代理过滤
+    private volatile boolean active;
+    private final RuleStats stats = new RuleStats();
+
+    public RuleGroup(String groupName, String remark) {
+        this.groupName = groupName;
+        this.remark = remark;
+    }
+
+    public String getGroupName() { return groupName; }
+    public void setGroupName(String groupName) { this.groupName = groupName; }
+    public String getRemark() { return remark; }
+    public void setRemark(String remark) { this.remark = remark; }
+    public boolean isActive() { return active; }
+    public void setActive(boolean active) { this.active = active; }
+    public RuleStats getStats() { return stats; }
+}
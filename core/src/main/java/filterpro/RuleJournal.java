@@ -0,0 +1,242 @@
+package filterpro;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 规则文件的增量持久化：规则文件本身是完整快照，格式不变；平时只把与上次持久化相比的增删
+ * 追加到同目录的 .journal 文件，日志过长时再压缩成新快照。
+ * 快照先写临时文件再原子替换，写到一半崩溃不会损坏原文件。
+ * 日志第一行记录所基于快照的 CRC32，快照被替换后旧日志自动作废，不会重复回放。
+ */
+public class RuleJournal {
+    private static final String HEADER_PREFIX = "#crc ";
+    // 日志条数超过该值或超过规则数的一半时压缩
+    private static final int MIN_COMPACT_ENTRIES = 1024;
+
+    private final Path snapshot;
+    private final Path journal;
+    private final Path temp;
+
+    private Map<String, Integer> persisted = new HashMap<>();
+    private long snapshotCrc;
+    private int journalEntries;
+
+    public RuleJournal(File snapshotFile) {
+        this.snapshot = snapshotFile.toPath();
+        this.journal = snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+        this.temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    }
+
+    File getJournalFile() { return journal.toFile(); }
+    synchronized int getJournalEntries() { return journalEntries; }
+
+    /**
+     * 读取快照并回放日志，返回当前的规则行。日志与快照不匹配时丢弃日志。
+     */
+    public synchronized List<String> load() throws IOException {
+        byte[] data = Files.exists(snapshot) ? Files.readAllBytes(snapshot) : new byte[0];
+        snapshotCrc = crc(data);
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (String line : splitLines(decodeSnapshot(data), false)) {
+            lines.merge(line, 1, Integer::sum);
+        }
+
+        journalEntries = 0;
+        if (Files.exists(journal)) {
+            byte[] journalData = Files.readAllBytes(journal);
+            List<String> entries = splitLines(new String(journalData, StandardCharsets.UTF_8), true);
+            if (entries.isEmpty() || !entries.get(0).equals(HEADER_PREFIX + Long.toHexString(snapshotCrc))) {
+                Files.delete(journal);
+            } else {
+                truncatePartialLine(journalData);
+                for (String entry : entries.subList(1, entries.size())) {
+                    if (entry.length() < 2 || entry.charAt(1) != '|') {
+                        continue;
+                    }
+                    String line = entry.substring(2);
+                    if (entry.charAt(0) == '+') {
+                        lines.merge(line, 1, Integer::sum);
+                    } else if (entry.charAt(0) == '-') {
+                        lines.computeIfPresent(line, (k, count) -> count > 1 ? count - 1 : null);
+                    }
+                    journalEntries++;
+                }
+            }
+        }
+
+        persisted = new HashMap<>(lines);
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : lines.entrySet()) {
+            for (int i = 0; i < entry.getValue(); i++) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只把与上次持久化相比的变化追加到日志，日志过长时改为压缩。没有任何变化时返回 false，不写文件。
+     */
+    synchronized boolean append(List<String> lines) throws IOException {
+        Map<String, Integer> current = count(lines);
+        StringBuilder delta = new StringBuilder();
+        int entries = 0;
+        for (Map.Entry<String, Integer> entry : current.entrySet()) {
+            for (int i = persisted.getOrDefault(entry.getKey(), 0); i < entry.getValue(); i++) {
+                delta.append("+|").append(entry.getKey()).append('\n');
+                entries++;
+            }
+        }
+        for (Map.Entry<String, Integer> entry : persisted.entrySet()) {
+            for (int i = current.getOrDefault(entry.getKey(), 0); i < entry.getValue(); i++) {
+                delta.append("-|").append(entry.getKey()).append('\n');
+                entries++;
+            }
+        }
+        if (entries == 0) {
+            return false;
+        }
+        if (journalEntries + entries > Math.max(MIN_COMPACT_ENTRIES, lines.size() / 2)) {
+            compact(lines);
+            return true;
+        }
+
+        if (!Files.exists(journal)) {
+            delta.insert(0, HEADER_PREFIX + Long.toHexString(snapshotCrc) + "\n");
+        }
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            write(channel, delta.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        persisted = current;
+        journalEntries += entries;
+        return true;
+    }
+
+    /**
+     * 把完整规则写成新快照：先写临时文件并刷盘，再原子替换规则文件，最后删除日志
+     */
+    synchronized void compact(List<String> lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        String separator = System.lineSeparator();
+        for (String line : lines) {
+            content.append(line).append(separator);
+        }
+        byte[] data = content.toString().getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, data);
+        }
+        try {
+            Files.move(temp, snapshot, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.deleteIfExists(journal);
+        snapshotCrc = crc(data);
+        persisted = count(lines);
+        journalEntries = 0;
+    }
+
+    /**
+     * 快照与日志一样按 UTF-8 读写。旧版用 FileWriter 按平台默认编码写出的规则文件不是合法的 UTF-8 时，
+     * 按平台默认编码读取，下次重写快照时转成 UTF-8
+     */
+    private static String decodeSnapshot(byte[] data) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return new String(data, Charset.defaultCharset());
+        }
+    }
+
+    /**
+     * 截掉崩溃留下的半行，避免下次追加时和新内容拼在一起
+     */
+    private void truncatePartialLine(byte[] journalData) throws IOException {
+        int end = journalData.length;
+        while (end > 0 && journalData[end - 1] != '\n') {
+            end--;
+        }
+        if (end < journalData.length) {
+            try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private static Map<String, Integer> count(List<String> lines) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String line : lines) {
+            if (!line.isEmpty()) {
+                counts.merge(line, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 按行切分并去掉空行；completeOnly 为 true 时丢弃没有换行结尾的最后一行（写入中途崩溃留下的半行）
+     */
+    private static List<String> splitLines(String text, boolean completeOnly) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                if (!completeOnly) {
+                    addLine(lines, text.substring(start));
+                }
+                break;
+            }
+            addLine(lines, text.substring(start, end));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private static void addLine(List<String> lines, String line) {
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        if (!line.isEmpty()) {
+            lines.add(line);
+        }
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,278 @@
+package filterpro;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 已编译的规则集合：规则按匹配目标分开编译，主机规则放进 HostIndex 按主机名查找，
+ * 主机列表规则各自对应一个 HostSet，其余目标各自使用一个 TextMatcher。匹配时只读取有规则的请求部分。
+ * 带主机条件的路径规则按主机分开编译，请求的主机符合时才匹配路径，不需要序列化整个请求。
+ * 实例不可变，可被代理线程并发使用。
+ * <p>
+ * withChanges 在已编译的匹配器上叠加一小批新规则并屏蔽已删除的规则，原有的自动机和索引直接共用，
+ * 分组中改动几条规则时不必重新编译整个分组，见 CompiledRuleCache。
+ */
+public class RuleMatcher {
+    private final TextMatcher methodMatcher;
+    private final HostIndex hosts;
+    private final List<FilterRule> hostListRules;
+    private final List<HostSet> hostLists;
+    private final TextMatcher hostMatcher;
+    private final TextMatcher pathMatcher;
+    // 主机名或 "*.后缀" -> 该主机上的路径规则
+    private final Map<String, TextMatcher> scopedPathMatchers;
+    private final boolean scopedPathWildcards;
+    private final TextMatcher queryMatcher;
+    private final Map<String, TextMatcher> headerMatchers;
+    private final TextMatcher bodyMatcher;
+    private final TextMatcher requestMatcher;
+    private final Set<RuleTarget> targets;
+    private final List<String> errors;
+    // 叠加的新规则，先于本匹配器的规则匹配，可以为 null
+    private final RuleMatcher overlay;
+    // 已删除的规则，按对象判断，匹配时跳过
+    private final Set<FilterRule> excluded;
+
+    private RuleMatcher(Map<RuleTarget, TextMatcher.Builder> builders, HostIndex hosts,
+                        List<FilterRule> hostListRules, List<HostSet> hostLists,
+                        Map<String, TextMatcher.Builder> headerBuilders,
+                        Map<String, TextMatcher.Builder> scopedPathBuilders, List<String> errors) {
+        this.methodMatcher = builders.get(RuleTarget.METHOD).build();
+        this.hosts = hosts;
+        this.hostListRules = hostListRules;
+        this.hostLists = hostLists;
+        this.hostMatcher = builders.get(RuleTarget.HOST).build();
+        this.pathMatcher = builders.get(RuleTarget.PATH).build();
+        this.queryMatcher = builders.get(RuleTarget.QUERY).build();
+        this.bodyMatcher = builders.get(RuleTarget.BODY).build();
+        this.requestMatcher = builders.get(RuleTarget.REQUEST).build();
+        Map<String, TextMatcher> headers = new HashMap<>();
+        for (Map.Entry<String, TextMatcher.Builder> entry : headerBuilders.entrySet()) {
+            headers.put(entry.getKey(), entry.getValue().build());
+        }
+        this.headerMatchers = headers;
+        Map<String, TextMatcher> scopedPaths = new HashMap<>();
+        boolean wildcards = false;
+        for (Map.Entry<String, TextMatcher.Builder> entry : scopedPathBuilders.entrySet()) {
+            scopedPaths.put(entry.getKey(), entry.getValue().build());
+            wildcards |= entry.getKey().startsWith("*.");
+        }
+        this.scopedPathMatchers = scopedPaths;
+        this.scopedPathWildcards = wildcards;
+        this.errors = Collections.unmodifiableList(errors);
+
+        Set<RuleTarget> used = EnumSet.noneOf(RuleTarget.class);
+        if (!methodMatcher.isEmpty()) used.add(RuleTarget.METHOD);
+        if (hosts.size() > 0 || !hostLists.isEmpty() || !hostMatcher.isEmpty()) used.add(RuleTarget.HOST);
+        if (!pathMatcher.isEmpty()) used.add(RuleTarget.PATH);
+        if (!scopedPathMatchers.isEmpty()) {
+            used.add(RuleTarget.HOST);
+            used.add(RuleTarget.PATH);
+        }
+        if (!queryMatcher.isEmpty()) used.add(RuleTarget.QUERY);
+        if (!headerMatchers.isEmpty()) used.add(RuleTarget.HEADER);
+        if (!bodyMatcher.isEmpty()) used.add(RuleTarget.BODY);
+        if (!requestMatcher.isEmpty()) used.add(RuleTarget.REQUEST);
+        this.targets = Collections.unmodifiableSet(used);
+        this.overlay = null;
+        this.excluded = Collections.emptySet();
+    }
+
+    private RuleMatcher(RuleMatcher base, RuleMatcher overlay, Set<FilterRule> excluded) {
+        this.methodMatcher = base.methodMatcher;
+        this.hosts = base.hosts;
+        this.hostListRules = base.hostListRules;
+        this.hostLists = base.hostLists;
+        this.hostMatcher = base.hostMatcher;
+        this.pathMatcher = base.pathMatcher;
+        this.scopedPathMatchers = base.scopedPathMatchers;
+        this.scopedPathWildcards = base.scopedPathWildcards;
+        this.queryMatcher = base.queryMatcher;
+        this.headerMatchers = base.headerMatchers;
+        this.bodyMatcher = base.bodyMatcher;
+        this.requestMatcher = base.requestMatcher;
+        List<String> allErrors = new ArrayList<>(base.errors);
+        allErrors.addAll(overlay.errors);
+        this.errors = Collections.unmodifiableList(allErrors);
+        Set<RuleTarget> used = EnumSet.noneOf(RuleTarget.class);
+        used.addAll(base.targets);
+        used.addAll(overlay.targets);
+        this.targets = Collections.unmodifiableSet(used);
+        this.overlay = overlay;
+        this.excluded = excluded;
+    }
+
+    /**
+     * 在本匹配器（必须是 compile 的结果）上叠加 overlay 中的规则，并跳过 excluded 中的规则。
+     * excluded 须按对象比较，调用之后不能再修改
+     */
+    RuleMatcher withChanges(RuleMatcher overlay, Set<FilterRule> excluded) {
+        return new RuleMatcher(this, overlay, excluded);
+    }
+
+    public static RuleMatcher compile(List<FilterRule> rules) {
+        return compile(rules, Pattern::compile);
+    }
+
+    /**
+     * 编译已启用的规则，无法编译的规则单独跳过并记录到 errors，不影响其它规则。
+     * compiler 用于编译单条正则，可以传入带缓存的实现。
+     */
+    static RuleMatcher compile(List<FilterRule> rules, Function<String, Pattern> compiler) {
+        Map<RuleTarget, TextMatcher.Builder> builders = new HashMap<>();
+        for (RuleTarget target : RuleTarget.values()) {
+            builders.put(target, new TextMatcher.Builder(compiler));
+        }
+        HostIndex hosts = new HostIndex();
+        List<FilterRule> hostListRules = new ArrayList<>();
+        List<HostSet> hostLists = new ArrayList<>();
+        Map<String, TextMatcher.Builder> headerBuilders = new HashMap<>();
+        Map<String, TextMatcher.Builder> scopedPathBuilders = new HashMap<>();
+        List<String> errors = new ArrayList<>();
+
+        for (FilterRule rule : rules) {
+            String content = rule.getRuleContent();
+            if (!rule.isEnabled() || content == null || content.isEmpty()) {
+                continue;
+            }
+            RuleTarget target = rule.getTarget();
+            if (target == RuleTarget.HOST_LIST) {
+                try {
+                    hostLists.add(HostSet.load(new File(content)));
+                    hostListRules.add(rule);
+                } catch (IOException e) {
+                    errors.add("主机列表 '" + content + "' 无法读取: " + e.getMessage());
+                }
+                continue;
+            }
+            if (target == RuleTarget.HOST) {
+                String host = HostIndex.parseHostPattern(content);
+                if (host != null) {
+                    if (host.startsWith("*.")) {
+                        hosts.addWildcard(host.substring(2), rule);
+                    } else {
+                        hosts.addExact(host, rule);
+                    }
+                    continue;
+                }
+            }
+            if (target == RuleTarget.HEADER) {
+                String headerName = rule.getTargetParam();
+                if (headerName == null || headerName.trim().isEmpty()) {
+                    errors.add("规则 '" + content + "' 没有指定请求头名称");
+                    continue;
+                }
+                headerBuilders.computeIfAbsent(headerName.trim().toLowerCase(Locale.ROOT), k -> new TextMatcher.Builder(compiler))
+                        .add(rule, errors);
+                continue;
+            }
+            String scope = rule.getTargetParam();
+            if (target == RuleTarget.PATH && scope != null && !scope.trim().isEmpty()) {
+                String host = HostIndex.parseHostPattern(scope);
+                if (host == null) {
+                    errors.add("规则 '" + content + "' 的主机条件 '" + scope + "' 不是主机名");
+                    continue;
+                }
+                scopedPathBuilders.computeIfAbsent(HostIndex.normalize(host), k -> new TextMatcher.Builder(compiler))
+                        .add(rule, errors);
+                continue;
+            }
+            builders.get(target).add(rule, errors);
+        }
+        return new RuleMatcher(builders, hosts, hostListRules, hostLists, headerBuilders, scopedPathBuilders, errors);
+    }
+
+    /**
+     * 返回第一条命中的规则，没有命中返回 null。
+     * 先查代价最低的部分，请求体和完整请求放在最后，并且只在有对应规则时才读取。
+     */
+    public FilterRule match(MatchInput input) {
+        FilterRule hit;
+        if (overlay != null && (hit = overlay.match(input)) != null) {
+            return hit;
+        }
+        if (!methodMatcher.isEmpty() && (hit = methodMatcher.match(input.method(), excluded)) != null) {
+            return hit;
+        }
+        if (targets.contains(RuleTarget.HOST)) {
+            String host = input.host();
+            if ((hit = hosts.match(host, excluded)) != null) {
+                return hit;
+            }
+            for (int i = 0; i < hostLists.size(); i++) {
+                if (hostLists.get(i).contains(host) && !excluded.contains(hostListRules.get(i))) {
+                    return hostListRules.get(i);
+                }
+            }
+            if (!hostMatcher.isEmpty() && (hit = hostMatcher.match(host, excluded)) != null) {
+                return hit;
+            }
+        }
+        if (!pathMatcher.isEmpty() && (hit = pathMatcher.match(input.path(), excluded)) != null) {
+            return hit;
+        }
+        if (!scopedPathMatchers.isEmpty() && (hit = matchScopedPath(input)) != null) {
+            return hit;
+        }
+        if (!queryMatcher.isEmpty() && (hit = queryMatcher.match(input.query(), excluded)) != null) {
+            return hit;
+        }
+        for (Map.Entry<String, TextMatcher> entry : headerMatchers.entrySet()) {
+            if ((hit = entry.getValue().match(input.header(entry.getKey()), excluded)) != null) {
+                return hit;
+            }
+        }
+        if (!bodyMatcher.isEmpty() && (hit = bodyMatcher.match(input.body(), excluded)) != null) {
+            return hit;
+        }
+        if (!requestMatcher.isEmpty() && (hit = requestMatcher.match(input.text(), excluded)) != null) {
+            return hit;
+        }
+        return null;
+    }
+
+    /**
+     * 先查主机本身的路径规则，再从左到右依次查 "*.父域名" 的规则，主机等于后缀本身时不算
+     */
+    private FilterRule matchScopedPath(MatchInput input) {
+        String host = input.host();
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        String normalized = HostIndex.normalize(host);
+        FilterRule hit;
+        TextMatcher matcher = scopedPathMatchers.get(normalized);
+        if (matcher != null && (hit = matcher.match(input.path(), excluded)) != null) {
+            return hit;
+        }
+        if (scopedPathWildcards) {
+            for (int dot = normalized.indexOf('.'); dot >= 0; dot = normalized.indexOf('.', dot + 1)) {
+                matcher = scopedPathMatchers.get("*" + normalized.substring(dot));
+                if (matcher != null && (hit = matcher.match(input.path(), excluded)) != null) {
+                    return hit;
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return targets.isEmpty();
+    }
+
+    /**
+     * 当前规则集需要读取的请求部分
+     */
+    public Set<RuleTarget> getTargets() { return targets; }
+    public List<String> getErrors() { return errors; }
+}
@@ -0,0 +1,237 @@
+package filterpro;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 找出分组中多余的规则：完全重复的规则，以及命中范围被其它规则完全覆盖的规则。
+ * 只做保守的判断，报告为多余的规则删掉后分组的命中结果（代理匹配和 History Filter）不变：
+ * <ul>
+ *   <li>匹配目标、目标参数和内容都相同的规则互为重复，保留第一条；</li>
+ *   <li>*.example.com 覆盖 a.example.com 和 *.a.example.com；</li>
+ *   <li>字面量规则的每个分支都包含另一条字面量规则的某个分支时被覆盖，
+ *       覆盖方的匹配目标须相同，或者是完整请求。</li>
+ * </ul>
+ * 正则规则只判断重复，不做覆盖分析。禁用的规则不参与。
+ */
+class RuleOptimizer {
+
+    /**
+     * 一条多余规则及覆盖它的规则
+     */
+    static class Proposal {
+        private final FilterRule redundant;
+        private final FilterRule coveredBy;
+        private final String reason;
+
+        Proposal(FilterRule redundant, FilterRule coveredBy, String reason) {
+            this.redundant = redundant;
+            this.coveredBy = coveredBy;
+            this.reason = reason;
+        }
+
+        FilterRule getRedundant() { return redundant; }
+        FilterRule getCoveredBy() { return coveredBy; }
+        String getReason() { return reason; }
+    }
+
+    /**
+     * 一条字面量规则的全部分支
+     */
+    private static class LiteralRule {
+        private final FilterRule rule;
+        private final List<String> alternatives;
+        private final String scope;
+
+        LiteralRule(FilterRule rule, List<String> alternatives, String scope) {
+            this.rule = rule;
+            this.alternatives = alternatives;
+            this.scope = scope;
+        }
+    }
+
+    /**
+     * 同一匹配范围内全部字面量分支构成的自动机，相同的字面量只加入一次，记录全部所属规则
+     */
+    private static class Scope {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> literals = new ArrayList<>();
+        private final List<List<LiteralRule>> owners = new ArrayList<>();
+        private LiteralAutomaton automaton;
+
+        void add(String literal, LiteralRule owner) {
+            Integer index = indexes.get(literal);
+            if (index == null) {
+                index = literals.size();
+                indexes.put(literal, index);
+                literals.add(literal);
+                owners.add(new ArrayList<>());
+            }
+            owners.get(index).add(owner);
+        }
+    }
+
+    private static final String REQUEST_SCOPE = RuleTarget.REQUEST.name();
+
+    static List<Proposal> analyze(List<FilterRule> rules) {
+        List<Proposal> proposals = new ArrayList<>();
+        Map<String, FilterRule> seen = new HashMap<>();
+        Map<String, FilterRule> exactHosts = new LinkedHashMap<>();
+        HostIndex wildcards = new HostIndex();
+        Map<String, FilterRule> wildcardSuffixes = new LinkedHashMap<>();
+        List<LiteralRule> literalRules = new ArrayList<>();
+
+        for (FilterRule rule : rules) {
+            String content = rule.getRuleContent();
+            if (!rule.isEnabled() || content == null || content.isEmpty()) {
+                continue;
+            }
+            RuleTarget target = rule.getTarget();
+            String host = target == RuleTarget.HOST ? HostIndex.parseHostPattern(content) : null;
+            String key = host != null
+                    ? RuleTarget.HOST.name() + '\u0000' + HostIndex.normalize(host)
+                    : scopeOf(rule) + '\u0000' + content;
+            FilterRule first = seen.putIfAbsent(key, rule);
+            if (first != null) {
+                proposals.add(new Proposal(rule, first, "重复"));
+                continue;
+            }
+
+            if (host != null) {
+                if (host.startsWith("*.")) {
+                    String suffix = HostIndex.normalize(host.substring(2));
+                    wildcards.addWildcard(suffix, rule);
+                    wildcardSuffixes.put(suffix, rule);
+                } else {
+                    exactHosts.put(HostIndex.normalize(host), rule);
+                }
+                continue;
+            }
+            if (target == RuleTarget.HOST || target == RuleTarget.HOST_LIST || target == RuleTarget.METHOD) {
+                continue;
+            }
+            List<String> alternatives = TextMatcher.literalAlternatives(content);
+            if (alternatives != null) {
+                literalRules.add(new LiteralRule(rule, alternatives, scopeOf(rule)));
+            }
+        }
+
+        // 主机：被更宽的通配符覆盖
+        for (Map.Entry<String, FilterRule> entry : exactHosts.entrySet()) {
+            FilterRule cover = wildcards.match(entry.getKey());
+            if (cover != null) {
+                proposals.add(new Proposal(entry.getValue(), cover, "被通配符覆盖"));
+            }
+        }
+        for (Map.Entry<String, FilterRule> entry : wildcardSuffixes.entrySet()) {
+            FilterRule cover = wildcards.match(entry.getKey());
+            if (cover != null) {
+                proposals.add(new Proposal(entry.getValue(), cover, "被通配符覆盖"));
+            }
+        }
+
+        findCoveredLiterals(literalRules, proposals);
+        return proposals;
+    }
+
+    /**
+     * 去掉多余规则后的规则列表，顺序不变
+     */
+    static List<FilterRule> minimize(List<FilterRule> rules) {
+        List<Proposal> proposals = analyze(rules);
+        if (proposals.isEmpty()) {
+            return rules;
+        }
+        Set<FilterRule> redundant = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Proposal proposal : proposals) {
+            redundant.add(proposal.getRedundant());
+        }
+        List<FilterRule> minimized = new ArrayList<>(rules.size() - redundant.size());
+        for (FilterRule rule : rules) {
+            if (!redundant.contains(rule)) {
+                minimized.add(rule);
+            }
+        }
+        return minimized;
+    }
+
+    private static void findCoveredLiterals(List<LiteralRule> literalRules, List<Proposal> proposals) {
+        if (literalRules.isEmpty()) {
+            return;
+        }
+        Map<String, Scope> scopes = new HashMap<>();
+        for (LiteralRule literalRule : literalRules) {
+            Scope scope = scopes.computeIfAbsent(literalRule.scope, k -> new Scope());
+            for (String literal : literalRule.alternatives) {
+                scope.add(literal, literalRule);
+            }
+        }
+        for (Scope scope : scopes.values()) {
+            scope.automaton = new LiteralAutomaton(scope.literals);
+        }
+
+        Scope requestScope = scopes.get(REQUEST_SCOPE);
+        for (LiteralRule literalRule : literalRules) {
+            Scope own = scopes.get(literalRule.scope);
+            FilterRule cover = null;
+            for (String alternative : literalRule.alternatives) {
+                FilterRule alternativeCover = findCover(own, alternative, literalRule);
+                if (alternativeCover == null && requestScope != null && requestScope != own) {
+                    alternativeCover = findCover(requestScope, alternative, literalRule);
+                }
+                if (alternativeCover == null) {
+                    cover = null;
+                    break;
+                }
+                if (cover == null) {
+                    cover = alternativeCover;
+                }
+            }
+            if (cover != null) {
+                proposals.add(new Proposal(literalRule.rule, cover, "被覆盖"));
+            }
+        }
+    }
+
+    /**
+     * 在范围内找另一条规则的字面量，它是 text 的子串。与 text 完全相同时只认排在前面的规则，
+     * 避免两条分支相同、顺序不同的规则互相覆盖而被同时删除。
+     */
+    private static FilterRule findCover(Scope scope, String text, LiteralRule self) {
+        FilterRule[] found = new FilterRule[1];
+        scope.automaton.forEachMatch(text, index -> {
+            boolean equal = scope.literals.get(index).length() == text.length();
+            for (LiteralRule owner : scope.owners.get(index)) {
+                if (owner == self) {
+                    // 列表按规则顺序排列，相同字面量排在自己之后的都不能覆盖自己
+                    if (equal) {
+                        return false;
+                    }
+                    continue;
+                }
+                found[0] = owner.rule;
+                return true;
+            }
+            return false;
+        });
+        return found[0];
+    }
+
+    /**
+     * 规则的匹配范围：匹配目标加上请求头名称或路径规则的主机条件
+     */
+    private static String scopeOf(FilterRule rule) {
+        if (rule.getTarget() == RuleTarget.HEADER || rule.getTarget() == RuleTarget.PATH) {
+            String param = rule.getTargetParam() == null ? "" : rule.getTargetParam().trim().toLowerCase(Locale.ROOT);
+            return param.isEmpty() ? rule.getTarget().name() : rule.getTarget().name() + ':' + param;
+        }
+        return rule.getTarget().name();
+    }
+}
@@ -0,0 +1,238 @@
+package filterpro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 规则搜索的三元组倒排索引，覆盖规则内容、规则类型、备注和组名，随规则增删改同步更新。
+ * 每条规则按加入顺序分配序号，倒排表是递增的序号数组；规则修改或删除时旧序号只标记失效，
+ * 失效序号过多时整体重建。查询先求倒排表交集得到候选，再用缓存的小写文本确认包含关系；
+ * 新查询包含上一次的查询（继续输入）且规则没有变化时，直接在上一次的结果中筛选。
+ * 本类不做同步，由 RuleStore 在持有锁时调用。
+ */
+class RuleSearchIndex {
+    // 字段之间的分隔符，保证三元组和包含判断不会跨字段
+    private static final char FIELD_SEPARATOR = '\u0000';
+    private static final int GRAM = 3;
+
+    private static final class Entry {
+        private final FilterRule rule;
+        private final String text;
+        private final int seq;
+
+        Entry(FilterRule rule, String text, int seq) {
+            this.rule = rule;
+            this.text = text;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * 递增的序号数组
+     */
+    private static final class Postings {
+        private int[] seqs = new int[4];
+        private int size;
+
+        void add(int seq) {
+            if (size == seqs.length) {
+                seqs = Arrays.copyOf(seqs, size * 2);
+            }
+            seqs[size++] = seq;
+        }
+    }
+
+    private final Map<FilterRule, Entry> entries = new IdentityHashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // 序号到规则的映射，失效的序号为 null
+    private Entry[] bySeq = new Entry[1024];
+    private int nextSeq;
+    private int dead;
+    private long modCount;
+
+    private String lastQuery;
+    private List<Entry> lastResults;
+    private long lastModCount = -1;
+
+    void add(FilterRule rule) {
+        if (entries.containsKey(rule)) {
+            return;
+        }
+        String text = indexText(rule);
+        Entry entry = new Entry(rule, text, nextSeq++);
+        if (entry.seq == bySeq.length) {
+            bySeq = Arrays.copyOf(bySeq, bySeq.length * 2);
+        }
+        bySeq[entry.seq] = entry;
+        entries.put(rule, entry);
+        for (long gram : grams(text)) {
+            postings.computeIfAbsent(gram, k -> new Postings()).add(entry.seq);
+        }
+        modCount++;
+    }
+
+    void remove(FilterRule rule) {
+        Entry entry = entries.remove(rule);
+        if (entry == null) {
+            return;
+        }
+        bySeq[entry.seq] = null;
+        dead++;
+        modCount++;
+        if (dead > Math.max(1024, entries.size())) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 规则被编辑后的新规则替换。被索引的字段没有变化时沿用原序号，位置和倒排表都不变
+     */
+    void replace(FilterRule previous, FilterRule updated) {
+        Entry entry = entries.remove(previous);
+        if (entry != null && entry.text.equals(indexText(updated))) {
+            Entry replaced = new Entry(updated, entry.text, entry.seq);
+            bySeq[entry.seq] = replaced;
+            entries.put(updated, replaced);
+            modCount++;
+            return;
+        }
+        if (entry != null) {
+            entries.put(previous, entry);
+            remove(previous);
+        }
+        add(updated);
+    }
+
+    void clear() {
+        entries.clear();
+        postings.clear();
+        bySeq = new Entry[1024];
+        nextSeq = 0;
+        dead = 0;
+        modCount++;
+    }
+
+    /**
+     * 返回任一字段包含关键词（不区分大小写）的规则，按加入索引的顺序
+     */
+    List<FilterRule> search(String query) {
+        String q = query.toLowerCase(Locale.ROOT).trim();
+        List<Entry> candidates;
+        if (lastQuery != null && lastModCount == modCount && q.contains(lastQuery)) {
+            candidates = lastResults;
+        } else if (q.length() >= GRAM) {
+            candidates = intersect(q);
+        } else {
+            candidates = liveEntries();
+        }
+
+        List<Entry> results = new ArrayList<>();
+        for (Entry entry : candidates) {
+            if (entry.text.contains(q)) {
+                results.add(entry);
+            }
+        }
+        lastQuery = q;
+        lastResults = results;
+        lastModCount = modCount;
+
+        List<FilterRule> rules = new ArrayList<>(results.size());
+        for (Entry entry : results) {
+            rules.add(entry.rule);
+        }
+        return rules;
+    }
+
+    private List<Entry> intersect(String q) {
+        Set<Long> grams = grams(q);
+        List<Postings> lists = new ArrayList<>(grams.size());
+        for (long gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return new ArrayList<>();
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        Postings smallest = lists.get(0);
+        int[] result = Arrays.copyOf(smallest.seqs, smallest.size);
+        int size = result.length;
+        for (int i = 1; i < lists.size() && size > 0; i++) {
+            Postings other = lists.get(i);
+            int kept = 0;
+            for (int j = 0; j < size; j++) {
+                if (Arrays.binarySearch(other.seqs, 0, other.size, result[j]) >= 0) {
+                    result[kept++] = result[j];
+                }
+            }
+            size = kept;
+        }
+
+        List<Entry> candidates = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Entry entry = bySeq[result[i]];
+            if (entry != null) {
+                candidates.add(entry);
+            }
+        }
+        return candidates;
+    }
+
+    private List<Entry> liveEntries() {
+        List<Entry> live = new ArrayList<>(entries.size());
+        for (int i = 0; i < nextSeq; i++) {
+            if (bySeq[i] != null) {
+                live.add(bySeq[i]);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * 丢弃失效序号，按原有顺序重新分配序号并重建倒排表
+     */
+    private void rebuild() {
+        List<Entry> live = liveEntries();
+        clear();
+        for (Entry entry : live) {
+            add(entry.rule);
+        }
+    }
+
+    private static String indexText(FilterRule rule) {
+        return (nullToEmpty(rule.getRuleContent()) + FIELD_SEPARATOR
+                + nullToEmpty(rule.getRuleType()) + FIELD_SEPARATOR
+                + nullToEmpty(rule.getRemark()) + FIELD_SEPARATOR
+                + nullToEmpty(rule.getGroupName())).toLowerCase(Locale.ROOT);
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    /**
+     * 文本中不跨字段的三元组，三个字符打包成一个 long
+     */
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            char a = text.charAt(i);
+            char b = text.charAt(i + 1);
+            char c = text.charAt(i + 2);
+            if (a == FIELD_SEPARATOR || b == FIELD_SEPARATOR || c == FIELD_SEPARATOR) {
+                continue;
+            }
+            grams.add(((long) a << 32) | ((long) b << 16) | c);
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,437 @@
+package filterpro;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按分组分片保存规则：目录中每个分组一个规则文件（格式与原来的规则文件相同，各自带 RuleJournal 变更日志），
+ * 外加一个清单文件，按分组顺序记录文件名、规则条数、是否启用和备注。
+ * 启动时只读清单，分组的规则在第一次选中或启用时才读取；没有加载过的分组在保存时不会被读写。
+ * <p>
+ * 分组的元数据在 EDT 上修改，保存在保存线程上进行。元数据由本对象的锁保护，只在读写内存时短暂持有；
+ * 文件读写由单独的 ioLock 串行化，在本对象的锁之外进行，保存线程写大文件时 EDT 上的改名、启停不会被卡住。
+ * 两个锁都要持有时先取 ioLock。isLoaded 和 ruleCount 在表格绘制时调用，不加锁。
+ */
+public class RuleShards {
+    static final String MANIFEST = "manifest.txt";
+    private static final String SHARD_PREFIX = "group-";
+    private static final String SHARD_SUFFIX = ".txt";
+
+    private static final class Entry {
+        final String file;
+        final RuleJournal journal;
+        String groupName;
+        String remark;
+        boolean active;
+        volatile int ruleCount;
+        // 规则已经全部加入 RuleStore，保存时以 RuleStore 为准
+        volatile boolean loaded;
+        // journal 已读过或写过，可以只追加变化；否则保存时整体重写
+        boolean synced;
+        // 上次保存的分组快照，快照没换说明分组没有变化
+        RuleSnapshot.Group saved;
+        // 需要整体重写的元数据变化（改名、导入）计数，保存期间发生变化时不记录 saved
+        int resets;
+
+        Entry(File directory, String file) {
+            this.file = file;
+            this.journal = new RuleJournal(new File(directory, file));
+        }
+    }
+
+    /**
+     * 一个分组本次保存要写的内容，在本对象的锁内确定，锁外写入
+     */
+    private static final class Write {
+        final Entry entry;
+        final RuleSnapshot.Group group;
+        final List<String> lines;
+        final boolean rewrite;
+        final int resets;
+
+        Write(Entry entry, RuleSnapshot.Group group, List<String> lines, boolean rewrite) {
+            this.entry = entry;
+            this.group = group;
+            this.lines = lines;
+            this.rewrite = rewrite;
+            this.resets = entry.resets;
+        }
+    }
+
+    private final Object ioLock = new Object();
+    private final File directory;
+    // 清单本身也是一个没有变更日志的快照文件，借用 RuleJournal 的原子替换
+    private final RuleJournal manifest;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+    private final List<Entry> removed = new ArrayList<>();
+    private int nextFile;
+    // 清单已读入；清单存在却没读成功时不能保存，否则会用不完整的分组列表覆盖它
+    private boolean opened;
+    // 上次写出的清单，由 ioLock 保护
+    private List<String> writtenManifest = Collections.emptyList();
+
+    public RuleShards(File directory) {
+        this.directory = directory;
+        this.manifest = new RuleJournal(new File(directory, MANIFEST));
+    }
+
+    File getDirectory() { return directory; }
+
+    public boolean exists() {
+        return new File(directory, MANIFEST).isFile();
+    }
+
+    /**
+     * 把旧版的单个规则文件按分组拆成分片并写出清单，分组按第一次出现的顺序排列。
+     * 迁移后的分组都处于未加载状态。
+     */
+    void migrate(List<String> lines, String defaultGroup) throws IOException {
+        Map<String, List<String>> grouped = new LinkedHashMap<>();
+        for (String line : lines) {
+            FilterRule rule = FilterRule.fromConfigLine(line, defaultGroup);
+            if (rule != null) {
+                grouped.computeIfAbsent(rule.getGroupName(), k -> new ArrayList<>()).add(line);
+            }
+        }
+        synchronized (ioLock) {
+            Files.createDirectories(directory.toPath());
+            for (Map.Entry<String, List<String>> group : grouped.entrySet()) {
+                Entry entry;
+                synchronized (this) {
+                    entry = entry(group.getKey());
+                }
+                entry.journal.compact(group.getValue());
+                synchronized (this) {
+                    entry.ruleCount = group.getValue().size();
+                    entry.synced = true;
+                }
+            }
+            writeManifest();
+        }
+    }
+
+    /**
+     * 读取清单，按顺序返回各分组（带备注和启用状态），规则本身不读取
+     */
+    public List<RuleGroup> open() throws IOException {
+        synchronized (ioLock) {
+            List<String> lines = manifest.load();
+            synchronized (this) {
+                List<RuleGroup> groups = open(lines);
+                writtenManifest = manifestLines();
+                return groups;
+            }
+        }
+    }
+
+    private List<RuleGroup> open(List<String> manifestLines) {
+        entries.clear();
+        byName.clear();
+        for (String line : manifestLines) {
+            String[] parts = line.split("\\|", 5);
+            if (parts.length < 4 || byName.containsKey(unescape(parts[3]))) {
+                continue;
+            }
+            Entry entry = new Entry(directory, parts[0]);
+            entry.ruleCount = parseCount(parts[1]);
+            entry.active = Boolean.parseBoolean(parts[2]);
+            entry.groupName = unescape(parts[3]);
+            entry.remark = parts.length > 4 ? unescape(parts[4]) : "";
+            entries.add(entry);
+            byName.put(entry.groupName, entry);
+            nextFile = Math.max(nextFile, fileNumber(parts[0]) + 1);
+        }
+        opened = true;
+        List<RuleGroup> groups = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            RuleGroup group = new RuleGroup(entry.groupName, entry.remark);
+            group.setActive(entry.active);
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * 读取分组的规则行（快照加上回放的变更日志）。规则行中保存的组名可能是改名之前的，调用方应以分组为准。
+     * 规则全部加入 RuleStore 后再调用 loaded，在此之前保存会跳过该分组。
+     */
+    public List<String> load(String groupName) throws IOException {
+        synchronized (ioLock) {
+            Entry entry = byName.get(groupName);
+            if (entry == null || entry.loaded) {
+                return Collections.emptyList();
+            }
+            List<String> lines = entry.journal.load();
+            synchronized (this) {
+                entry.synced = true;
+            }
+            return lines;
+        }
+    }
+
+    synchronized void loaded(String groupName) {
+        Entry entry = byName.get(groupName);
+        if (entry != null) {
+            entry.loaded = true;
+        }
+    }
+
+    boolean isLoaded(String groupName) {
+        Entry entry = byName.get(groupName);
+        return entry == null || entry.loaded;
+    }
+
+    /**
+     * 清单中记录的规则条数；已加载的分组以 RuleStore 为准，这里只在保存后更新
+     */
+    int ruleCount(String groupName) {
+        Entry entry = byName.get(groupName);
+        return entry == null ? 0 : entry.ruleCount;
+    }
+
+    /**
+     * 新建的分组没有需要读取的内容，直接视为已加载
+     */
+    synchronized void addGroup(String groupName, String remark) {
+        if (!byName.containsKey(groupName)) {
+            Entry entry = entry(groupName);
+            entry.remark = remark;
+            entry.loaded = true;
+        }
+    }
+
+    /**
+     * 改名只改清单，分片文件不变。新名称已存在时两个分组合并，调用方需要先加载原分组的规则。
+     */
+    synchronized void renameGroup(String oldName, String newName) {
+        Entry entry = byName.get(oldName);
+        if (entry == null || oldName.equals(newName)) {
+            return;
+        }
+        if (byName.containsKey(newName)) {
+            removeGroup(oldName);
+            return;
+        }
+        byName.remove(oldName);
+        entry.groupName = newName;
+        byName.put(newName, entry);
+        // 分片中每一行都带着旧组名，已加载时下次保存整体更新
+        entry.saved = null;
+        entry.resets++;
+    }
+
+    /**
+     * 删除分组，分片文件在下次保存时删除
+     */
+    synchronized void removeGroup(String groupName) {
+        Entry entry = byName.remove(groupName);
+        if (entry != null) {
+            entries.remove(entry);
+            removed.add(entry);
+        }
+    }
+
+    synchronized void setRemark(String groupName, String remark) {
+        Entry entry = byName.get(groupName);
+        if (entry != null) {
+            entry.remark = remark;
+        }
+    }
+
+    synchronized void setActive(String groupName, boolean active) {
+        Entry entry = byName.get(groupName);
+        if (entry != null) {
+            entry.active = active;
+        }
+    }
+
+    /**
+     * 导入配置会替换全部规则：所有分组都以 RuleStore 为准，没有加载过的分片下次保存时被覆盖
+     */
+    synchronized void replaceAll() {
+        for (Entry entry : entries) {
+            entry.loaded = true;
+            entry.saved = null;
+            entry.resets++;
+        }
+    }
+
+    /**
+     * 保存有变化的已加载分组和清单，没有任何写入时返回 false
+     */
+    boolean save(RuleSnapshot snapshot) throws IOException {
+        return write(snapshot, false);
+    }
+
+    /**
+     * 把已加载的分组都重写成完整分片并清空各自的变更日志
+     */
+    void compact(RuleSnapshot snapshot) throws IOException {
+        write(snapshot, true);
+    }
+
+    private boolean write(RuleSnapshot snapshot, boolean compact) throws IOException {
+        synchronized (ioLock) {
+            List<Write> writes = new ArrayList<>();
+            List<Entry> deleted;
+            synchronized (this) {
+                if (!opened && exists()) {
+                    throw new IOException("分组清单尚未读取，不能保存: " + new File(directory, MANIFEST).getAbsolutePath());
+                }
+                for (Entry entry : entries) {
+                    if (!entry.loaded) {
+                        continue;
+                    }
+                    RuleSnapshot.Group group = snapshot.getGroup(entry.groupName);
+                    if (!compact && entry.synced && entry.saved == group && group != null) {
+                        continue;
+                    }
+                    List<String> lines = group == null ? Collections.emptyList() : group.getConfigLines();
+                    writes.add(new Write(entry, group, lines, compact || !entry.synced));
+                }
+                deleted = new ArrayList<>(removed);
+                removed.clear();
+            }
+
+            Files.createDirectories(directory.toPath());
+            boolean wrote = false;
+            for (Write write : writes) {
+                Entry entry = write.entry;
+                if (write.rewrite) {
+                    entry.journal.compact(write.lines);
+                    wrote = true;
+                } else {
+                    wrote |= entry.journal.append(write.lines);
+                }
+                synchronized (this) {
+                    entry.synced = true;
+                    entry.ruleCount = write.lines.size();
+                    // 写入期间分组被改名或整体替换时，下次保存仍要整体更新
+                    if (entry.resets == write.resets) {
+                        entry.saved = write.group;
+                    }
+                }
+            }
+            for (Entry entry : deleted) {
+                Files.deleteIfExists(new File(directory, entry.file).toPath());
+                Files.deleteIfExists(entry.journal.getJournalFile().toPath());
+                wrote = true;
+            }
+            List<String> lines;
+            synchronized (this) {
+                lines = manifestLines();
+            }
+            if (!lines.equals(writtenManifest)) {
+                manifest.compact(lines);
+                writtenManifest = lines;
+                wrote = true;
+            }
+            return wrote;
+        }
+    }
+
+    /**
+     * 调用方持有 ioLock，不持有本对象的锁
+     */
+    private void writeManifest() throws IOException {
+        List<String> lines;
+        synchronized (this) {
+            lines = manifestLines();
+        }
+        manifest.compact(lines);
+        writtenManifest = lines;
+    }
+
+    /**
+     * 清单每行：文件名|规则条数|是否启用|组名|备注，组名和备注经过 escape，不会出现竖线和换行
+     */
+    private List<String> manifestLines() {
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            lines.add(entry.file + "|" + entry.ruleCount + "|" + entry.active + "|" + escape(entry.groupName) + "|" + escape(entry.remark));
+        }
+        return lines;
+    }
+
+    private Entry entry(String groupName) {
+        Entry entry = byName.get(groupName);
+        if (entry == null) {
+            entry = new Entry(directory, SHARD_PREFIX + nextFile++ + SHARD_SUFFIX);
+            entry.groupName = groupName;
+            entry.remark = "";
+            entries.add(entry);
+            byName.put(groupName, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * 按百分号编码组名和备注中的 %、竖线和换行，其余字符原样保留，清单仍然可以直接阅读
+     */
+    static String escape(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '%': builder.append("%25"); break;
+                case '|': builder.append("%7C"); break;
+                case '\n': builder.append("%0A"); break;
+                case '\r': builder.append("%0D"); break;
+                default: builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * escape 的逆操作，只还原 escape 产生的四种编码，其他百分号原样保留
+     */
+    static String unescape(String text) {
+        if (text.indexOf('%') < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' && i + 2 < text.length()) {
+                String code = text.substring(i, i + 3).toUpperCase();
+                char decoded = "%25".equals(code) ? '%' : "%7C".equals(code) ? '|'
+                        : "%0A".equals(code) ? '\n' : "%0D".equals(code) ? '\r' : 0;
+                if (decoded != 0) {
+                    builder.append(decoded);
+                    i += 2;
+                    continue;
+                }
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static int parseCount(String text) {
+        try {
+            return Math.max(0, Integer.parseInt(text));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int fileNumber(String file) {
+        if (file.startsWith(SHARD_PREFIX) && file.endsWith(SHARD_SUFFIX)) {
+            try {
+                return Integer.parseInt(file.substring(SHARD_PREFIX.length(), file.length() - SHARD_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,109 @@
+package filterpro;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RuleStore 某一时刻的不可变快照：各分组的规则列表和规则文件中对应的行。
+ * FilterRule 本身不可修改，编辑只会让之后的快照换成新规则，快照里的规则和行始终一致，
+ * 自动保存线程、匹配器编译和历史回溯等读者拿到快照后无需加锁。
+ */
+final class RuleSnapshot {
+    static final RuleSnapshot EMPTY = new RuleSnapshot(0, new LinkedHashMap<>());
+
+    /**
+     * 单个分组的快照，分组没有变化时在相邻版本之间复用
+     */
+    static final class Group {
+        private final List<FilterRule> rules;
+        private final List<String> configLines;
+
+        Group(Collection<FilterRule> rules) {
+            FilterRule[] ruleArray = new FilterRule[rules.size()];
+            String[] lineArray = new String[ruleArray.length];
+            int i = 0;
+            for (FilterRule rule : rules) {
+                ruleArray[i] = rule;
+                lineArray[i] = rule.toConfigLine();
+                i++;
+            }
+            this.rules = Collections.unmodifiableList(Arrays.asList(ruleArray));
+            this.configLines = Collections.unmodifiableList(Arrays.asList(lineArray));
+        }
+
+        List<String> getConfigLines() { return configLines; }
+    }
+
+    private final long version;
+    private final Map<String, Group> groups;
+    private final int size;
+    // 第一次需要时才拼接，多个线程同时计算得到的结果相同
+    private volatile List<String> configLines;
+    private volatile List<FilterRule> all;
+
+    RuleSnapshot(long version, LinkedHashMap<String, Group> groups) {
+        this.version = version;
+        this.groups = Collections.unmodifiableMap(groups);
+        int total = 0;
+        for (Group group : groups.values()) {
+            total += group.rules.size();
+        }
+        this.size = total;
+    }
+
+    long getVersion() { return version; }
+    int size() { return size; }
+    boolean isEmpty() { return size == 0; }
+
+    /**
+     * 分组的快照，分组不存在或没有规则时返回 null。分组没有变化时，相邻版本返回的是同一个对象
+     */
+    Group getGroup(String groupName) {
+        return groups.get(groupName);
+    }
+
+    /**
+     * 分组中的规则，按加入顺序；分组不存在时返回空列表
+     */
+    List<FilterRule> getGroupRules(String groupName) {
+        Group group = groups.get(groupName);
+        return group == null ? Collections.emptyList() : group.rules;
+    }
+
+    /**
+     * 全部规则，按分组排列
+     */
+    List<FilterRule> getAll() {
+        List<FilterRule> result = all;
+        if (result == null) {
+            List<FilterRule> rules = new ArrayList<>(size);
+            for (Group group : groups.values()) {
+                rules.addAll(group.rules);
+            }
+            result = Collections.unmodifiableList(rules);
+            all = result;
+        }
+        return result;
+    }
+
+    /**
+     * 规则文件中的全部行，内容固定为发布快照时规则的状态
+     */
+    List<String> getConfigLines() {
+        List<String> result = configLines;
+        if (result == null) {
+            List<String> lines = new ArrayList<>(size);
+            for (Group group : groups.values()) {
+                lines.addAll(group.configLines);
+            }
+            result = Collections.unmodifiableList(lines);
+            configLines = result;
+        }
+        return result;
+    }
+}
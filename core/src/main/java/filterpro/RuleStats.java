@@ -0,0 +1,39 @@
+package filterpro;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 规则或分组的命中次数和累计匹配耗时。使用 LongAdder，多个代理线程同时累加时没有锁竞争。
+ */
+public class RuleStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder matchNanos = new LongAdder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void addMatchTime(long nanos) {
+        matchNanos.add(nanos);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMatchNanos() {
+        return matchNanos.sum();
+    }
+
+    /**
+     * 累计匹配耗时（毫秒），保留三位小数用于表格显示
+     */
+    public double getMatchMillis() {
+        return Math.round(matchNanos.sum() / 1_000.0) / 1_000.0;
+    }
+
+    void reset() {
+        hits.reset();
+        matchNanos.reset();
+    }
+}
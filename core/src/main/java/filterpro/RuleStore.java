@@ -0,0 +1,251 @@
+package filterpro;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按分组索引的规则存储。每个分组名第一次出现时分配一个稳定的编号，规则按编号分桶保存，
+ * 桶内保持插入顺序。列出、批量删除、移动和重命名分组的开销只与涉及的规则数有关，与规则总数无关。
+ * 规则自身仍然保存分组名（用于持久化和表格显示）。规则不可修改，编辑、移动和分组改名都用新规则替换原规则，
+ * 返回新旧规则的对应关系，调用方据此更新自己持有的规则。
+ * 同时维护 RuleSearchIndex，搜索不需要遍历全部规则。
+ * <p>
+ * 修改只在 EDT 上进行，每次修改结束时发布新的 RuleSnapshot：只重建涉及的分组，其余分组沿用上一版快照。
+ * 读取规则的方法都从当前快照读取，不加锁，其它线程读到的总是某次修改完成后的完整状态。
+ */
+class RuleStore {
+    private final Map<String, Integer> groupIds = new HashMap<>();
+    private final Map<Integer, String> groupNames = new HashMap<>();
+    private final Map<Integer, LinkedHashSet<FilterRule>> groups = new LinkedHashMap<>();
+    private final RuleSearchIndex searchIndex = new RuleSearchIndex();
+    private int nextGroupId;
+
+    // 已发布的分组快照，以及自上次发布以来有变化的分组
+    private final Map<Integer, RuleSnapshot.Group> publishedGroups = new HashMap<>();
+    private final Set<Integer> staleGroups = new HashSet<>();
+    private long version;
+    private volatile RuleSnapshot snapshot = RuleSnapshot.EMPTY;
+
+    /**
+     * 当前快照，可在任意线程调用
+     */
+    RuleSnapshot snapshot() { return snapshot; }
+
+    int size() { return snapshot.size(); }
+    boolean isEmpty() { return snapshot.isEmpty(); }
+
+    synchronized void add(FilterRule rule) {
+        addRule(rule);
+        publish();
+    }
+
+    synchronized void addAll(Collection<FilterRule> rules) {
+        for (FilterRule rule : rules) {
+            addRule(rule);
+        }
+        publish();
+    }
+
+    synchronized boolean remove(FilterRule rule) {
+        boolean removed = removeRule(rule);
+        publish();
+        return removed;
+    }
+
+    /**
+     * 删除多条规则，返回实际删除的条数
+     */
+    synchronized int removeAll(Collection<FilterRule> rules) {
+        int removed = 0;
+        for (FilterRule rule : rules) {
+            if (removeRule(rule)) {
+                removed++;
+            }
+        }
+        publish();
+        return removed;
+    }
+
+    synchronized void clear() {
+        groupIds.clear();
+        groupNames.clear();
+        groups.clear();
+        searchIndex.clear();
+        publishedGroups.clear();
+        staleGroups.clear();
+        publish();
+    }
+
+    /**
+     * 用编辑后的规则替换原规则（例如在表格中编辑）。分组没变时保持规则在分组中的位置，
+     * 分组变了时移到新分组末尾。原规则不在存储中时返回 false
+     */
+    synchronized boolean replace(FilterRule previous, FilterRule updated) {
+        Integer previousId = groupIds.get(previous.getGroupName());
+        LinkedHashSet<FilterRule> bucket = previousId == null ? null : groups.get(previousId);
+        if (bucket == null || !bucket.contains(previous)) {
+            return false;
+        }
+        if (previous.getGroupName().equals(updated.getGroupName())) {
+            LinkedHashSet<FilterRule> replaced = new LinkedHashSet<>(bucket.size() * 4 / 3 + 1);
+            for (FilterRule rule : bucket) {
+                replaced.add(rule == previous ? updated : rule);
+            }
+            groups.put(previousId, replaced);
+        } else {
+            bucket.remove(previous);
+            bucket(updated.getGroupName()).add(updated);
+            staleGroups.add(groupIds.get(updated.getGroupName()));
+        }
+        searchIndex.replace(previous, updated);
+        staleGroups.add(previousId);
+        publish();
+        return true;
+    }
+
+    /**
+     * 把多条规则移动到目标分组，返回原规则到移动后规则的对应关系
+     */
+    synchronized Map<FilterRule, FilterRule> move(Collection<FilterRule> rules, String targetGroupName) {
+        LinkedHashSet<FilterRule> target = bucket(targetGroupName);
+        staleGroups.add(groupIds.get(targetGroupName));
+        Map<FilterRule, FilterRule> moved = new IdentityHashMap<>();
+        for (FilterRule rule : rules) {
+            Integer sourceId = groupIds.get(rule.getGroupName());
+            LinkedHashSet<FilterRule> source = sourceId == null ? null : groups.get(sourceId);
+            if (source != null && source != target && source.remove(rule)) {
+                staleGroups.add(sourceId);
+                FilterRule updated = rule.withGroupName(targetGroupName);
+                target.add(updated);
+                searchIndex.replace(rule, updated);
+                moved.put(rule, updated);
+            }
+        }
+        publish();
+        return moved;
+    }
+
+    /**
+     * 重命名分组：编号不变，该分组内的规则换成新组名的规则。新名称已存在时两个分组合并。
+     * 返回原规则到改名后规则的对应关系
+     */
+    synchronized Map<FilterRule, FilterRule> renameGroup(String oldName, String newName) {
+        Map<FilterRule, FilterRule> renamed = new IdentityHashMap<>();
+        if (oldName.equals(newName)) {
+            return renamed;
+        }
+        Integer id = groupIds.remove(oldName);
+        if (id == null) {
+            return renamed;
+        }
+        LinkedHashSet<FilterRule> previous = groups.get(id);
+        LinkedHashSet<FilterRule> bucket = new LinkedHashSet<>(previous.size() * 4 / 3 + 1);
+        for (FilterRule rule : previous) {
+            FilterRule updated = rule.withGroupName(newName);
+            bucket.add(updated);
+            searchIndex.replace(rule, updated);
+            renamed.put(rule, updated);
+        }
+        groups.put(id, bucket);
+        Integer existing = groupIds.get(newName);
+        if (existing == null) {
+            groupIds.put(newName, id);
+            groupNames.put(id, newName);
+            staleGroups.add(id);
+        } else {
+            groups.get(existing).addAll(bucket);
+            groups.remove(id);
+            groupNames.remove(id);
+            publishedGroups.remove(id);
+            staleGroups.add(existing);
+        }
+        publish();
+        return renamed;
+    }
+
+    /**
+     * 删除分组，分组中的规则合并到 targetGroupName，返回原规则到合并后规则的对应关系
+     */
+    synchronized Map<FilterRule, FilterRule> mergeGroup(String groupName, String targetGroupName) {
+        return renameGroup(groupName, targetGroupName);
+    }
+
+    /**
+     * 分组中的规则，按加入顺序，来自当前快照，不可修改
+     */
+    List<FilterRule> getGroupRules(String groupName) {
+        return snapshot.getGroupRules(groupName);
+    }
+
+    /**
+     * 任一字段包含关键词的规则，见 RuleSearchIndex
+     */
+    synchronized List<FilterRule> search(String query) {
+        return searchIndex.search(query);
+    }
+
+    /**
+     * 全部规则，按分组排列，来自当前快照，不可修改
+     */
+    List<FilterRule> getAll() {
+        return snapshot.getAll();
+    }
+
+    private void addRule(FilterRule rule) {
+        if (bucket(rule.getGroupName()).add(rule)) {
+            searchIndex.add(rule);
+            staleGroups.add(groupIds.get(rule.getGroupName()));
+        }
+    }
+
+    private boolean removeRule(FilterRule rule) {
+        Integer id = groupIds.get(rule.getGroupName());
+        LinkedHashSet<FilterRule> bucket = id == null ? null : groups.get(id);
+        if (bucket != null && bucket.remove(rule)) {
+            searchIndex.remove(rule);
+            staleGroups.add(id);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 重建有变化的分组快照，与其余分组组合成新版本后整体发布
+     */
+    private void publish() {
+        for (Integer id : staleGroups) {
+            LinkedHashSet<FilterRule> bucket = groups.get(id);
+            if (bucket == null || bucket.isEmpty()) {
+                publishedGroups.remove(id);
+            } else {
+                publishedGroups.put(id, new RuleSnapshot.Group(bucket));
+            }
+        }
+        staleGroups.clear();
+        LinkedHashMap<String, RuleSnapshot.Group> named = new LinkedHashMap<>();
+        for (Integer id : groups.keySet()) {
+            RuleSnapshot.Group group = publishedGroups.get(id);
+            if (group != null) {
+                named.put(groupNames.get(id), group);
+            }
+        }
+        snapshot = new RuleSnapshot(++version, named);
+    }
+
+    private LinkedHashSet<FilterRule> bucket(String groupName) {
+        Integer id = groupIds.get(groupName);
+        if (id == null) {
+            id = nextGroupId++;
+            groupIds.put(groupName, id);
+            groupNames.put(id, groupName);
+        }
+        return groups.computeIfAbsent(id, k -> new LinkedHashSet<>());
+    }
+}
@@ -0,0 +1,40 @@
+package filterpro;
+
+/**
+ * 规则的匹配目标：每条规则只在请求的对应部分上匹配，而不是整个序列化后的请求
+ */
+public enum RuleTarget {
+    REQUEST("完整请求"),
+    METHOD("请求方法"),
+    HOST("主机"),
+    // 规则内容是主机列表文件的路径，整个列表作为一条规则，见 HostSet
+    HOST_LIST("主机列表"),
+    // 目标参数可以填主机名或 "*.后缀"，只在符合的主机上匹配路径
+    PATH("路径"),
+    QUERY("查询参数"),
+    HEADER("请求头"),
+    BODY("请求体");
+
+    private final String displayName;
+
+    RuleTarget(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * 按规则文件中保存的名称解析，无法识别时按完整请求处理
+     */
+    public static RuleTarget fromName(String name) {
+        for (RuleTarget target : values()) {
+            if (target.name().equalsIgnoreCase(name.trim())) {
+                return target;
+            }
+        }
+        return REQUEST;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,175 @@
+package filterpro;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 针对同一种匹配目标的文本规则：纯字面量规则（escapeRegex 生成的规则基本都是）统一放进
+ * 一个 Aho-Corasick 自动机，只有真正的正则规则才交给 java.util.regex 逐条匹配。
+ */
+class TextMatcher {
+    private static final String REGEX_META = ".[]{}()*+?^$";
+
+    private final LiteralAutomaton literals;
+    private final FilterRule[] literalOwners;
+    // 与该下标字面量相同的下一个下标，-1 表示没有；自动机对相同的字面量只报告第一个下标
+    private final int[] sameLiteral;
+    private final FilterRule[] regexRules;
+    private final Pattern[] regexPatterns;
+
+    private TextMatcher(Builder builder) {
+        this.literals = new LiteralAutomaton(builder.literalPatterns);
+        this.literalOwners = builder.literalOwners.toArray(new FilterRule[0]);
+        this.sameLiteral = new int[literalOwners.length];
+        Map<String, Integer> last = new HashMap<>();
+        for (int i = 0; i < sameLiteral.length; i++) {
+            sameLiteral[i] = -1;
+            Integer previous = last.put(builder.literalPatterns.get(i), i);
+            if (previous != null) {
+                sameLiteral[previous] = i;
+            }
+        }
+        this.regexRules = builder.regexRules.toArray(new FilterRule[0]);
+        this.regexPatterns = builder.regexPatterns.toArray(new Pattern[0]);
+    }
+
+    static class Builder {
+        private final Function<String, Pattern> compiler;
+        private final List<String> literalPatterns = new ArrayList<>();
+        private final List<FilterRule> literalOwners = new ArrayList<>();
+        private final List<FilterRule> regexRules = new ArrayList<>();
+        private final List<Pattern> regexPatterns = new ArrayList<>();
+
+        Builder(Function<String, Pattern> compiler) {
+            this.compiler = compiler;
+        }
+
+        /**
+         * 添加一条规则，无法编译时把原因写入 errors 并跳过
+         */
+        void add(FilterRule rule, List<String> errors) {
+            String content = rule.getRuleContent();
+            List<String> alternatives = literalAlternatives(content);
+            if (alternatives != null) {
+                for (String literal : alternatives) {
+                    literalPatterns.add(literal);
+                    literalOwners.add(rule);
+                }
+                return;
+            }
+            try {
+                regexPatterns.add(compiler.apply(content));
+                regexRules.add(rule);
+            } catch (PatternSyntaxException e) {
+                errors.add("规则 '" + content + "' 无法编译: " + e.getDescription());
+            } catch (RegexCostAnalyzer.QuarantinedException e) {
+                errors.add("规则 '" + content + "' 已隔离: " + e.getMessage());
+            }
+        }
+
+        TextMatcher build() {
+            return new TextMatcher(this);
+        }
+    }
+
+    /**
+     * 如果规则是纯字面量（或仅由字面量组成的顶层 | 分支），返回去掉转义后的字面量列表，否则返回 null
+     */
+    static List<String> literalAlternatives(String regex) {
+        List<String> alternatives = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length()) {
+                    return null;
+                }
+                char escaped = regex.charAt(i + 1);
+                // \d、\w、\Q 等转义具有正则含义
+                if (Character.isLetterOrDigit(escaped)) {
+                    return null;
+                }
+                current.append(escaped);
+                i++;
+            } else if (c == '|') {
+                if (current.length() == 0) {
+                    return null;
+                }
+                alternatives.add(current.toString());
+                current.setLength(0);
+            } else if (REGEX_META.indexOf(c) >= 0) {
+                return null;
+            } else {
+                current.append(c);
+            }
+        }
+        if (current.length() == 0) {
+            return null;
+        }
+        alternatives.add(current.toString());
+        return alternatives;
+    }
+
+    /**
+     * 返回第一条命中的规则，没有命中返回 null。
+     * 正则规则各自计时；字面量共用一次自动机扫描，耗时计入分组统计。
+     */
+    FilterRule match(CharSequence text) {
+        return match(text, Collections.emptySet());
+    }
+
+    /**
+     * 同 match，但跳过 excluded 中的规则（已从分组中删除、还没有重新编译的规则）
+     */
+    FilterRule match(CharSequence text, Set<FilterRule> excluded) {
+        if (text == null) {
+            return null;
+        }
+        if (excluded.isEmpty()) {
+            int literal = literals.findFirst(text);
+            if (literal >= 0) {
+                return literalOwners[literal];
+            }
+        } else {
+            FilterRule[] found = new FilterRule[1];
+            literals.forEachMatch(text, index -> {
+                for (int i = index; i >= 0; i = sameLiteral[i]) {
+                    if (!excluded.contains(literalOwners[i])) {
+                        found[0] = literalOwners[i];
+                        return true;
+                    }
+                }
+                return false;
+            });
+            if (found[0] != null) {
+                return found[0];
+            }
+        }
+        for (int i = 0; i < regexPatterns.length; i++) {
+            if (excluded.contains(regexRules[i])) {
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean found = regexPatterns[i].matcher(text).find();
+            regexRules[i].getStats().addMatchTime(System.nanoTime() - start);
+            if (found) {
+                return regexRules[i];
+            }
+        }
+        return null;
+    }
+
+    boolean isEmpty() {
+        return literals.getPatternCount() == 0 && regexPatterns.length == 0;
+    }
+
+    int getLiteralCount() { return literals.getPatternCount(); }
+    int getRegexCount() { return regexPatterns.length; }
+}
@@ -0,0 +1,13 @@
+/**
+ * FilterPro 的规则匹配核心，不依赖 Burp。对外公开的部分：
+ * <ul>
+ *   <li>规则模型和解析：{@link filterpro.FilterRule}（fromConfigLine / toConfigLine）、{@link filterpro.RuleTarget}、
+ *       {@link filterpro.RuleGroup}、{@link filterpro.RuleStats}；</li>
+ *   <li>匹配：{@link filterpro.RuleMatcher#compile(java.util.List)} 和 {@link filterpro.RuleMatcher#match(MatchInput)}，
+ *       输入为 {@link filterpro.MatchInput}，原始请求文本用 {@link filterpro.RawRequestInput}；</li>
+ *   <li>读取插件保存的规则：分片目录用 {@link filterpro.RuleShards}（open / load），
+ *       单个规则文件及其变更日志用 {@link filterpro.RuleJournal#load()}。</li>
+ * </ul>
+ * 其余类（自动机、索引、缓存、优化器等）是实现细节，保持包内可见。
+ */
+package filterpro;
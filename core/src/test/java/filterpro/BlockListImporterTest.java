@@ -0,0 +1,78 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BlockListImporterTest {
+
+    private static List<String> read(BlockListImporter importer, String text) throws Exception {
+        StringWriter out = new StringWriter();
+        importer.read(new StringReader(text), out);
+        String written = out.toString();
+        return written.isEmpty() ? Collections.emptyList() : Arrays.asList(written.split("\n"));
+    }
+
+    @Test
+    public void readsHostsFileEntries() throws Exception {
+        BlockListImporter importer = new BlockListImporter();
+        List<String> entries = read(importer,
+                "# hosts\n127.0.0.1 localhost\n0.0.0.0 ads.example Tracker.Example # 行尾注释\n::1 ip6-localhost\n");
+
+        assertEquals(Arrays.asList("ads.example", "tracker.example"), entries);
+        assertEquals(2, importer.getEntries());
+        // hosts 文件自带的本机条目不是要拦截的域名
+        assertEquals(2, importer.getSkipped());
+    }
+
+    @Test
+    public void adblockDomainRuleCoversApexAndSubdomains() throws Exception {
+        BlockListImporter importer = new BlockListImporter();
+        List<String> entries = read(importer, "[Adblock Plus 2.0]\n! 注释\n||ads.example^\n||cdn.example^|\n");
+
+        assertEquals(Arrays.asList("ads.example", "*.ads.example", "cdn.example", "*.cdn.example"), entries);
+    }
+
+    @Test
+    public void adblockRulesThatAreNotHostsAreSkipped() throws Exception {
+        BlockListImporter importer = new BlockListImporter();
+        List<String> entries = read(importer,
+                "||ads.example^$third-party\n||ads.example/path^\n@@||ok.example^\nexample.com##.banner\n/ads/*\n");
+
+        assertEquals(Collections.emptyList(), entries);
+        assertEquals(5, importer.getSkipped());
+    }
+
+    @Test
+    public void plainDomainListDistinguishesApexAndWildcard() throws Exception {
+        BlockListImporter importer = new BlockListImporter();
+        List<String> entries = read(importer, "a.example\n.b.example\n*.c.example\n10.0.0.1\n");
+
+        assertEquals(Arrays.asList("a.example", "b.example", "*.b.example", "*.c.example"), entries);
+        assertEquals(1, importer.getSkipped());
+
+        HostSet set = new HostSet();
+        for (String entry : entries) {
+            set.add(entry);
+        }
+        assertEquals(true, set.contains("b.example"));
+        assertEquals(true, set.contains("x.c.example"));
+        assertEquals(false, set.contains("c.example"));
+    }
+
+    @Test
+    public void duplicatesAcrossFormatsAreWrittenOnce() throws Exception {
+        BlockListImporter importer = new BlockListImporter();
+        List<String> entries = read(importer, "0.0.0.0 ads.example\nADS.example\n||ads.example^\n*.ads.example\n");
+
+        assertEquals(Arrays.asList("ads.example", "*.ads.example"), entries);
+        assertEquals(2, importer.getEntries());
+        assertEquals(3, importer.getDuplicates());
+    }
+}
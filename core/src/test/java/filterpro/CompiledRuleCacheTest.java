@@ -0,0 +1,260 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class CompiledRuleCacheTest {
+
+    /**
+     * 只有请求行和 Host 的 GET 请求
+     */
+    private static final class Get implements MatchInput {
+        private final String path;
+
+        Get(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public String method() { return "GET"; }
+
+        @Override
+        public String host() { return "a.example.com"; }
+
+        @Override
+        public String path() { return path; }
+
+        @Override
+        public String query() {
+            int question = path.indexOf('?');
+            return question < 0 ? "" : path.substring(question + 1);
+        }
+
+        @Override
+        public String header(String name) {
+            return "host".equalsIgnoreCase(name) ? host() : null;
+        }
+
+        @Override
+        public CharSequence body() { return ""; }
+
+        @Override
+        public CharSequence text() {
+            return "GET " + path + " HTTP/1.1\r\nHost: " + host() + "\r\n\r\n";
+        }
+    }
+
+    private static FilterRule path(String content) {
+        return new FilterRule(content, "Block", true, "", "g", RuleTarget.PATH, "");
+    }
+
+    private static Supplier<List<FilterRule>> counting(List<FilterRule> rules, AtomicInteger calls) {
+        return () -> {
+            calls.incrementAndGet();
+            return new ArrayList<>(rules);
+        };
+    }
+
+    @Test
+    public void matcherIsReusedUntilTheGroupIsInvalidated() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        List<FilterRule> rules = new ArrayList<>(Arrays.asList(path("/track"), path("id=\\d+")));
+        AtomicInteger calls = new AtomicInteger();
+
+        RuleMatcher first = cache.get("g", counting(rules, calls));
+        assertSame(first, cache.get("g", counting(rules, calls)));
+        assertEquals(1, calls.get());
+
+        FilterRule beacon = path("/beacon");
+        rules.add(beacon);
+        cache.invalidate("g");
+        RuleMatcher second = cache.get("g", counting(rules, calls));
+
+        assertNotSame(first, second);
+        assertEquals(2, calls.get());
+        assertSame(beacon, second.match(new Get("/beacon")));
+        assertNull(first.match(new Get("/beacon")));
+    }
+
+    @Test
+    public void invalidatingOneGroupKeepsTheOthers() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        List<FilterRule> rules = Arrays.asList(path("/track"));
+        AtomicInteger calls = new AtomicInteger();
+        cache.get("a", counting(rules, calls));
+        RuleMatcher b = cache.get("b", counting(rules, calls));
+
+        cache.invalidate("a");
+
+        assertSame(b, cache.get("b", counting(rules, calls)));
+        cache.get("a", counting(rules, calls));
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void renamedGroupKeepsItsMatcher() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        List<FilterRule> rules = Arrays.asList(path("/track"));
+        AtomicInteger calls = new AtomicInteger();
+        RuleMatcher matcher = cache.get("a", counting(rules, calls));
+        long version = cache.getVersion("a");
+
+        cache.rename("a", "b");
+
+        assertEquals(version, cache.getVersion("b"));
+        assertSame(matcher, cache.get("b", counting(rules, calls)));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void redundantRulesReportWhatCoversThemUntilItIsRemoved() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        FilterRule track = path("/track");
+        FilterRule trackApi = path("/track/api");
+        List<FilterRule> rules = new ArrayList<>(Arrays.asList(track, trackApi));
+        AtomicInteger calls = new AtomicInteger();
+        cache.get("g", counting(rules, calls));
+
+        assertSame(track, cache.coveredBy("g", trackApi));
+        assertNull(cache.coveredBy("g", track));
+
+        rules.remove(track);
+        cache.invalidate("g");
+        RuleMatcher matcher = cache.get("g", counting(rules, calls));
+
+        assertNull(cache.coveredBy("g", trackApi));
+        assertSame(trackApi, matcher.match(new Get("/track/api")));
+    }
+
+    @Test
+    public void sameRegexIsCompiledOnce() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+
+        assertSame(cache.pattern("id=\\d+"), cache.pattern("id=\\d+"));
+    }
+
+    @Test
+    public void quarantinedAndInvalidRegexesAreSkipped() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        FilterRule ok = path("/ok");
+        List<FilterRule> rules = Arrays.asList(path("(.*a){20}"), path("("), ok);
+
+        RuleMatcher matcher = cache.get("g", () -> rules);
+
+        assertEquals(2, matcher.getErrors().size());
+        assertSame(ok, matcher.match(new Get("/ok")));
+        assertThrows(RegexCostAnalyzer.QuarantinedException.class, () -> cache.pattern("(.*a){20}"));
+        assertThrows(PatternSyntaxException.class, () -> cache.pattern("("));
+    }
+
+    @Test
+    public void riskIsAnalyzedInTheBackground() throws InterruptedException {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        CountDownLatch analyzed = new CountDownLatch(2);
+        cache.setRiskListener(analyzed::countDown);
+
+        assertEquals("", cache.describeRisk(path("/track|/beacon")));
+        assertEquals("", cache.describeRisk(new FilterRule("*.example.com", "Block", true, "", "g", RuleTarget.HOST, "")));
+        assertEquals("分析中", cache.describeRisk(path("(")));
+        assertEquals("分析中", cache.describeRisk(path("(ab|cd)*x")));
+
+        assertTrue(analyzed.await(10, TimeUnit.SECONDS));
+        assertEquals("语法错误", cache.describeRisk(path("(")));
+        assertEquals("警告: 量词作用于分支", cache.describeRisk(path("(ab|cd)*x")));
+    }
+
+    private static RuleMatcher update(CompiledRuleCache cache, List<FilterRule> rules) {
+        cache.invalidate("g");
+        return cache.get("g", () -> new ArrayList<>(rules));
+    }
+
+    @Test
+    public void addedAndRemovedRulesAreAppliedIncrementally() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        FilterRule track = path("/track");
+        FilterRule id = path("id=\\d+");
+        FilterRule beacon = path("/beacon");
+        update(cache, Arrays.asList(track, id));
+
+        RuleMatcher matcher = update(cache, Arrays.asList(id, beacon));
+
+        assertNull(matcher.match(new Get("/track")));
+        assertSame(beacon, matcher.match(new Get("/beacon")));
+        assertSame(id, matcher.match(new Get("/x?id=1")));
+
+        matcher = update(cache, Arrays.asList(track, id));
+        assertSame(track, matcher.match(new Get("/track")));
+        assertNull(matcher.match(new Get("/beacon")));
+    }
+
+    @Test
+    public void editedRuleReplacesTheOldOne() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        FilterRule track = path("/track");
+        update(cache, Arrays.asList(track));
+
+        FilterRule disabled = track.withEnabled(false);
+        assertNull(update(cache, Arrays.asList(disabled)).match(new Get("/track")));
+
+        FilterRule enabled = disabled.withEnabled(true);
+        assertSame(enabled, update(cache, Arrays.asList(enabled)).match(new Get("/track")));
+    }
+
+    @Test
+    public void ruleCoveredByARemovedRuleStartsMatching() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        FilterRule track = path("/track");
+        FilterRule pixel = path("/track/pixel");
+
+        assertSame(track, update(cache, Arrays.asList(track, pixel)).match(new Get("/track/pixel")));
+        assertSame(pixel, update(cache, Arrays.asList(pixel)).match(new Get("/track/pixel")));
+    }
+
+    @Test
+    public void manyChangesFallBackToAFullCompile() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        FilterRule track = path("/track");
+        update(cache, Arrays.asList(track));
+
+        List<FilterRule> rules = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rules.add(path("/r" + i + "/"));
+        }
+        RuleMatcher matcher = update(cache, rules);
+
+        assertNull(matcher.match(new Get("/track")));
+        for (int i = 0; i < 100; i++) {
+            assertSame(rules.get(i), matcher.match(new Get("/r" + i + "/x")));
+        }
+    }
+
+    @Test
+    public void recompileRebuildsFromTheCurrentRules() {
+        CompiledRuleCache cache = new CompiledRuleCache();
+        FilterRule track = path("/track");
+        FilterRule beacon = path("/beacon");
+        update(cache, Arrays.asList(track));
+        update(cache, Arrays.asList(track, beacon));
+
+        cache.recompile("g");
+        RuleMatcher matcher = cache.get("g", () -> Arrays.asList(track, beacon));
+
+        assertSame(track, matcher.match(new Get("/track")));
+        assertSame(beacon, matcher.match(new Get("/beacon")));
+    }
+}
@@ -0,0 +1,157 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FilterRuleTest {
+    private static final String REQUEST = "GET /api/v1/ping?x=1 HTTP/1.1\r\nHost: a.example.com\r\n"
+            + "User-Agent: Prometheus/2.0\r\n\r\n";
+
+    private static boolean finds(String regex, String text) {
+        return Pattern.compile(regex).matcher(text).find();
+    }
+
+    @Test
+    public void parsesCurrentFormat() {
+        FilterRule rule = FilterRule.fromConfigLine("Prometheus|Block|true|监控|运维|HEADER|User-Agent", "默认");
+
+        assertEquals("Prometheus", rule.getRuleContent());
+        assertEquals("Block", rule.getRuleType());
+        assertTrue(rule.isEnabled());
+        assertEquals("监控", rule.getRemark());
+        assertEquals("运维", rule.getGroupName());
+        assertEquals(RuleTarget.HEADER, rule.getTarget());
+        assertEquals("User-Agent", rule.getTargetParam());
+        assertEquals("Prometheus|Block|true|监控|运维|HEADER|User-Agent", rule.toConfigLine());
+    }
+
+    @Test
+    public void missingFieldsFallBackToDefaults() {
+        FilterRule rule = FilterRule.fromConfigLine("/track|Block|false", "默认");
+
+        assertFalse(rule.isEnabled());
+        assertEquals("", rule.getRemark());
+        assertEquals("默认", rule.getGroupName());
+        assertEquals(RuleTarget.REQUEST, rule.getTarget());
+        assertNull(FilterRule.fromConfigLine("only|two", "默认"));
+        assertEquals(RuleTarget.REQUEST, FilterRule.fromConfigLine("x|Block|true||g|NOPE|", "默认").getTarget());
+    }
+
+    @Test
+    public void legacyHostRuleBecomesHostTarget() {
+        FilterRule rule = FilterRule.fromConfigLine("Host: *.example\\.com|Host Filter|true||g", "默认");
+
+        assertEquals(RuleTarget.HOST, rule.getTarget());
+        assertEquals("*.example\\.com", rule.getRuleContent());
+        assertEquals("*.example\\.com|Host Filter|true||g|HOST|", rule.toConfigLine());
+    }
+
+    @Test
+    public void legacyHostPrefixWithRegexStaysRequestRule() {
+        FilterRule rule = FilterRule.fromConfigLine("Host: [ab]\\.com|Host Filter|true||g", "默认");
+
+        assertEquals(RuleTarget.REQUEST, rule.getTarget());
+        assertEquals("Host: [ab]\\.com", rule.getRuleContent());
+    }
+
+    @Test
+    public void legacyMethodAndApiRulesAreInferredFromType() {
+        FilterRule method = FilterRule.fromConfigLine("OPTIONS /|Method Filter|true||g", "默认");
+        assertEquals(RuleTarget.METHOD, method.getTarget());
+        assertEquals("OPTIONS", method.getRuleContent());
+
+        FilterRule api = FilterRule.fromConfigLine("/api/v1/ping|API Filter|true||g", "默认");
+        assertEquals(RuleTarget.PATH, api.getTarget());
+        assertEquals("/api/v1/ping", api.getRuleContent());
+    }
+
+    @Test
+    public void historyFilterRegexMatchesTheSerializedRequest() {
+        FilterRule method = new FilterRule("GET|HEAD", "Block", true, "", "g", RuleTarget.METHOD, "");
+        assertEquals("(?:GET|HEAD) /", method.toHistoryFilterRegex());
+        assertTrue(finds(method.toHistoryFilterRegex(), REQUEST));
+
+        FilterRule header = new FilterRule("Prometheus", "Block", true, "", "g", RuleTarget.HEADER, "User-Agent");
+        assertEquals("User-Agent: [^\\r\\n]*Prometheus", header.toHistoryFilterRegex());
+        assertTrue(finds(header.toHistoryFilterRegex(), REQUEST));
+
+        FilterRule request = new FilterRule("ping\\?x=1", "Block", true, "", "g");
+        assertEquals("ping\\?x=1", request.toHistoryFilterRegex());
+    }
+
+    @Test
+    public void wildcardHostExpandsToSubdomainsOnly() {
+        FilterRule wildcard = new FilterRule("*.example.com", "Block", true, "", "g", RuleTarget.HOST, "");
+        String regex = wildcard.toHistoryFilterRegex();
+
+        assertTrue(finds(regex, REQUEST));
+        assertFalse(finds(regex, "GET / HTTP/1.1\r\nHost: example.com\r\n"));
+        assertFalse(finds(regex, "GET / HTTP/1.1\r\nHost: a.example.org\r\n"));
+
+        FilterRule exact = new FilterRule("a\\.example\\.com", "Block", true, "", "g", RuleTarget.HOST, "");
+        assertEquals("Host: a\\.example\\.com", exact.toHistoryFilterRegex());
+    }
+
+    @Test
+    public void hostListRulesHaveNoHistoryFilterRegex() {
+        FilterRule list = new FilterRule("hosts.txt", "Block", true, "", "g", RuleTarget.HOST_LIST, "");
+        assertNull(list.toHistoryFilterRegex());
+    }
+
+    @Test
+    public void withCopiesLeaveTheOriginalAndKeepStats() {
+        FilterRule rule = new FilterRule("/track", "Block", true, "", "g", RuleTarget.PATH, "");
+        rule.getStats().recordHit();
+        String line = rule.toConfigLine();
+
+        FilterRule disabled = rule.withEnabled(false).withGroupName("h");
+
+        assertTrue(rule.isEnabled());
+        assertEquals(line, rule.toConfigLine());
+        assertEquals("/track|Block|false||h|PATH|", disabled.toConfigLine());
+        assertSame(rule.getStats(), disabled.getStats());
+        assertEquals(1, disabled.getStats().getHits());
+    }
+
+    @Test
+    public void anchoredPathRulesAreAnchoredAfterTheMethod() {
+        FilterRule template = new FilterRule("^/api/v1/users/[^/]+" + FilterRule.PATH_END, "Block", true, "", "g",
+                RuleTarget.PATH, "");
+        String regex = template.toHistoryFilterRegex();
+
+        assertEquals("(?:^|\\n)[A-Z]+ /api/v1/users/[^/]+[? ]", regex);
+        assertTrue(finds(regex, "GET /api/v1/users/42 HTTP/1.1\r\nHost: a.example.com\r\n"));
+        assertTrue(finds(regex, "GET /api/v1/users/42?x=1 HTTP/1.1\r\n"));
+        assertFalse(finds(regex, "GET /api/v1/users/42/avatar HTTP/1.1\r\n"));
+        assertFalse(finds(regex, "GET /static?r=/api/v1/users/42 HTTP/1.1\r\n"));
+    }
+
+    @Test
+    public void unanchoredOrBranchingPathRulesAreKept() {
+        assertEquals("/track", new FilterRule("/track", "Block", true, "", "g", RuleTarget.PATH, "")
+                .toHistoryFilterRegex());
+        assertEquals("^/a|^/b", new FilterRule("^/a|^/b", "Block", true, "", "g", RuleTarget.PATH, "")
+                .toHistoryFilterRegex());
+    }
+
+    @Test
+    public void hostScopedPathRulesAlsoRequireTheHostHeader() {
+        Pattern template = Pattern.compile(new FilterRule("^/ping" + FilterRule.PATH_END, "Block", true, "", "g",
+                RuleTarget.PATH, "a.example").toHistoryFilterRegex());
+        assertTrue(template.matcher("GET /ping?t=1 HTTP/1.1\r\nHost: a.example\r\n\r\n").find());
+        assertFalse(template.matcher("GET /ping HTTP/1.1\r\nHost: b.example\r\n\r\n").find());
+        assertFalse(template.matcher("GET /pinged HTTP/1.1\r\nHost: a.example\r\n\r\n").find());
+
+        Pattern literal = Pattern.compile(new FilterRule("/track", "Block", true, "", "g",
+                RuleTarget.PATH, "*.example").toHistoryFilterRegex());
+        assertTrue(literal.matcher("POST /api/track HTTP/1.1\r\nX: 1\r\nHost: x.example:8443\r\n\r\n").find());
+        assertFalse(literal.matcher("POST /api/track HTTP/1.1\r\nHost: example\r\n\r\n").find());
+    }
+}
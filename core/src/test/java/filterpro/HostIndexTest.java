@@ -0,0 +1,76 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class HostIndexTest {
+    private static FilterRule hostRule(String content) {
+        return new FilterRule(content, "Block", true, "", "默认", RuleTarget.HOST, "");
+    }
+
+    @Test
+    public void wildcardMatchesSubdomainsButNotApex() {
+        FilterRule wildcard = hostRule("*.example.com");
+        HostIndex index = new HostIndex();
+        index.addWildcard("example.com", wildcard);
+
+        assertSame(wildcard, index.match("a.example.com"));
+        assertSame(wildcard, index.match("b.a.example.com"));
+        assertNull(index.match("example.com"));
+        assertNull(index.match("badexample.com"));
+        assertNull(index.match("example.com.evil.net"));
+    }
+
+    @Test
+    public void exactAndWildcardRulesCoverApexTogether() {
+        FilterRule apex = hostRule("example.com");
+        FilterRule wildcard = hostRule("*.example.com");
+        HostIndex index = new HostIndex();
+        index.addExact("example.com", apex);
+        index.addWildcard("example.com", wildcard);
+
+        assertSame(apex, index.match("example.com"));
+        assertSame(wildcard, index.match("www.example.com"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void matchIgnoresCaseAndTrailingDot() {
+        FilterRule rule = hostRule("Example.COM");
+        HostIndex index = new HostIndex();
+        index.addExact("Example.COM", rule);
+        index.addWildcard("Example.COM", rule);
+
+        assertSame(rule, index.match("EXAMPLE.com."));
+        assertSame(rule, index.match("WWW.example.com"));
+    }
+
+    @Test
+    public void excludedRulesFallBackToNarrowerWildcard() {
+        FilterRule narrow = hostRule("*.a.example.com");
+        FilterRule wide = hostRule("*.example.com");
+        HostIndex index = new HostIndex();
+        index.addWildcard("a.example.com", narrow);
+        index.addWildcard("example.com", wide);
+
+        assertSame(wide, index.match("x.a.example.com"));
+        assertSame(narrow, index.match("x.a.example.com", Collections.singleton(wide)));
+        assertNull(index.match("x.a.example.com", new HashSet<>(Arrays.asList(narrow, wide))));
+    }
+
+    @Test
+    public void parsesEscapedAndUnescapedHostPatterns() {
+        assertEquals("*.example.com", HostIndex.parseHostPattern("*\\.example\\.com"));
+        assertEquals("*.example.com", HostIndex.parseHostPattern("\\*\\.example\\.com"));
+        assertEquals("api.example.com", HostIndex.parseHostPattern(" api.example.com "));
+        assertNull(HostIndex.parseHostPattern("api\\d+\\.example\\.com"));
+        assertNull(HostIndex.parseHostPattern("(a|b)\\.com"));
+    }
+}
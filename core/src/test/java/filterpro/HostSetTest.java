@@ -0,0 +1,87 @@
+package filterpro;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HostSetTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void wildcardMatchesSubdomainsButNotApex() {
+        HostSet set = new HostSet();
+        assertTrue(set.add("*.ads.example"));
+
+        assertTrue(set.contains("x.ads.example"));
+        assertTrue(set.contains("a.b.ads.example"));
+        assertFalse(set.contains("ads.example"));
+        assertFalse(set.contains("badads.example"));
+        assertFalse(set.contains("ads.example.org"));
+    }
+
+    @Test
+    public void exactEntryMatchesOnlyThatHost() {
+        HostSet set = new HostSet();
+        assertTrue(set.add("tracker.example"));
+
+        assertTrue(set.contains("tracker.example"));
+        assertFalse(set.contains("a.tracker.example"));
+        assertFalse(set.contains("example"));
+    }
+
+    @Test
+    public void lookupIgnoresCaseWhitespaceAndTrailingDot() {
+        HostSet set = new HostSet();
+        set.add("Tracker.Example.");
+        set.add("*.CDN.example");
+
+        assertTrue(set.contains(" TRACKER.example. "));
+        assertTrue(set.contains("Img.cdn.EXAMPLE"));
+        assertFalse(set.contains(""));
+        assertFalse(set.contains(null));
+        assertFalse(set.contains("."));
+    }
+
+    @Test
+    public void duplicatesAreRejectedAndTableGrows() {
+        HostSet set = new HostSet();
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(set.add("h" + i + ".example"));
+            assertTrue(set.add("*.w" + i + ".example"));
+        }
+        assertFalse(set.add("H1.example"));
+        assertFalse(set.add("*.w1.example"));
+        assertFalse(set.add(" "));
+        assertEquals(2000, set.size());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(set.contains("h" + i + ".example"));
+            assertTrue(set.contains("x.w" + i + ".example"));
+            assertFalse(set.contains("w" + i + ".example"));
+        }
+    }
+
+    @Test
+    public void loadSkipsCommentsAndReloadsChangedFile() throws Exception {
+        File file = folder.newFile("hosts.txt");
+        Files.write(file.toPath(), "# 注释\n\na.example\n*.b.example\n".getBytes(StandardCharsets.UTF_8));
+        HostSet first = HostSet.load(file);
+        assertEquals(2, first.size());
+        assertSame(first, HostSet.load(file));
+
+        Files.write(file.toPath(), "a.example\n*.b.example\nc.example\n".getBytes(StandardCharsets.UTF_8));
+        HostSet second = HostSet.load(file);
+        assertNotSame(first, second);
+        assertTrue(second.contains("c.example"));
+    }
+}
@@ -0,0 +1,57 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LiteralAutomatonTest {
+
+    @Test
+    public void findsFirstOccurringLiteral() {
+        LiteralAutomaton automaton = new LiteralAutomaton(Arrays.asList("/api/log", "track", "/api"));
+        assertEquals(3, automaton.getPatternCount());
+        assertEquals(1, automaton.findFirst("GET /tracking HTTP/1.1"));
+        assertEquals(2, automaton.findFirst("GET /api/ping HTTP/1.1"));
+        assertEquals(-1, automaton.findFirst("GET /ap/log HTTP/1.1"));
+    }
+
+    @Test
+    public void followsFailureLinksAcrossOverlappingLiterals() {
+        LiteralAutomaton automaton = new LiteralAutomaton(Arrays.asList("he", "she", "hers"));
+        assertEquals(1, automaton.findFirst("ushers"));
+        assertEquals(-1, automaton.findFirst("shh"));
+    }
+
+    @Test
+    public void reportsEveryMatchInOrder() {
+        LiteralAutomaton automaton = new LiteralAutomaton(Arrays.asList("he", "she", "hers"));
+        List<Integer> hits = new ArrayList<>();
+        automaton.forEachMatch("ushers", index -> {
+            hits.add(index);
+            return false;
+        });
+        // "she" 和 "he" 同在第 4 个字符结束，长的在前
+        assertEquals(Arrays.asList(1, 0, 2), hits);
+    }
+
+    @Test
+    public void stopsWhenVisitorReturnsTrue() {
+        LiteralAutomaton automaton = new LiteralAutomaton(Arrays.asList("a", "b"));
+        List<Integer> hits = new ArrayList<>();
+        automaton.forEachMatch("abab", index -> hits.add(index));
+        assertEquals(Collections.singletonList(0), hits);
+    }
+
+    @Test
+    public void ignoresEmptyPatterns() {
+        LiteralAutomaton automaton = new LiteralAutomaton(Arrays.asList("", null, "x"));
+        assertEquals(1, automaton.getPatternCount());
+        assertEquals(2, automaton.findFirst("yx"));
+        assertEquals(-1, new LiteralAutomaton(Collections.emptyList()).findFirst("anything"));
+    }
+}
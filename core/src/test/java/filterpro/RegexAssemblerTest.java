@@ -0,0 +1,50 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+
+public class RegexAssemblerTest {
+
+    @Test
+    public void sharesCommonLiteralPrefixes() {
+        assertEquals("/api/v1/(?:log|ping)", RegexAssembler.assemble(Arrays.asList("/api/v1/log", "/api/v1/ping")));
+        assertEquals("/api/v1/log/[ab]", RegexAssembler.assemble(Arrays.asList("/api/v1/log/a", "/api/v1/log/b")));
+    }
+
+    @Test
+    public void longerLiteralWithSamePrefixIsDropped() {
+        assertEquals("/api", RegexAssembler.assemble(Arrays.asList("/api/v1/log", "/api")));
+    }
+
+    @Test
+    public void regexBranchesAreAppendedUnchanged() {
+        assertEquals("a\\.com|id=\\d+", RegexAssembler.assemble(Arrays.asList("id=\\d+", "a\\.com")));
+        assertEquals("", RegexAssembler.assemble(Collections.emptyList()));
+    }
+
+    @Test
+    public void assembledRegexFindsSameTextsAsPlainAlternation() {
+        List<String> regexes = Arrays.asList("/log", "/login", "a\\.b|a\\?b", "[x]y", "id=\\d+", "/lo\\(g\\)");
+        Pattern assembled = Pattern.compile(RegexAssembler.assemble(regexes));
+        Pattern joined = Pattern.compile(String.join("|", regexes));
+        for (String text : Arrays.asList("GET /log", "/login", "/lo", "a.b", "a?b", "aXb", "xy", "id=7", "id=",
+                "/lo(g)", "/lo(", "")) {
+            assertEquals(text, joined.matcher(text).find(), assembled.matcher(text).find());
+        }
+    }
+
+    @Test
+    public void escapedLiteralStaysLiteral() {
+        String literal = "a.b*c?[d]|e\\f";
+        String escaped = RegexAssembler.escape(literal);
+        assertEquals(Collections.singletonList(literal), TextMatcher.literalAlternatives(escaped));
+        assertEquals(true, Pattern.compile(escaped).matcher("x" + literal + "y").find());
+        assertEquals(false, Pattern.compile(escaped).matcher("aXb*c?[d]|e\\f").find());
+    }
+}
@@ -0,0 +1,67 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RegexCostAnalyzerTest {
+
+    @Test
+    public void flagsRiskyConstructs() {
+        assertEquals(Collections.singletonList("嵌套量词"), RegexCostAnalyzer.findRiskyConstructs("(a+)+"));
+        assertEquals(Collections.singletonList("量词作用于分支"), RegexCostAnalyzer.findRiskyConstructs("(a|b)*"));
+        assertEquals(Collections.singletonList("多个无界通配符"), RegexCostAnalyzer.findRiskyConstructs("token=.*&.*id"));
+        assertEquals(Arrays.asList("嵌套量词", "量词作用于分支"), RegexCostAnalyzer.findRiskyConstructs("(x+|y)+z"));
+    }
+
+    @Test
+    public void escapesAndCharacterClassesAreNotConstructs() {
+        assertTrue(RegexCostAnalyzer.findRiskyConstructs("\\(a+\\)+").isEmpty());
+        assertTrue(RegexCostAnalyzer.findRiskyConstructs("[(|]+").isEmpty());
+        assertTrue(RegexCostAnalyzer.findRiskyConstructs("/api/v\\d+/users/\\d+").isEmpty());
+        assertTrue(RegexCostAnalyzer.findRiskyConstructs("\\.*a.*").isEmpty());
+    }
+
+    @Test
+    public void catastrophicBacktrackingIsOverBudget() {
+        RegexCostAnalyzer.Report report = RegexCostAnalyzer.analyze(Pattern.compile("(.*a){20}"));
+
+        assertTrue(report.isOverBudget());
+        assertTrue(report.summary().startsWith("已隔离"));
+    }
+
+    @Test
+    public void linearRegexStaysWithinBudget() {
+        RegexCostAnalyzer.Report report = RegexCostAnalyzer.analyze(Pattern.compile("id=\\d+"));
+
+        assertFalse(report.isOverBudget());
+        assertEquals("", report.summary());
+    }
+
+    @Test
+    public void warningsAreSummarizedWithoutQuarantine() {
+        RegexCostAnalyzer.Report report = RegexCostAnalyzer.analyze(Pattern.compile("(ab|cd)*x"));
+
+        assertFalse(report.isOverBudget());
+        assertEquals("警告: 量词作用于分支", report.summary());
+    }
+
+    @Test
+    public void budgetIsCountedInCharacterReads() {
+        Pattern pattern = Pattern.compile("heartbeat");
+        long steps = RegexCostAnalyzer.analyze(pattern).getSteps();
+
+        assertTrue(steps > 0);
+        assertEquals(steps, RegexCostAnalyzer.analyze(pattern).getSteps());
+
+        RegexCostAnalyzer.Report starved = RegexCostAnalyzer.analyze(pattern, 10);
+        assertTrue(starved.isOverBudget());
+        assertEquals(10, starved.getSteps());
+    }
+}
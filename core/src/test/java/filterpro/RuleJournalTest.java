@@ -0,0 +1,152 @@
+package filterpro;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File rules;
+
+    @Before
+    public void setUp() throws Exception {
+        rules = folder.newFile("rules.txt");
+    }
+
+    private List<String> reload() throws Exception {
+        return new RuleJournal(rules).load();
+    }
+
+    @Test
+    public void appendOnlyWritesChangesAndReplaysThem() throws Exception {
+        RuleJournal journal = new RuleJournal(rules);
+        journal.compact(Arrays.asList("a", "b"));
+        assertFalse(journal.getJournalFile().exists());
+
+        assertTrue(journal.append(Arrays.asList("a", "b", "c")));
+        assertTrue(journal.append(Arrays.asList("b", "c")));
+        assertFalse(journal.append(Arrays.asList("c", "b")));
+        assertEquals(2, journal.getJournalEntries());
+
+        assertEquals(Arrays.asList("b", "c"), reload());
+        // 快照本身没有被改写
+        assertEquals(Arrays.asList("a", "b"), Files.readAllLines(rules.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void duplicateLinesAreCounted() throws Exception {
+        RuleJournal journal = new RuleJournal(rules);
+        journal.compact(Arrays.asList("a", "a", "b"));
+        journal.append(Arrays.asList("a", "b", "b"));
+        assertEquals(Arrays.asList("a", "b", "b"), reload());
+    }
+
+    @Test
+    public void replayIgnoresTruncatedAppend() throws Exception {
+        RuleJournal journal = new RuleJournal(rules);
+        journal.compact(Collections.singletonList("a"));
+        journal.append(Arrays.asList("a", "b"));
+        File journalFile = journal.getJournalFile();
+        byte[] complete = Files.readAllBytes(journalFile.toPath());
+        // 追加写到一半崩溃：最后一行没有换行
+        Files.write(journalFile.toPath(), "+|c".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        RuleJournal recovered = new RuleJournal(rules);
+        assertEquals(Arrays.asList("a", "b"), recovered.load());
+        assertArrayEquals(complete, Files.readAllBytes(journalFile.toPath()));
+
+        // 截掉半行之后继续追加，新内容不会和半行拼在一起
+        recovered.append(Arrays.asList("a", "b", "d"));
+        assertEquals(Arrays.asList("a", "b", "d"), reload());
+    }
+
+    @Test
+    public void journalForAnotherSnapshotIsDiscarded() throws Exception {
+        RuleJournal journal = new RuleJournal(rules);
+        journal.compact(Collections.singletonList("a"));
+        journal.append(Arrays.asList("a", "b"));
+        // 快照被别的程序换掉，旧日志的 CRC 对不上
+        Files.write(rules.toPath(), "x\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(Collections.singletonList("x"), reload());
+        assertFalse(journal.getJournalFile().exists());
+    }
+
+    @Test
+    public void compactionInterruptedBeforeJournalDeleteDoesNotReplayTwice() throws Exception {
+        RuleJournal journal = new RuleJournal(rules);
+        journal.compact(Collections.singletonList("a"));
+        journal.append(Arrays.asList("a", "b"));
+        File journalFile = journal.getJournalFile();
+        File stale = new File(folder.getRoot(), "stale.journal");
+        Files.copy(journalFile.toPath(), stale.toPath());
+
+        // 快照已经替换，删除日志之前崩溃
+        journal.compact(Arrays.asList("a", "b"));
+        Files.copy(stale.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(Arrays.asList("a", "b"), reload());
+        assertFalse(journalFile.exists());
+    }
+
+    @Test
+    public void compactionInterruptedBeforeReplaceKeepsOldState() throws Exception {
+        RuleJournal journal = new RuleJournal(rules);
+        journal.compact(Collections.singletonList("a"));
+        journal.append(Arrays.asList("a", "b"));
+        // 临时文件写到一半崩溃，规则文件和日志都还是旧的
+        File temp = new File(folder.getRoot(), "rules.txt.tmp");
+        Files.write(temp.toPath(), "a\nb\nc".getBytes(StandardCharsets.UTF_8));
+
+        RuleJournal recovered = new RuleJournal(rules);
+        assertEquals(Arrays.asList("a", "b"), recovered.load());
+        recovered.compact(Arrays.asList("a", "b", "c", "d"));
+        assertFalse(temp.exists());
+        assertEquals(Arrays.asList("a", "b", "c", "d"), reload());
+    }
+
+    @Test
+    public void longJournalIsCompacted() throws Exception {
+        RuleJournal journal = new RuleJournal(rules);
+        journal.compact(Collections.singletonList("a"));
+        List<String> lines = new ArrayList<>();
+        lines.add("a");
+        for (int i = 0; i < 2000; i++) {
+            lines.add("r" + i);
+        }
+        assertTrue(journal.append(lines));
+
+        assertFalse(journal.getJournalFile().exists());
+        assertEquals(0, journal.getJournalEntries());
+        assertEquals(lines.size(), Files.readAllLines(rules.toPath(), StandardCharsets.UTF_8).size());
+        assertEquals(lines.size(), reload().size());
+    }
+
+    @Test
+    public void snapshotInPlatformEncodingIsStillRead() throws Exception {
+        byte[] gbk = "规则|Block|true||默认\n".getBytes("GBK");
+        Files.write(rules.toPath(), gbk);
+        // 非 UTF-8 的快照按平台默认编码读取，这里只确认不会丢行
+        assertEquals(1, reload().size());
+        Files.write(rules.toPath(), "规则|Block|true||默认\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList("规则|Block|true||默认"), reload());
+    }
+}
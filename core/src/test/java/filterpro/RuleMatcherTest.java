@@ -0,0 +1,188 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RuleMatcherTest {
+
+    /**
+     * 记录匹配时读取了请求的哪些部分
+     */
+    private static final class Request implements MatchInput {
+        final Set<String> read = new LinkedHashSet<>();
+        private final String method;
+        private final String host;
+        private final String path;
+        private final Map<String, String> headers = new HashMap<>();
+        private final StringBuilder headerLines = new StringBuilder();
+        private final String body;
+
+        Request(String method, String host, String path, String body, String... headers) {
+            this.method = method;
+            this.host = host;
+            this.path = path;
+            this.body = body;
+            for (int i = 0; i < headers.length; i += 2) {
+                this.headers.put(headers[i].toLowerCase(Locale.ROOT), headers[i + 1]);
+                headerLines.append(headers[i]).append(": ").append(headers[i + 1]).append("\r\n");
+            }
+        }
+
+        @Override
+        public String method() {
+            read.add("method");
+            return method;
+        }
+
+        @Override
+        public String host() {
+            read.add("host");
+            return host;
+        }
+
+        @Override
+        public String path() {
+            read.add("path");
+            return path;
+        }
+
+        @Override
+        public String query() {
+            read.add("query");
+            int question = path.indexOf('?');
+            return question < 0 ? "" : path.substring(question + 1);
+        }
+
+        @Override
+        public String header(String name) {
+            read.add("header:" + name);
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+
+        @Override
+        public CharSequence body() {
+            read.add("body");
+            return body;
+        }
+
+        @Override
+        public CharSequence text() {
+            read.add("text");
+            return method + " " + path + " HTTP/1.1\r\nHost: " + host + "\r\n" + headerLines + "\r\n" + body;
+        }
+    }
+
+    private static FilterRule rule(String content, RuleTarget target) {
+        return new FilterRule(content, "Block", true, "", "默认", target, "");
+    }
+
+    private static FilterRule header(String name, String content) {
+        return new FilterRule(content, "Block", true, "", "默认", RuleTarget.HEADER, name);
+    }
+
+    @Test
+    public void readsOnlyTheTargetedParts() {
+        RuleMatcher matcher = RuleMatcher.compile(Collections.singletonList(rule("/track", RuleTarget.PATH)));
+        assertEquals(EnumSet.of(RuleTarget.PATH), matcher.getTargets());
+
+        Request request = new Request("POST", "a.example", "/api/save?x=1", "track=1");
+        assertNull(matcher.match(request));
+        assertEquals(Collections.singleton("path"), request.read);
+    }
+
+    @Test
+    public void eachRuleMatchesOnlyItsOwnTarget() {
+        FilterRule method = rule("OPTIONS", RuleTarget.METHOD);
+        FilterRule host = rule("*.ads.example", RuleTarget.HOST);
+        FilterRule path = rule("^/health$", RuleTarget.PATH);
+        FilterRule query = rule("utm_source=", RuleTarget.QUERY);
+        FilterRule agent = header("User-Agent", "Prometheus");
+        FilterRule body = rule("\"event\":\"ping\"", RuleTarget.BODY);
+        FilterRule request = rule("X-Debug: 1", RuleTarget.REQUEST);
+        RuleMatcher matcher = RuleMatcher.compile(Arrays.asList(method, host, path, query, agent, body, request));
+
+        assertTrue(matcher.getErrors().isEmpty());
+        assertSame(method, matcher.match(new Request("OPTIONS", "a.example", "/", "")));
+        assertSame(host, matcher.match(new Request("GET", "x.ads.example", "/", "")));
+        assertNull(matcher.match(new Request("GET", "ads.example", "/", "")));
+        assertSame(path, matcher.match(new Request("GET", "a.example", "/health", "")));
+        assertNull(matcher.match(new Request("GET", "a.example", "/health/deep", "")));
+        assertSame(query, matcher.match(new Request("GET", "a.example", "/p?utm_source=x", "")));
+        assertNull(matcher.match(new Request("GET", "a.example", "/utm_source=", "")));
+        assertSame(agent, matcher.match(new Request("GET", "a.example", "/", "", "user-agent", "Prometheus/2.0")));
+        assertSame(body, matcher.match(new Request("POST", "a.example", "/", "{\"event\":\"ping\"}")));
+        assertSame(request, matcher.match(new Request("GET", "a.example", "/", "", "X-Debug", "1")));
+        assertNull(matcher.match(new Request("GET", "a.example", "/index", "", "User-Agent", "curl")));
+    }
+
+    @Test
+    public void cheapPartsAreCheckedBeforeBodyAndFullRequest() {
+        FilterRule body = rule("secret", RuleTarget.BODY);
+        FilterRule path = rule("/login", RuleTarget.PATH);
+        RuleMatcher matcher = RuleMatcher.compile(Arrays.asList(body, path));
+
+        Request request = new Request("POST", "a.example", "/login", "secret");
+        assertSame(path, matcher.match(request));
+        assertEquals(Collections.singleton("path"), request.read);
+    }
+
+    @Test
+    public void hostRulesThatAreNotPlainNamesMatchAsText() {
+        FilterRule pattern = rule("^api\\d+\\.example$", RuleTarget.HOST);
+        RuleMatcher matcher = RuleMatcher.compile(Collections.singletonList(pattern));
+
+        assertSame(pattern, matcher.match(new Request("GET", "api7.example", "/", "")));
+        assertNull(matcher.match(new Request("GET", "api.example", "/", "")));
+    }
+
+    @Test
+    public void hostScopedPathRulesMatchOnlyOnThatHost() {
+        FilterRule exact = new FilterRule("^/ping$", "Block", true, "", "默认", RuleTarget.PATH, "a.example");
+        FilterRule wildcard = new FilterRule("^/beat$", "Block", true, "", "默认", RuleTarget.PATH, "*.cdn.example");
+        RuleMatcher matcher = RuleMatcher.compile(Arrays.asList(exact, wildcard));
+        assertEquals(EnumSet.of(RuleTarget.HOST, RuleTarget.PATH), matcher.getTargets());
+
+        Request request = new Request("GET", "A.example", "/ping", "");
+        assertSame(exact, matcher.match(request));
+        assertEquals(new LinkedHashSet<>(Arrays.asList("host", "path")), request.read);
+        assertNull(matcher.match(new Request("GET", "b.example", "/ping", "")));
+        assertSame(wildcard, matcher.match(new Request("GET", "x.y.cdn.example", "/beat", "")));
+        assertNull(matcher.match(new Request("GET", "cdn.example", "/beat", "")));
+        assertNull(matcher.match(new Request("GET", "x.cdn.example", "/ping", "")));
+    }
+
+    @Test
+    public void pathRuleWithInvalidHostConditionIsReported() {
+        RuleMatcher matcher = RuleMatcher.compile(Collections.singletonList(
+                new FilterRule("/ping", "Block", true, "", "默认", RuleTarget.PATH, "a b")));
+
+        assertEquals(1, matcher.getErrors().size());
+        assertTrue(matcher.isEmpty());
+    }
+
+    @Test
+    public void headerRuleWithoutNameIsReported() {
+        List<FilterRule> rules = new ArrayList<>();
+        rules.add(header(" ", "x"));
+        rules.add(rule("([", RuleTarget.PATH));
+        RuleMatcher matcher = RuleMatcher.compile(rules);
+
+        assertEquals(2, matcher.getErrors().size());
+        assertTrue(matcher.isEmpty());
+    }
+}
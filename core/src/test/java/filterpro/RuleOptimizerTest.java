@@ -0,0 +1,88 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RuleOptimizerTest {
+    private static FilterRule rule(String content, RuleTarget target) {
+        return new FilterRule(content, "Block", true, "", "默认", target, "");
+    }
+
+    @Test
+    public void reportsDuplicatesKeepingFirst() {
+        FilterRule first = rule("/track", RuleTarget.PATH);
+        FilterRule second = rule("/track", RuleTarget.PATH);
+        FilterRule otherTarget = rule("/track", RuleTarget.QUERY);
+        List<RuleOptimizer.Proposal> proposals = RuleOptimizer.analyze(Arrays.asList(first, second, otherTarget));
+
+        assertEquals(1, proposals.size());
+        assertSame(second, proposals.get(0).getRedundant());
+        assertSame(first, proposals.get(0).getCoveredBy());
+        assertEquals("重复", proposals.get(0).getReason());
+    }
+
+    @Test
+    public void hostSpellingsNormalizeToDuplicates() {
+        FilterRule first = rule("api.example.com", RuleTarget.HOST);
+        FilterRule second = rule("API\\.Example\\.com", RuleTarget.HOST);
+        List<RuleOptimizer.Proposal> proposals = RuleOptimizer.analyze(Arrays.asList(first, second));
+
+        assertEquals(1, proposals.size());
+        assertSame(second, proposals.get(0).getRedundant());
+    }
+
+    @Test
+    public void wildcardCoversSubdomainsButNotApex() {
+        FilterRule wildcard = rule("*.example.com", RuleTarget.HOST);
+        FilterRule sub = rule("a.example.com", RuleTarget.HOST);
+        FilterRule subWildcard = rule("*.a.example.com", RuleTarget.HOST);
+        FilterRule apex = rule("example.com", RuleTarget.HOST);
+        List<FilterRule> minimized = RuleOptimizer.minimize(Arrays.asList(wildcard, sub, subWildcard, apex));
+
+        assertEquals(Arrays.asList(wildcard, apex), minimized);
+        for (RuleOptimizer.Proposal proposal : RuleOptimizer.analyze(Arrays.asList(wildcard, sub, subWildcard, apex))) {
+            assertEquals("被通配符覆盖", proposal.getReason());
+            assertSame(wildcard, proposal.getCoveredBy());
+        }
+    }
+
+    @Test
+    public void literalCoveredWhenEveryAlternativeContainsAnotherLiteral() {
+        FilterRule cover = rule("/api/", RuleTarget.PATH);
+        FilterRule covered = rule("/api/log|/v2/api/ping", RuleTarget.PATH);
+        FilterRule partly = rule("/api/log|/static/", RuleTarget.PATH);
+        List<RuleOptimizer.Proposal> proposals = RuleOptimizer.analyze(Arrays.asList(cover, covered, partly));
+
+        assertEquals(1, proposals.size());
+        assertSame(covered, proposals.get(0).getRedundant());
+        assertSame(cover, proposals.get(0).getCoveredBy());
+        assertEquals("被覆盖", proposals.get(0).getReason());
+    }
+
+    @Test
+    public void requestRuleCoversOtherTargetsButNotTheReverse() {
+        FilterRule request = rule("track", RuleTarget.REQUEST);
+        FilterRule path = rule("/track/pixel", RuleTarget.PATH);
+        FilterRule query = rule("track", RuleTarget.QUERY);
+        FilterRule narrowRequest = rule("tracking", RuleTarget.REQUEST);
+        FilterRule widePath = rule("t", RuleTarget.PATH);
+
+        // 路径规则 "t" 比完整请求规则 "track" 宽，只能覆盖同目标的规则
+        assertEquals(Arrays.asList(request, widePath),
+                RuleOptimizer.minimize(Arrays.asList(request, path, query, narrowRequest, widePath)));
+    }
+
+    @Test
+    public void regexRulesAndDisabledRulesAreLeftAlone() {
+        FilterRule regex = rule("/api/\\d+", RuleTarget.PATH);
+        FilterRule literal = rule("/api/", RuleTarget.PATH);
+        FilterRule disabled = rule("/api/", RuleTarget.PATH).withEnabled(false);
+        assertTrue(RuleOptimizer.analyze(Arrays.asList(literal, regex, disabled)).isEmpty());
+    }
+}
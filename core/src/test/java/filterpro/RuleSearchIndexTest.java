@@ -0,0 +1,108 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RuleSearchIndexTest {
+
+    private static FilterRule rule(String content, String remark, String group) {
+        return new FilterRule(content, "Block", true, remark, group);
+    }
+
+    @Test
+    public void matchesAnyFieldIgnoringCase() {
+        RuleSearchIndex index = new RuleSearchIndex();
+        FilterRule track = rule("/API/Track", "", "默认");
+        FilterRule heartbeat = rule("/ping", "监控心跳", "运维");
+        index.add(track);
+        index.add(heartbeat);
+
+        assertEquals(Collections.singletonList(track), index.search("api/tr"));
+        assertEquals(Collections.singletonList(heartbeat), index.search("心跳"));
+        assertEquals(Collections.singletonList(heartbeat), index.search("运维"));
+        assertEquals(Arrays.asList(track, heartbeat), index.search("BLOCK"));
+        assertEquals(Arrays.asList(track, heartbeat), index.search(""));
+    }
+
+    @Test
+    public void queriesDoNotSpanFields() {
+        RuleSearchIndex index = new RuleSearchIndex();
+        index.add(rule("abc", "", "默认"));
+
+        assertTrue(index.search("cbl").isEmpty());
+        assertTrue(index.search("abcblock").isEmpty());
+    }
+
+    @Test
+    public void narrowedQuerySeesRulesAddedInBetween() {
+        RuleSearchIndex index = new RuleSearchIndex();
+        FilterRule first = rule("/track/a", "", "默认");
+        index.add(first);
+        assertEquals(Collections.singletonList(first), index.search("trac"));
+
+        FilterRule second = rule("/track/b", "", "默认");
+        index.add(second);
+
+        assertEquals(Arrays.asList(first, second), index.search("track"));
+        assertEquals(Collections.singletonList(second), index.search("track/b"));
+    }
+
+    @Test
+    public void editedRuleIsReindexed() {
+        RuleSearchIndex index = new RuleSearchIndex();
+        FilterRule rule = rule("/track", "", "默认");
+        index.add(rule);
+
+        FilterRule edited = rule.withRuleContent("/beacon");
+        index.replace(rule, edited);
+
+        assertTrue(index.search("track").isEmpty());
+        assertEquals(Collections.singletonList(edited), index.search("beacon"));
+    }
+
+    @Test
+    public void replacementWithSameTextKeepsItsPosition() {
+        RuleSearchIndex index = new RuleSearchIndex();
+        FilterRule first = rule("/track/a", "", "默认");
+        FilterRule second = rule("/track/b", "", "默认");
+        index.add(first);
+        index.add(second);
+        assertEquals(Arrays.asList(first, second), index.search("track"));
+
+        FilterRule disabled = first.withEnabled(false);
+        index.replace(first, disabled);
+
+        assertEquals(Arrays.asList(disabled, second), index.search("track"));
+    }
+
+    @Test
+    public void removalsSurviveRebuild() {
+        RuleSearchIndex index = new RuleSearchIndex();
+        List<FilterRule> rules = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            FilterRule rule = rule("/path/" + i, "", "默认");
+            rules.add(rule);
+            index.add(rule);
+        }
+        for (int i = 0; i < 3000; i++) {
+            if (i % 3 != 0) {
+                index.remove(rules.get(i));
+            }
+        }
+
+        List<FilterRule> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i += 3) {
+            expected.add(rules.get(i));
+        }
+        assertEquals(expected, index.search("/path/"));
+        assertEquals(Collections.singletonList(rules.get(2997)), index.search("/path/2997"));
+        assertTrue(index.search("/path/2998").isEmpty());
+    }
+}
@@ -0,0 +1,144 @@
+package filterpro;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RuleShardsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String line(String content, String group) {
+        return new FilterRule(content, "Block", true, "", group).toConfigLine();
+    }
+
+    private static List<String> groupNames(List<RuleGroup> groups) {
+        List<String> names = new ArrayList<>();
+        for (RuleGroup group : groups) {
+            names.add(group.getGroupName());
+        }
+        return names;
+    }
+
+    /**
+     * 打开分片目录并把全部分组读进 RuleStore
+     */
+    private static RuleStore loadAll(RuleShards shards) throws IOException {
+        RuleStore store = new RuleStore();
+        for (RuleGroup group : shards.open()) {
+            for (String line : shards.load(group.getGroupName())) {
+                store.add(FilterRule.fromConfigLine(line, group.getGroupName()).withGroupName(group.getGroupName()));
+            }
+            shards.loaded(group.getGroupName());
+        }
+        return store;
+    }
+
+    @Test
+    public void migrateSplitsByGroupInFirstSeenOrder() throws Exception {
+        File directory = new File(folder.getRoot(), "shards");
+        RuleShards shards = new RuleShards(directory);
+        assertFalse(shards.exists());
+        shards.migrate(Arrays.asList(line("r1", "B"), line("r2", "A"), line("r3", "B"), "not a rule"), "默认");
+        assertTrue(shards.exists());
+
+        RuleShards reopened = new RuleShards(directory);
+        List<RuleGroup> groups = reopened.open();
+        assertEquals(Arrays.asList("B", "A"), groupNames(groups));
+        assertEquals(2, reopened.ruleCount("B"));
+        assertFalse(reopened.isLoaded("B"));
+        assertEquals(Arrays.asList(line("r1", "B"), line("r3", "B")), reopened.load("B"));
+    }
+
+    @Test
+    public void saveWritesOnlyChangedGroups() throws Exception {
+        File directory = new File(folder.getRoot(), "shards");
+        new RuleShards(directory).migrate(Arrays.asList(line("r1", "A"), line("r2", "B")), "默认");
+        RuleShards shards = new RuleShards(directory);
+        RuleStore store = loadAll(shards);
+
+        // 刚读出的规则与分片一致，没有需要写的内容
+        assertFalse(shards.save(store.snapshot()));
+        store.add(new FilterRule("r3", "Block", true, "", "A"));
+        assertTrue(shards.save(store.snapshot()));
+        assertFalse(shards.save(store.snapshot()));
+
+        RuleStore reloaded = loadAll(new RuleShards(directory));
+        assertEquals(2, reloaded.getGroupRules("A").size());
+        assertEquals(1, reloaded.getGroupRules("B").size());
+    }
+
+    @Test
+    public void unloadedGroupsAreNotRewritten() throws Exception {
+        File directory = new File(folder.getRoot(), "shards");
+        new RuleShards(directory).migrate(Arrays.asList(line("r1", "A"), line("r2", "B")), "默认");
+        RuleShards shards = new RuleShards(directory);
+        shards.open();
+        RuleStore store = new RuleStore();
+        for (String line : shards.load("A")) {
+            store.add(FilterRule.fromConfigLine(line, "A"));
+        }
+        shards.loaded("A");
+        store.add(new FilterRule("r3", "Block", true, "", "A"));
+        shards.save(store.snapshot());
+
+        // B 没有加载，RuleStore 中也没有它的规则，分片保持原样
+        RuleShards reopened = new RuleShards(directory);
+        reopened.open();
+        assertEquals(1, reopened.load("B").size());
+        assertEquals(2, reopened.load("A").size());
+    }
+
+    @Test
+    public void renameAndRemoveSurviveReopen() throws Exception {
+        File directory = new File(folder.getRoot(), "shards");
+        new RuleShards(directory).migrate(Arrays.asList(line("r1", "A"), line("r2", "B"), line("r3", "C")), "默认");
+        RuleShards shards = new RuleShards(directory);
+        RuleStore store = loadAll(shards);
+
+        shards.renameGroup("B", "B2");
+        store.renameGroup("B", "B2");
+        shards.removeGroup("C");
+        store.removeAll(store.getGroupRules("C"));
+        shards.setActive("A", true);
+        shards.save(store.snapshot());
+
+        RuleShards reopened = new RuleShards(directory);
+        List<RuleGroup> groups = reopened.open();
+        assertEquals(Arrays.asList("A", "B2"), groupNames(groups));
+        assertTrue(groups.get(0).isActive());
+        // 分片中的行在改名后整体重写，带的是新组名
+        List<String> lines = reopened.load("B2");
+        assertEquals(1, lines.size());
+        assertEquals("B2", FilterRule.fromConfigLine(lines.get(0), "默认").getGroupName());
+        File[] shardFiles = directory.listFiles((dir, name) -> name.startsWith("group-") && name.endsWith(".txt"));
+        assertEquals(2, shardFiles.length);
+    }
+
+    @Test
+    public void groupNamesAndRemarksWithSeparatorsSurviveReopen() throws Exception {
+        File directory = new File(folder.getRoot(), "shards");
+        RuleShards shards = new RuleShards(directory);
+        shards.open();
+        shards.addGroup("A|B 100%", "第一行\r\n第二行|true|x");
+        shards.addGroup("C", "%7C");
+        shards.save(new RuleStore().snapshot());
+
+        List<RuleGroup> groups = new RuleShards(directory).open();
+        assertEquals(Arrays.asList("A|B 100%", "C"), groupNames(groups));
+        assertEquals("第一行\r\n第二行|true|x", groups.get(0).getRemark());
+        assertEquals("%7C", groups.get(1).getRemark());
+        assertEquals(2, Files.readAllLines(new File(directory, RuleShards.MANIFEST).toPath()).size());
+    }
+}
@@ -0,0 +1,175 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RuleStoreTest {
+
+    private static FilterRule rule(String content, String group) {
+        return new FilterRule(content, "Block", true, "", group);
+    }
+
+    @Test
+    public void rulesAreListedByGroupInInsertionOrder() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        FilterRule b1 = rule("b1", "b");
+        FilterRule a2 = rule("a2", "a");
+        store.addAll(Arrays.asList(a1, b1, a2));
+        store.add(a1);
+
+        assertEquals(3, store.size());
+        assertEquals(Arrays.asList(a1, a2), store.getGroupRules("a"));
+        assertEquals(Arrays.asList(a1, a2, b1), store.getAll());
+        assertTrue(store.getGroupRules("missing").isEmpty());
+    }
+
+    @Test
+    public void removeOnlyCountsStoredRules() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        FilterRule a2 = rule("a2", "a");
+        store.addAll(Arrays.asList(a1, a2));
+
+        assertEquals(1, store.removeAll(Arrays.asList(a1, rule("a1", "a"))));
+        assertFalse(store.remove(a1));
+        assertEquals(Collections.singletonList(a2), store.getAll());
+
+        store.clear();
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void moveReplacesRulesWithRegroupedCopies() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        FilterRule b1 = rule("b1", "b");
+        store.addAll(Arrays.asList(a1, b1));
+
+        Map<FilterRule, FilterRule> moved = store.move(Arrays.asList(a1, b1), "b");
+
+        assertEquals(1, moved.size());
+        assertEquals("a", a1.getGroupName());
+        assertEquals("b", moved.get(a1).getGroupName());
+        assertEquals(Arrays.asList(b1, moved.get(a1)), store.getGroupRules("b"));
+        assertTrue(store.getGroupRules("a").isEmpty());
+    }
+
+    @Test
+    public void renamingOntoAnExistingGroupMergesThem() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        FilterRule b1 = rule("b1", "b");
+        FilterRule c1 = rule("c1", "c");
+        store.addAll(Arrays.asList(a1, b1, c1));
+
+        FilterRule d1 = store.renameGroup("c", "d").get(c1);
+        FilterRule merged = store.mergeGroup("a", "b").get(a1);
+
+        assertEquals("d", d1.getGroupName());
+        assertEquals(Collections.singletonList(d1), store.getGroupRules("d"));
+        assertEquals("b", merged.getGroupName());
+        assertEquals(Arrays.asList(b1, merged), store.getGroupRules("b"));
+        assertTrue(store.getGroupRules("a").isEmpty());
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    public void replacedRuleKeepsItsPositionInTheGroup() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        FilterRule a2 = rule("/track", "a");
+        FilterRule a3 = rule("a3", "a");
+        store.addAll(Arrays.asList(a1, a2, a3));
+
+        FilterRule edited = a2.withRuleContent("/beacon");
+        assertTrue(store.replace(a2, edited));
+        assertFalse(store.replace(a2, edited));
+
+        assertEquals(Arrays.asList(a1, edited, a3), store.getGroupRules("a"));
+        assertTrue(store.search("track").isEmpty());
+        assertEquals(Collections.singletonList(edited), store.search("beacon"));
+    }
+
+    @Test
+    public void replacedRuleInAnotherGroupMovesToItsEnd() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        FilterRule b1 = rule("b1", "b");
+        store.addAll(Arrays.asList(a1, b1));
+
+        FilterRule moved = a1.withGroupName("b");
+        store.replace(a1, moved);
+
+        assertEquals(Arrays.asList(b1, moved), store.getGroupRules("b"));
+        assertTrue(store.getGroupRules("a").isEmpty());
+    }
+
+    @Test
+    public void searchFollowsGroupOperations() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "运维");
+        store.add(a1);
+        FilterRule renamed = store.renameGroup("运维", "监控").get(a1);
+
+        assertTrue(store.search("运维").isEmpty());
+        assertEquals(Collections.singletonList(renamed), store.search("监控"));
+
+        store.remove(renamed);
+        assertTrue(store.search("监控").isEmpty());
+    }
+
+    @Test
+    public void publishedSnapshotKeepsItsLines() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        store.add(a1);
+        RuleSnapshot before = store.snapshot();
+
+        store.replace(a1, a1.withRemark("已停用").withEnabled(false));
+        RuleSnapshot after = store.snapshot();
+
+        assertEquals(Collections.singletonList("a1|Block|true||a|REQUEST|"), before.getConfigLines());
+        assertEquals(Collections.singletonList("a1|Block|false|已停用|a|REQUEST|"), after.getConfigLines());
+        assertTrue(after.getVersion() > before.getVersion());
+    }
+
+    @Test
+    public void unchangedGroupsAreSharedBetweenSnapshots() {
+        RuleStore store = new RuleStore();
+        store.addAll(Arrays.asList(rule("a1", "a"), rule("b1", "b")));
+        RuleSnapshot before = store.snapshot();
+
+        store.add(rule("a2", "a"));
+        RuleSnapshot after = store.snapshot();
+
+        assertSame(before.getGroupRules("b"), after.getGroupRules("b"));
+        assertEquals(1, before.getGroupRules("a").size());
+        assertEquals(2, after.getGroupRules("a").size());
+        assertEquals(3, after.size());
+        assertEquals(Arrays.asList("a1|Block|true||a|REQUEST|", "a2|Block|true||a|REQUEST|", "b1|Block|true||b|REQUEST|"),
+                after.getConfigLines());
+    }
+
+    @Test
+    public void emptiedGroupsLeaveTheSnapshot() {
+        RuleStore store = new RuleStore();
+        FilterRule a1 = rule("a1", "a");
+        store.add(a1);
+
+        store.move(Collections.singletonList(a1), "b");
+
+        assertTrue(store.snapshot().getGroupRules("a").isEmpty());
+        assertEquals(Collections.singletonList("a1|Block|true||b|REQUEST|"), store.snapshot().getConfigLines());
+        store.clear();
+        assertTrue(store.snapshot().getAll().isEmpty());
+    }
+}
@@ -0,0 +1,72 @@
+package filterpro;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TextMatcherTest {
+
+    @Test
+    public void classifiesPlainAndEscapedTextAsLiterals() {
+        assertEquals(Arrays.asList("/api/log"), TextMatcher.literalAlternatives("/api/log"));
+        assertEquals(Arrays.asList("a.com", "b.com"), TextMatcher.literalAlternatives("a\\.com|b\\.com"));
+        assertEquals(Arrays.asList("?x=1"), TextMatcher.literalAlternatives("\\?x=1"));
+    }
+
+    @Test
+    public void classifiesMetacharactersAndClassEscapesAsRegex() {
+        assertNull(TextMatcher.literalAlternatives("a.com"));
+        assertNull(TextMatcher.literalAlternatives("^/api"));
+        assertNull(TextMatcher.literalAlternatives("id=\\d+"));
+        assertNull(TextMatcher.literalAlternatives("\\Qa.b\\E"));
+        assertNull(TextMatcher.literalAlternatives("(a|b)"));
+        // 空分支会匹配任意文本，不能当成字面量
+        assertNull(TextMatcher.literalAlternatives("a|"));
+        assertNull(TextMatcher.literalAlternatives("|a"));
+        assertNull(TextMatcher.literalAlternatives("trailing\\"));
+        assertNull(TextMatcher.literalAlternatives(""));
+    }
+
+    @Test
+    public void literalsAreCheckedBeforeRegexes() {
+        FilterRule regex = new FilterRule("id=\\d+", "Block", true, "", "默认");
+        FilterRule literal = new FilterRule("/track", "Block", true, "", "默认");
+        List<String> errors = new ArrayList<>();
+        TextMatcher.Builder builder = new TextMatcher.Builder(Pattern::compile);
+        builder.add(regex, errors);
+        builder.add(literal, errors);
+        TextMatcher matcher = builder.build();
+
+        assertTrue(errors.isEmpty());
+        assertEquals(1, matcher.getLiteralCount());
+        assertEquals(1, matcher.getRegexCount());
+        assertSame(literal, matcher.match("GET /track HTTP/1.1"));
+        assertSame(regex, matcher.match("GET /a?id=42 HTTP/1.1"));
+        // 字面量共用一次自动机扫描，先于正则检查
+        assertSame(literal, matcher.match("GET /track?id=42 HTTP/1.1"));
+        assertSame(regex, matcher.match("GET /track?id=42 HTTP/1.1", Collections.singleton(literal)));
+        assertNull(matcher.match("GET /index HTTP/1.1"));
+    }
+
+    @Test
+    public void invalidRegexIsReportedAndSkipped() {
+        FilterRule broken = new FilterRule("([a-z]", "Block", true, "", "默认");
+        FilterRule literal = new FilterRule("/track", "Block", true, "", "默认");
+        List<String> errors = new ArrayList<>();
+        TextMatcher.Builder builder = new TextMatcher.Builder(Pattern::compile);
+        builder.add(broken, errors);
+        builder.add(literal, errors);
+
+        assertEquals(1, errors.size());
+        assertSame(literal, builder.build().match("/track"));
+    }
+}